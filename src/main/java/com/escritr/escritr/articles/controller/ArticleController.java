@@ -1,21 +1,33 @@
 package com.escritr.escritr.articles.controller;
 
 import com.escritr.escritr.articles.service.ArticleService;
+import com.escritr.escritr.articles.service.ArticleSnapshot;
+import com.escritr.escritr.articles.service.FeedSnapshot;
+import com.escritr.escritr.articles.service.ImageUploadService;
 import com.escritr.escritr.articles.controller.DTOs.ArticlePostDTO;
 import com.escritr.escritr.articles.controller.DTOs.ArticleResponseDTO;
+import com.escritr.escritr.articles.controller.DTOs.ArticleSummaryDTO;
+import com.escritr.escritr.articles.controller.DTOs.CursorPageDTO;
+import com.escritr.escritr.articles.model.ArticleVersion;
 import com.escritr.escritr.aws.s3.S3Service;
+import com.escritr.escritr.common.helpers.ETagGenerator;
 import org.springframework.data.domain.Page;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 import java.io.IOException;
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("api/articles")
@@ -23,13 +35,16 @@ public class ArticleController {
 
     private final ArticleService articleService;
     private final S3Service s3Service;
+    private final ImageUploadService imageUploadService;
 
     ArticleController(
         ArticleService articleService,
-        S3Service s3Service
+        S3Service s3Service,
+        ImageUploadService imageUploadService
     ){
         this.articleService = articleService;
         this.s3Service = s3Service;
+        this.imageUploadService = imageUploadService;
     }
 
 
@@ -46,28 +61,68 @@ public class ArticleController {
     }
 
     @GetMapping()
-    public ResponseEntity<Page<ArticleResponseDTO>> list(
+    public ResponseEntity<Page<ArticleSummaryDTO>> list(
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size
     ){
-        Page<ArticleResponseDTO> articles = articleService.list(page,size);
-        return ResponseEntity.ok(articles);
+        Page<ArticleSummaryDTO> articles = articleService.list(page,size);
+        return ResponseEntity.ok().eTag(summariesETag(articles.getContent(), articles.getTotalElements())).body(articles);
     }
+
+    @GetMapping("/feed")
+    public ResponseEntity<?> feed(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size
+    ){
+        if(cursor == null || cursor.isBlank()){
+            FeedSnapshot firstPage = articleService.firstFeedPage(size);
+            return ResponseEntity.ok().eTag(firstPage.eTag()).contentType(MediaType.APPLICATION_JSON).body(firstPage.json());
+        }
+        CursorPageDTO<ArticleSummaryDTO> articles = articleService.listFeed(cursor,size);
+        return ResponseEntity.ok().eTag(summariesETag(articles.content(), articles.nextCursor())).body(articles);
+    }
+
+    @GetMapping("/search")
+    public ResponseEntity<CursorPageDTO<ArticleSummaryDTO>> search(
+            @RequestParam("q") String query,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size
+    ){
+        CursorPageDTO<ArticleSummaryDTO> articles = articleService.search(query,cursor,size);
+        return ResponseEntity.ok().eTag(summariesETag(articles.content(), articles.nextCursor())).body(articles);
+    }
+
     @GetMapping("/{id}")
-    public ResponseEntity<ArticleResponseDTO> find(@PathVariable UUID id){
+    public ResponseEntity<byte[]> find(@PathVariable UUID id, WebRequest request){
 
-        ArticleResponseDTO article = articleService.find(id);
-        return ResponseEntity.ok(article);
+        // answers If-None-Match / If-Modified-Since with a 304 before the article itself is loaded
+        ArticleVersion version = articleService.findVersion(id);
+        if(request.checkNotModified(version.eTag(), version.lastModifiedMillis())){
+            return null;
+        }
+
+        // the article JSON is rendered once per version, it is written to the response as-is
+        ArticleSnapshot article = articleService.find(id);
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(article.json());
 
     }
 
     @GetMapping("/user/{username}")
-    public ResponseEntity<Page<ArticleResponseDTO>> findArticlesOfUser(
+    public ResponseEntity<Page<ArticleSummaryDTO>> findArticlesOfUser(
             @PathVariable String username,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size){
-        Page<ArticleResponseDTO> articles = articleService.getArticlesByUsername(username,page,size);
-        return ResponseEntity.ok(articles);
+        Page<ArticleSummaryDTO> articles = articleService.getArticlesByUsername(username,page,size);
+        return ResponseEntity.ok().eTag(summariesETag(articles.getContent(), articles.getTotalElements())).body(articles);
+    }
+
+    @GetMapping("/user/{username}/feed")
+    public ResponseEntity<CursorPageDTO<ArticleSummaryDTO>> findArticlesOfUserFeed(
+            @PathVariable String username,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size){
+        CursorPageDTO<ArticleSummaryDTO> articles = articleService.getArticlesByUsernameFeed(username,cursor,size);
+        return ResponseEntity.ok().eTag(summariesETag(articles.content(), articles.nextCursor())).body(articles);
     }
 
 
@@ -86,41 +141,62 @@ public class ArticleController {
     }
 
     @GetMapping("/slug/{slug}")
-    public ResponseEntity<ArticleResponseDTO> findBySlug(@PathVariable String slug){
-        System.out.println(slug);
-        ArticleResponseDTO article = this.articleService.findBySlug(slug);
-        return ResponseEntity.ok(article);
+    public ResponseEntity<byte[]> findBySlug(@PathVariable String slug, WebRequest request){
+
+        ArticleVersion version = this.articleService.findVersionBySlug(slug);
+        if(request.checkNotModified(version.eTag(), version.lastModifiedMillis())){
+            return null;
+        }
+
+        ArticleSnapshot article = this.articleService.findBySlug(slug);
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(article.json());
     }
 
+    // the transfer runs on the S3 client's event loop, the request thread is released once the upload started;
+    // variants maps 320w, 768w, 1280w and placeholder to their urls, the ones narrower than the original only,
+    // and is empty for files bigger than one upload part (none with the default part size)
     @PostMapping("/image")
-    public ResponseEntity<?> uploadImage(@RequestParam("file")MultipartFile file){
+    public CompletableFuture<ResponseEntity<?>> uploadImage(@RequestParam("file")MultipartFile file, Authentication authentication){
         if (file.isEmpty()) {
-            return ResponseEntity.badRequest().body(Map.of("error", "File is empty"));
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(Map.of("error", "File is empty")));
         }
-        String fileUrl = s3Service.uploadFile(file);
-        return ResponseEntity.ok(Map.of("url", fileUrl));
+        return imageUploadService.upload(file, authentication)
+                .thenApply(uploaded -> ResponseEntity.ok(Map.of("url", uploaded.url(), "variants", uploaded.variants())));
     }
 
 
+    // the same image uploaded by other users is shared with them: it is only deleted once none of them holds it,
+    // until then the answer says it was kept
     @DeleteMapping("/image")
-    public ResponseEntity<?> deleteImageByUrl(@RequestParam("url") String fileUrl) {
+    public CompletableFuture<ResponseEntity<?>> deleteImageByUrl(@RequestParam("url") String fileUrl, Authentication authentication) {
         if (fileUrl == null || fileUrl.trim().isEmpty()) {
-            return ResponseEntity.badRequest().body(Map.of("error", "File URL is required."));
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(Map.of("error", "File URL is required.")));
         }
         String fileKey = s3Service.extractKeyFromUrl(fileUrl);
         System.out.println(fileKey);
         if (fileKey == null) {
-            return ResponseEntity.badRequest().body(Map.of("error", "Could not extract S3 key from URL."));
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(Map.of("error", "Could not extract S3 key from URL.")));
         }
 
-        s3Service.deleteFile(fileKey);
-        return ResponseEntity.ok(Map.of("message", "File deleted successfully from URL: " + fileUrl));
+        return imageUploadService.delete(fileKey, authentication)
+                .thenApply(deleted -> deleted
+                        ? ResponseEntity.ok(Map.of("message", "File deleted successfully from URL: " + fileUrl, "deleted", true))
+                        : ResponseEntity.ok(Map.of("message", "File is still used by other uploads, it was kept: " + fileUrl, "deleted", false)));
 
     }
 
-
-
-
-
+    // pages are small summaries, so the validator is computed from what was loaded and Spring answers the 304
+    private String summariesETag(List<ArticleSummaryDTO> articles, Object pageState){
+        List<Object> parts = new ArrayList<>();
+        parts.add(pageState);
+        for(ArticleSummaryDTO article : articles){
+            parts.add(article.id());
+            parts.add(article.updatedAt());
+            if(article.author() != null){
+                parts.add(article.author().name());
+            }
+        }
+        return ETagGenerator.strong(parts.toArray());
+    }
 
 }
@@ -0,0 +1,40 @@
+package com.escritr.escritr.articles.controller.DTOs;
+
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.UUID;
+
+// feed card shape, never carries the article content
+public record ArticleSummaryDTO(
+        UUID id,
+        String title,
+        String subtitle,
+        String firstParagraph,
+        String thumbnailUrl,
+        String slug,
+        String createdAt,
+        String updatedAt,
+        AuthorResponseDTO author) {
+
+    // used by the JPQL constructor expressions in ArticleRepository (nested "new" is not allowed there)
+    public ArticleSummaryDTO(
+            UUID id,
+            String title,
+            String subtitle,
+            String firstParagraph,
+            String thumbnailUrl,
+            String slug,
+            LocalDateTime createdAt,
+            LocalDateTime updatedAt,
+            String authorUsername,
+            String authorName) {
+        this(id, title, subtitle, firstParagraph, thumbnailUrl, slug, format(createdAt), format(updatedAt),
+                authorUsername == null ? null : new AuthorResponseDTO(authorUsername, authorName));
+    }
+
+    // same format the MapStruct mappers use for ArticleResponseDTO
+    private static String format(LocalDateTime dateTime) {
+        return dateTime == null ? null : DateTimeFormatter.ISO_LOCAL_DATE_TIME.format(dateTime);
+    }
+}
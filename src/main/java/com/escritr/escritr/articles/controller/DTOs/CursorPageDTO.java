@@ -0,0 +1,10 @@
+package com.escritr.escritr.articles.controller.DTOs;
+
+import java.util.List;
+
+public record CursorPageDTO<T>(
+        List<T> content,
+        String nextCursor,
+        boolean hasNext
+) {
+}
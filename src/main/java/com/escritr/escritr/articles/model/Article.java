@@ -3,31 +3,40 @@ package com.escritr.escritr.articles.model;
 import com.escritr.escritr.user.domain.User;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.DynamicUpdate;
 
 import java.time.LocalDateTime;
 import java.util.Objects;
 import java.util.UUID;
 
 @Entity
-@Table(name = "articles",schema = "escritr")
+@Table(name = "articles",schema = "escritr",
+        uniqueConstraints = @UniqueConstraint(name = "uk_article_slug", columnNames = "slug"))
 @Getter
 @Setter
 @NoArgsConstructor
 @AllArgsConstructor
 @EqualsAndHashCode
+// updates only write the columns that changed, an unchanged content column is never rewritten
+@DynamicUpdate
 public class Article{
 
     @Id
     @GeneratedValue(strategy = GenerationType.UUID)
     private UUID id;
 
-    @ManyToOne
+    // loaded through the entity graphs in ArticleRepository, list endpoints don't touch it at all
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "author_id")
     private User author;
     private String title;
     private String subtitle;
     private String content;
     private String firstParagraph;
+    // source of the generated search_vector column, see V13__add_articles_search_vector.sql
+    private String plainText;
+    // sha-256 of content, see V15__add_articles_content_hash.sql
+    private byte[] contentHash;
     private String thumbnailUrl;
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
@@ -0,0 +1,11 @@
+package com.escritr.escritr.articles.model;
+
+import java.util.UUID;
+
+// one row of the ranked search, the summaries are loaded afterwards for the ids of a single page
+public interface ArticleSearchHit {
+
+    UUID getId();
+
+    Float getRank();
+}
@@ -0,0 +1,24 @@
+package com.escritr.escritr.articles.model;
+
+import com.escritr.escritr.common.helpers.ETagGenerator;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.UUID;
+
+// what conditional GETs are validated against, loaded without touching the content column.
+// The author is part of it: the response embeds their username and name, which change without the article changing
+public record ArticleVersion(UUID id, LocalDateTime updatedAt, UUID authorId, String authorUsername, String authorName) {
+
+    public String eTag() {
+        return ETagGenerator.strong(id, updatedAt, authorUsername, authorName);
+    }
+
+    // -1 tells Spring there is no Last-Modified value
+    public long lastModifiedMillis() {
+        if (updatedAt == null) {
+            return -1;
+        }
+        return updatedAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
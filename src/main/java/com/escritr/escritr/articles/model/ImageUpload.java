@@ -0,0 +1,44 @@
+package com.escritr.escritr.articles.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+import java.util.UUID;
+
+// a user's hold on a stored image, one row per key and uploader
+@Entity
+@Table(name = "image_uploads", schema = "escritr",
+        uniqueConstraints = {
+                @UniqueConstraint(columnNames = {"object_key", "user_id"})
+        }
+)
+@Getter
+@Setter
+@NoArgsConstructor
+public class ImageUpload {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private UUID id;
+
+    @Column(name = "object_key", nullable = false)
+    private String objectKey;
+
+    @Column(name = "user_id", nullable = false)
+    private UUID userId;
+
+    private Instant createdAt;
+
+    public ImageUpload(String objectKey, UUID userId) {
+        this.objectKey = objectKey;
+        this.userId = userId;
+    }
+
+    @PrePersist
+    protected void onCreate() {
+        this.createdAt = Instant.now();
+    }
+}
@@ -1,13 +1,23 @@
 package com.escritr.escritr.articles.repository;
 
 
+import com.escritr.escritr.articles.controller.DTOs.ArticleSummaryDTO;
 import com.escritr.escritr.articles.model.Article;
+import com.escritr.escritr.articles.model.ArticleSearchHit;
+import com.escritr.escritr.articles.model.ArticleVersion;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -22,10 +32,94 @@ public interface ArticleRepository extends JpaRepository<Article, UUID>{
 //            """)
 //    Page<Article> findRecentArticles(Pageable pageable);
 
-    Page<Article> findByAuthorUsername(String username, Pageable pageable);
+    String SUMMARY_SELECT = """
+            SELECT new com.escritr.escritr.articles.controller.DTOs.ArticleSummaryDTO(
+                a.id, a.title, a.subtitle, a.firstParagraph, a.thumbnailUrl, a.slug,
+                a.createdAt, a.updatedAt, au.username, au.name)
+            FROM Article a
+            LEFT JOIN a.author au
+            """;
 
+    @EntityGraph(attributePaths = "author")
     Optional<Article> findBySlug(String slug);
 
+    @Override
+    @EntityGraph(attributePaths = "author")
+    Optional<Article> findById(UUID id);
 
+    @EntityGraph(attributePaths = "author")
+    List<Article> findAllByOrderByCreatedAtDescIdDesc(Limit limit);
+
+    boolean existsBySlug(String slug);
+
+    // the slug itself plus every "<slug>-..." through idx_articles_slug_pattern, only the slugs are read
+    @Query("SELECT a.slug FROM Article a WHERE a.slug = :slug OR a.slug LIKE :pattern ESCAPE '\\'")
+    List<String> findSlugsWithPrefix(@Param("slug") String slug, @Param("pattern") String pattern);
+
+    @Query("SELECT new com.escritr.escritr.articles.model.ArticleVersion(a.id, a.updatedAt, au.id, au.username, au.name) FROM Article a LEFT JOIN a.author au WHERE a.slug = :slug")
+    Optional<ArticleVersion> findVersionBySlug(@Param("slug") String slug);
+
+    @Query("SELECT new com.escritr.escritr.articles.model.ArticleVersion(a.id, a.updatedAt, au.id, au.username, au.name) FROM Article a LEFT JOIN a.author au WHERE a.id = :id")
+    Optional<ArticleVersion> findVersionById(@Param("id") UUID id);
+
+    // list endpoints only select the summary columns, the content column is never read
+    @Query(value = SUMMARY_SELECT, countQuery = "SELECT count(a) FROM Article a")
+    Page<ArticleSummaryDTO> findSummaries(Pageable pageable);
+
+    @Query(value = SUMMARY_SELECT + " WHERE au.username = :username",
+            countQuery = "SELECT count(a) FROM Article a WHERE a.author.username = :username")
+    Page<ArticleSummaryDTO> findSummariesByAuthorUsername(@Param("username") String username, Pageable pageable);
+
+    // keyset pagination, backed by idx_articles_created_at_id (created_at DESC, id DESC).
+    // "createdAt <= :createdAt" is the index range condition, the OR only filters the rows sharing the cursor timestamp
+    @Query(SUMMARY_SELECT + """
+            ORDER BY a.createdAt DESC, a.id DESC
+            """)
+    List<ArticleSummaryDTO> findFeed(Limit limit);
+
+    @Query(SUMMARY_SELECT + """
+            WHERE a.createdAt <= :createdAt
+              AND (a.createdAt < :createdAt OR a.id < :id)
+            ORDER BY a.createdAt DESC, a.id DESC
+            """)
+    List<ArticleSummaryDTO> findFeedAfter(@Param("createdAt") LocalDateTime createdAt, @Param("id") UUID id, Limit limit);
+
+    @Query(SUMMARY_SELECT + """
+            WHERE au.username = :username
+            ORDER BY a.createdAt DESC, a.id DESC
+            """)
+    List<ArticleSummaryDTO> findFeedByAuthorUsername(@Param("username") String username, Limit limit);
+
+    @Query(SUMMARY_SELECT + """
+            WHERE au.username = :username
+              AND a.createdAt <= :createdAt
+              AND (a.createdAt < :createdAt OR a.id < :id)
+            ORDER BY a.createdAt DESC, a.id DESC
+            """)
+    List<ArticleSummaryDTO> findFeedByAuthorUsernameAfter(@Param("username") String username, @Param("createdAt") LocalDateTime createdAt, @Param("id") UUID id, Limit limit);
+
+    @Query(SUMMARY_SELECT + " WHERE a.id IN :ids")
+    List<ArticleSummaryDTO> findSummariesByIdIn(@Param("ids") Collection<UUID> ids);
+
+    // ranked search over idx_articles_search_vector, only the ids and ranks of one page leave the database.
+    // same keyset shape as the feed, on (rank DESC, id DESC)
+    @Query(value = """
+            SELECT a.id AS id, ts_rank(a.search_vector, q.query) AS rank
+            FROM escritr.articles a, websearch_to_tsquery('simple', :q) AS q(query)
+            WHERE a.search_vector @@ q.query
+            ORDER BY rank DESC, a.id DESC
+            LIMIT :limit
+            """, nativeQuery = true)
+    List<ArticleSearchHit> search(@Param("q") String query, @Param("limit") int limit);
+
+    @Query(value = """
+            SELECT a.id AS id, ts_rank(a.search_vector, q.query) AS rank
+            FROM escritr.articles a, websearch_to_tsquery('simple', :q) AS q(query)
+            WHERE a.search_vector @@ q.query
+              AND (ts_rank(a.search_vector, q.query), a.id) < (CAST(:rank AS real), CAST(:id AS uuid))
+            ORDER BY rank DESC, a.id DESC
+            LIMIT :limit
+            """, nativeQuery = true)
+    List<ArticleSearchHit> searchAfter(@Param("q") String query, @Param("rank") float rank, @Param("id") UUID id, @Param("limit") int limit);
 
 }
@@ -0,0 +1,38 @@
+package com.escritr.escritr.articles.repository;
+
+import com.escritr.escritr.articles.model.ImageUpload;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.UUID;
+
+@Repository
+public interface ImageUploadRepository extends JpaRepository<ImageUpload, UUID> {
+
+    // the same user uploading the same bytes again keeps the one row
+    @Modifying
+    @Transactional
+    @Query(value = """
+            INSERT INTO escritr.image_uploads (id, object_key, user_id, created_at)
+            VALUES (:id, :objectKey, :userId, now())
+            ON CONFLICT (object_key, user_id) DO NOTHING
+            """, nativeQuery = true)
+    int insertIfAbsent(@Param("id") UUID id, @Param("objectKey") String objectKey, @Param("userId") UUID userId);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM ImageUpload i WHERE i.objectKey = :objectKey AND i.userId = :userId")
+    int deleteByObjectKeyAndUserId(@Param("objectKey") String objectKey, @Param("userId") UUID userId);
+
+    boolean existsByObjectKey(String objectKey);
+
+    long countByObjectKey(String objectKey);
+
+    // serializes the claims and the last release of a key until the end of the transaction, there may be no row to lock
+    @Query(value = "SELECT 1 FROM (SELECT pg_advisory_xact_lock(hashtext(:objectKey))) AS locked", nativeQuery = true)
+    int lockObjectKey(@Param("objectKey") String objectKey);
+}
@@ -0,0 +1,9 @@
+package com.escritr.escritr.articles.revalidation;
+
+// lastQueuedAtNanos is pushed forward by every save of the same slug, the call is made once it is older than the debounce window
+public record PendingRevalidation(String slug, String username, long firstQueuedAtNanos, long lastQueuedAtNanos) {
+
+    PendingRevalidation coalesce(PendingRevalidation next) {
+        return new PendingRevalidation(slug, next.username(), firstQueuedAtNanos, next.lastQueuedAtNanos());
+    }
+}
@@ -0,0 +1,110 @@
+package com.escritr.escritr.articles.revalidation;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.client.RestClientException;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Calls the Next.js revalidation route. One HttpClient (and its connection pool) is shared by every call,
+ * failed calls are retried with exponential backoff, client errors are not retried.
+ */
+@Component
+public class RevalidationClient {
+
+    private static final Logger log = LoggerFactory.getLogger(RevalidationClient.class);
+
+    private final RestClient restClient;
+    private final int maxAttempts;
+    private final Duration backoff;
+
+    RevalidationClient(
+            @Value("${nextjs.revalidation.url}") String revalidationUrl,
+            @Value("${nextjs.revalidation.secret}") String revalidationSecret,
+            @Value("${nextjs.revalidation.connect-timeout:PT2S}") Duration connectTimeout,
+            @Value("${nextjs.revalidation.read-timeout:PT5S}") Duration readTimeout,
+            @Value("${nextjs.revalidation.max-attempts:3}") int maxAttempts,
+            @Value("${nextjs.revalidation.backoff:PT0.5S}") Duration backoff
+    ) {
+        HttpClient httpClient = HttpClient.newBuilder()
+                .connectTimeout(connectTimeout)
+                .build();
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(httpClient);
+        requestFactory.setReadTimeout(readTimeout);
+
+        this.restClient = RestClient.builder()
+                .requestFactory(requestFactory)
+                .baseUrl(revalidationUrl)
+                .defaultHeader("x-revalidation-secret", revalidationSecret)
+                .build();
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.backoff = backoff;
+    }
+
+    // the payload the frontend has always received: {"articleSlug": ..., "username": ...}
+    public boolean revalidate(PendingRevalidation revalidation) {
+        return post(toBody(revalidation), revalidation.slug());
+    }
+
+    // {"articles": [{"articleSlug": ..., "username": ...}, ...]}, only sent when nextjs.revalidation.batch-enabled is set
+    public boolean revalidate(List<PendingRevalidation> revalidations) {
+        List<Map<String, Object>> articles = revalidations.stream().map(RevalidationClient::toBody).toList();
+        return post(Map.of("articles", articles), revalidations.size() + " articles");
+    }
+
+    private boolean post(Object body, String description) {
+        Duration delay = backoff;
+        for (int attempt = 1; attempt <= maxAttempts; attempt++) {
+            try {
+                restClient.post()
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .body(body)
+                        .retrieve()
+                        .toBodilessEntity();
+                log.info("Successfully triggered revalidation for {}", description);
+                return true;
+            } catch (HttpClientErrorException e) {
+                log.error("Next.js rejected revalidation for {}: {}", description, e.getStatusCode());
+                return false;
+            } catch (RestClientException e) {
+                log.warn("Revalidation attempt {}/{} for {} failed: {}", attempt, maxAttempts, description, e.getMessage());
+                if (attempt == maxAttempts || !sleep(delay)) {
+                    break;
+                }
+                delay = delay.multipliedBy(2);
+            }
+        }
+        log.error("Error triggering Next.js revalidation for {}, giving up after {} attempts", description, maxAttempts);
+        return false;
+    }
+
+    private static boolean sleep(Duration delay) {
+        try {
+            Thread.sleep(delay);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static Map<String, Object> toBody(PendingRevalidation revalidation) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("articleSlug", revalidation.slug());
+        if (revalidation.username() != null && !revalidation.username().isBlank()) {
+            body.put("username", revalidation.username());
+        }
+        return body;
+    }
+}
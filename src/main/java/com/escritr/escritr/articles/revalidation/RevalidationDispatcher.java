@@ -0,0 +1,178 @@
+package com.escritr.escritr.articles.revalidation;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Takes Next.js revalidations off the request thread. Saves of the same slug inside the debounce window
+ * are coalesced into a single call, and a single background thread sends whatever settled, so a slow
+ * frontend only delays revalidation, never the writers.
+ * The queue is bounded: past max-pending distinct slugs new ones are dropped (and counted) until it drains.
+ * On shutdown what is still queued is sent from that same thread, and the context waits for it at most
+ * shutdown-timeout: past it the call is interrupted, which also ends the client's retry backoff.
+ */
+@Component
+public class RevalidationDispatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(RevalidationDispatcher.class);
+
+    // a slug saved continuously is still revalidated at least this many debounce windows after its first save
+    private static final int MAX_DEBOUNCE_WINDOWS = 10;
+
+    private final RevalidationClient client;
+    private final Map<String, PendingRevalidation> pending = new ConcurrentHashMap<>();
+    private final long debounceNanos;
+    private final int maxPending;
+    private final int batchSize;
+    private final boolean batchEnabled;
+    private final Duration shutdownTimeout;
+
+    private final Timer latency;
+    private final Counter failures;
+    private final Counter dropped;
+
+    private ScheduledExecutorService scheduler;
+
+    RevalidationDispatcher(
+            RevalidationClient client,
+            MeterRegistry meterRegistry,
+            @Value("${nextjs.revalidation.debounce:PT2S}") Duration debounce,
+            @Value("${nextjs.revalidation.max-pending:10000}") int maxPending,
+            @Value("${nextjs.revalidation.batch-size:50}") int batchSize,
+            @Value("${nextjs.revalidation.batch-enabled:false}") boolean batchEnabled,
+            @Value("${nextjs.revalidation.shutdown-timeout:PT3S}") Duration shutdownTimeout
+    ) {
+        this.client = client;
+        this.debounceNanos = debounce.toNanos();
+        this.maxPending = maxPending;
+        this.batchSize = Math.max(1, batchSize);
+        this.batchEnabled = batchEnabled;
+        this.shutdownTimeout = shutdownTimeout;
+
+        Gauge.builder("articles.revalidation.queue.size", pending, Map::size)
+                .description("Slugs waiting to be revalidated")
+                .register(meterRegistry);
+        this.latency = Timer.builder("articles.revalidation.latency")
+                .description("Duration of the calls to the Next.js revalidation route, retries included")
+                .register(meterRegistry);
+        this.failures = Counter.builder("articles.revalidation.failures").register(meterRegistry);
+        this.dropped = Counter.builder("articles.revalidation.dropped").register(meterRegistry);
+    }
+
+    @PostConstruct
+    void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "nextjs-revalidation");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(TimeUnit.MILLISECONDS.toNanos(100), debounceNanos / 2);
+        scheduler.scheduleWithFixedDelay(this::flushSafely, period, period, TimeUnit.NANOSECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (scheduler == null) {
+            return;
+        }
+        // the last flush is queued behind a flush in progress, shutdown() cancels the periodic one but still runs it
+        scheduler.execute(() -> {
+            try {
+                flush(true);
+            } catch (RuntimeException e) {
+                log.error("Revalidation flush failed: {}", e.getMessage(), e);
+            }
+        });
+        scheduler.shutdown();
+        try {
+            if (!scheduler.awaitTermination(shutdownTimeout.toNanos(), TimeUnit.NANOSECONDS)) {
+                scheduler.shutdownNow();
+                log.warn("Revalidation flush did not finish within {}, {} slugs left unrevalidated", shutdownTimeout, pending.size());
+            }
+        } catch (InterruptedException e) {
+            scheduler.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public void enqueue(String slug, String username) {
+        if (slug == null || slug.isBlank()) {
+            return;
+        }
+        if (pending.size() >= maxPending && !pending.containsKey(slug)) {
+            dropped.increment();
+            log.warn("Revalidation queue is full ({} slugs), dropping revalidation for slug: {}", maxPending, slug);
+            return;
+        }
+        long now = System.nanoTime();
+        pending.merge(slug, new PendingRevalidation(slug, username, now, now), PendingRevalidation::coalesce);
+    }
+
+    int pendingSize() {
+        return pending.size();
+    }
+
+    private void flushSafely() {
+        try {
+            flush(false);
+        } catch (RuntimeException e) {
+            log.error("Revalidation flush failed: {}", e.getMessage(), e);
+        }
+    }
+
+    // force sends everything that is queued, otherwise only the slugs that were not saved again during the window
+    void flush(boolean force) {
+        long now = System.nanoTime();
+        List<PendingRevalidation> ready = new ArrayList<>();
+        for (PendingRevalidation revalidation : pending.values()) {
+            if (force || isSettled(revalidation, now)) {
+                // a save that lands between the read and the remove keeps its entry for the next flush
+                if (pending.remove(revalidation.slug(), revalidation)) {
+                    ready.add(revalidation);
+                }
+            }
+        }
+        if (ready.isEmpty()) {
+            return;
+        }
+
+        if (batchEnabled) {
+            for (int from = 0; from < ready.size(); from += batchSize) {
+                List<PendingRevalidation> batch = ready.subList(from, Math.min(ready.size(), from + batchSize));
+                record(latency.record(() -> client.revalidate(batch)));
+            }
+        } else {
+            for (PendingRevalidation revalidation : ready) {
+                record(latency.record(() -> client.revalidate(revalidation)));
+            }
+        }
+    }
+
+    private boolean isSettled(PendingRevalidation revalidation, long now) {
+        return now - revalidation.lastQueuedAtNanos() >= debounceNanos
+                || now - revalidation.firstQueuedAtNanos() >= debounceNanos * MAX_DEBOUNCE_WINDOWS;
+    }
+
+    private void record(Boolean success) {
+        if (!Boolean.TRUE.equals(success)) {
+            failures.increment();
+        }
+    }
+}
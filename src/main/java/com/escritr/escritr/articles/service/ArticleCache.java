@@ -0,0 +1,177 @@
+package com.escritr.escritr.articles.service;
+
+import com.escritr.escritr.articles.model.ArticleVersion;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Rendered article snapshots by id, with a slug -> id index in front of it, plus the rendered
+ * first pages of the main feed.
+ * Snapshots are bounded by the size of their JSON (W-TinyLFU eviction) and by a TTL,
+ * the TTL is only a safety net: ArticleService replaces entries on save and evicts them on delete.
+ * Deleted ids are remembered for the TTL, a reader that loaded the article before the delete can't cache it again.
+ */
+@Component
+public class ArticleCache {
+
+    private static final Logger log = LoggerFactory.getLogger(ArticleCache.class);
+
+    // object headers and references of the snapshot, its version and the array header
+    private static final int ENTRY_OVERHEAD_BYTES = 128;
+
+    private final Cache<UUID, ArticleSnapshot> articlesById;
+    private final Cache<String, UUID> idsBySlug;
+    private final Cache<Integer, FeedSnapshot> feedFirstPages;
+    private final Cache<UUID, Boolean> deletedIds;
+
+    // bumped on every write to the articles table, a feed page rendered before a write is not cached after it
+    private final AtomicLong feedGeneration = new AtomicLong();
+
+    public ArticleCache(
+            @Value("${articles.cache.max-weight-bytes:67108864}") long maxWeightBytes,
+            @Value("${articles.cache.ttl:PT30M}") Duration ttl,
+            @Value("${articles.cache.max-slugs:100000}") long maxSlugs,
+            @Value("${articles.cache.feed-ttl:PT1M}") Duration feedTtl,
+            MeterRegistry meterRegistry
+    ) {
+        this.idsBySlug = Caffeine.newBuilder()
+                .maximumSize(maxSlugs)
+                .expireAfterWrite(ttl)
+                .build();
+
+        this.articlesById = Caffeine.newBuilder()
+                .maximumWeight(maxWeightBytes)
+                .weigher((UUID id, ArticleSnapshot article) -> weigh(article))
+                .expireAfterWrite(ttl)
+                .evictionListener((UUID id, ArticleSnapshot article, RemovalCause cause) -> {
+                    if (article != null) {
+                        idsBySlug.invalidate(article.slug());
+                    }
+                })
+                .recordStats()
+                .build();
+
+        // ids are never reused, past the TTL a late put is the TTL's to correct like any other stale entry
+        this.deletedIds = Caffeine.newBuilder()
+                .maximumSize(maxSlugs)
+                .expireAfterWrite(ttl)
+                .build();
+
+        // one entry per page size, page sizes are clamped to ArticleService.MAX_PAGE_SIZE
+        this.feedFirstPages = Caffeine.newBuilder()
+                .maximumSize(ArticleService.MAX_PAGE_SIZE)
+                .expireAfterWrite(feedTtl)
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, articlesById, "articles");
+        CaffeineCacheMetrics.monitor(meterRegistry, feedFirstPages, "articles.feed");
+        log.info("Article cache initialized. Max weight: {} bytes, TTL: {}, feed TTL: {}", maxWeightBytes, ttl, feedTtl);
+    }
+
+    public ArticleSnapshot getById(UUID id) {
+        return articlesById.getIfPresent(id);
+    }
+
+    public ArticleSnapshot getBySlug(String slug) {
+        UUID id = idsBySlug.getIfPresent(slug);
+        return id == null ? null : articlesById.getIfPresent(id);
+    }
+
+    /**
+     * Caches the snapshot unless a newer version of the article is already cached or the article was deleted,
+     * so a reader that loaded the article just before an update or a delete can't put the old version back.
+     */
+    public void put(ArticleSnapshot article) {
+        ArticleSnapshot stored = articlesById.asMap().compute(article.id(), (id, cached) -> {
+            if (deletedIds.getIfPresent(id) != null) {
+                return cached;
+            }
+            return cached != null && isNewer(cached, article) ? cached : article;
+        });
+        if (stored == article) {
+            idsBySlug.put(article.slug(), article.id());
+        }
+    }
+
+    public void evict(UUID id, String slug) {
+        articlesById.invalidate(id);
+        if (slug != null) {
+            idsBySlug.invalidate(slug);
+        }
+    }
+
+    // the tombstone goes in before the eviction, a put either lands before it and is evicted or sees the tombstone
+    public void evictDeleted(UUID id, String slug) {
+        deletedIds.put(id, Boolean.TRUE);
+        evict(id, slug);
+    }
+
+    /**
+     * Drops the author's snapshots that embed another username or name than the given ones, called when a user
+     * row changes. Snapshots are indexed by article only, so this walks the cache, user updates are rare enough.
+     * The feed pages don't say whose articles they hold, they are all dropped.
+     */
+    public void evictAuthor(UUID authorId, String username, String name) {
+        articlesById.asMap().values().removeIf(article -> {
+            ArticleVersion version = article.version();
+            boolean stale = authorId.equals(version.authorId())
+                    && !(Objects.equals(username, version.authorUsername()) && Objects.equals(name, version.authorName()));
+            if (stale) {
+                idsBySlug.invalidate(article.slug());
+            }
+            return stale;
+        });
+        evictFeeds();
+    }
+
+    public FeedSnapshot getFeedFirstPage(int size) {
+        return feedFirstPages.getIfPresent(size);
+    }
+
+    // read before querying the feed, and pass it back to putFeedFirstPage
+    public long feedGeneration() {
+        return feedGeneration.get();
+    }
+
+    public void putFeedFirstPage(int size, long generation, FeedSnapshot page) {
+        feedFirstPages.asMap().compute(size, (key, cached) ->
+                feedGeneration.get() == generation ? page : cached);
+    }
+
+    public void evictFeeds() {
+        feedGeneration.incrementAndGet();
+        feedFirstPages.invalidateAll();
+    }
+
+    public CacheStats stats() {
+        return articlesById.stats();
+    }
+
+    private static boolean isNewer(ArticleSnapshot cached, ArticleSnapshot loaded) {
+        LocalDateTime cachedAt = cached.version().updatedAt();
+        LocalDateTime loadedAt = loaded.version().updatedAt();
+        if (cachedAt == null || loadedAt == null) {
+            return false;
+        }
+        return cachedAt.isAfter(loadedAt);
+    }
+
+    static int weigh(ArticleSnapshot article) {
+        return (int) Math.min(Integer.MAX_VALUE, (long) ENTRY_OVERHEAD_BYTES + article.json().length);
+    }
+}
@@ -0,0 +1,56 @@
+package com.escritr.escritr.articles.service;
+
+import com.escritr.escritr.articles.controller.mappers.ArticleMapper;
+import com.escritr.escritr.articles.model.Article;
+import com.escritr.escritr.articles.repository.ArticleRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.UUID;
+
+// preloads the most recent articles, they are the ones the frontend renders right after a deploy
+@Component
+public class ArticleCacheWarmup {
+
+    private static final Logger log = LoggerFactory.getLogger(ArticleCacheWarmup.class);
+
+    private final ArticleRepository articleRepository;
+    private final ArticleMapper articleMapper;
+    private final ArticleCache articleCache;
+    private final ArticleSnapshotFactory snapshotFactory;
+
+    @Value("${articles.cache.warmup-size:0}")
+    private int warmupSize;
+
+    ArticleCacheWarmup(ArticleRepository articleRepository, ArticleMapper articleMapper, ArticleCache articleCache,
+                       ArticleSnapshotFactory snapshotFactory) {
+        this.articleRepository = articleRepository;
+        this.articleMapper = articleMapper;
+        this.articleCache = articleCache;
+        this.snapshotFactory = snapshotFactory;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (warmupSize <= 0) {
+            return;
+        }
+        try {
+            List<Article> recent = articleRepository.findAllByOrderByCreatedAtDescIdDesc(Limit.of(warmupSize));
+            for (Article article : recent) {
+                UUID authorId = article.getAuthor() == null ? null : article.getAuthor().getId();
+                articleCache.put(snapshotFactory.create(articleMapper.articleToResponseDTO(article), authorId));
+            }
+            log.info("Article cache warmed up with {} articles", recent.size());
+        } catch (Exception ex) {
+            // the cache fills itself on demand, a failed warm-up must not stop the application
+            log.warn("Article cache warm-up failed: {}", ex.getMessage());
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.escritr.escritr.articles.service;
+
+import com.escritr.escritr.common.helpers.HtmlParser;
+import com.escritr.escritr.common.helpers.ParsedContent;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+
+/**
+ * Runs HtmlParser.process behind a cache keyed by the sha-256 of the raw body, an editor saving the same
+ * body again (autosave, title-only edits) doesn't go through Jsoup a second time.
+ */
+@Component
+public class ArticleContentProcessor {
+
+    private static final int ENTRY_OVERHEAD_BYTES = 256;
+
+    private final Cache<String, ParsedContent> parsedByInputHash;
+
+    ArticleContentProcessor(
+            @Value("${articles.content-cache.max-weight-bytes:33554432}") long maxWeightBytes,
+            @Value("${articles.content-cache.ttl:PT30M}") Duration ttl,
+            MeterRegistry meterRegistry
+    ) {
+        this.parsedByInputHash = Caffeine.newBuilder()
+                .maximumWeight(maxWeightBytes)
+                .weigher((String hash, ParsedContent parsed) -> weigh(parsed))
+                .expireAfterAccess(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, parsedByInputHash, "articles.content");
+    }
+
+    public ParsedContent process(String rawContent) {
+        if (rawContent == null || rawContent.isBlank()) {
+            return ParsedContent.EMPTY;
+        }
+        return parsedByInputHash.get(HexFormat.of().formatHex(hash(rawContent)), key -> HtmlParser.process(rawContent));
+    }
+
+    public static byte[] hash(String content) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(content == null ? new byte[0] : content.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static int weigh(ParsedContent parsed) {
+        long chars = (long) parsed.sanitizedHtml().length() + parsed.plainText().length() + parsed.firstParagraph().length();
+        return (int) Math.min(Integer.MAX_VALUE, ENTRY_OVERHEAD_BYTES + chars * 2);
+    }
+}
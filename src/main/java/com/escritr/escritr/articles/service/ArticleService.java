@@ -1,39 +1,39 @@
 package com.escritr.escritr.articles.service;
 
 import com.escritr.escritr.articles.repository.ArticleRepository;
+import com.escritr.escritr.articles.revalidation.RevalidationDispatcher;
 import com.escritr.escritr.articles.controller.DTOs.ArticlePostDTO;
 import com.escritr.escritr.articles.controller.DTOs.ArticleResponseDTO;
+import com.escritr.escritr.articles.controller.DTOs.ArticleSummaryDTO;
+import com.escritr.escritr.articles.controller.DTOs.CursorPageDTO;
 import com.escritr.escritr.articles.controller.mappers.ArticleMapper;
 import com.escritr.escritr.articles.model.Article;
+import com.escritr.escritr.articles.model.ArticleSearchHit;
+import com.escritr.escritr.articles.model.ArticleVersion;
 import com.escritr.escritr.auth.model.UserDetailsImpl;
 import com.escritr.escritr.common.enums.ErrorAssetEnum;
 import com.escritr.escritr.common.enums.ErrorCodeEnum;
 import com.escritr.escritr.exceptions.AuthenticationTokenException;
+import com.escritr.escritr.exceptions.EntityConflictException;
 import com.escritr.escritr.exceptions.WrongParameterException;
 import com.escritr.escritr.user.domain.User;
 import com.escritr.escritr.user.repository.UserRepository;
 import com.escritr.escritr.common.helpers.HtmlParser;
+import com.escritr.escritr.common.helpers.ParsedContent;
 import com.escritr.escritr.exceptions.InternalServerErrorException;
 import com.escritr.escritr.exceptions.ResourceNotFoundException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ObjectNode;
 import jakarta.validation.Valid;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
-import org.springframework.http.HttpEntity;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.HttpMethod;
-import org.springframework.http.MediaType;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.web.bind.MethodArgumentNotValidException;
-import org.springframework.web.client.RestTemplate;
 
 import java.text.Normalizer;
 import java.time.LocalDateTime;
@@ -47,36 +47,42 @@ public class ArticleService {
     private static final Pattern WHITESPACE = Pattern.compile("[\\s]+");
     private static final Pattern EDGES_HYPHEN = Pattern.compile("(^-|-$)");
     private static final Pattern CONSECUTIVE_HYPHENS = Pattern.compile("-{2,}");
-    private static final int MAX_SLUG_ATTEMPTS = 100;
     private static final int MAX_TITLE_SIZE = 300;
     private static final int MAX_SUBTITLE_SIZE = 500;
+    static final int MAX_PAGE_SIZE = 50;
+    private static final int MAX_SEARCH_QUERY_SIZE = 200;
 
     private static final Logger log = LoggerFactory.getLogger(ArticleService.class);
 
-    @Value("${nextjs.revalidation.url}")
-    private String nextjsRevalidationUrl;
-
-    @Value("${nextjs.revalidation.secret}")
-    private String nextjsRevalidationSecret;
-
-
     private final ArticleRepository articleRepository;
 
     private final UserRepository userRepository;
     private final ArticleMapper articleMapper;
-    private final ObjectMapper objectMapper;
+    private final ArticleCache articleCache;
+    private final ArticleSnapshotFactory snapshotFactory;
+    private final RevalidationDispatcher revalidationDispatcher;
+    private final SlugAllocator slugAllocator;
+    private final ArticleContentProcessor contentProcessor;
 
 
     ArticleService(
             ArticleRepository articleRepository,
             ArticleMapper articleMapper,
             UserRepository userRepository,
-            ObjectMapper objectMapper
+            ArticleCache articleCache,
+            ArticleSnapshotFactory snapshotFactory,
+            RevalidationDispatcher revalidationDispatcher,
+            SlugAllocator slugAllocator,
+            ArticleContentProcessor contentProcessor
             ){
         this.articleRepository = articleRepository;
         this.userRepository = userRepository;
         this.articleMapper = articleMapper;
-        this.objectMapper = objectMapper;
+        this.articleCache = articleCache;
+        this.snapshotFactory = snapshotFactory;
+        this.revalidationDispatcher = revalidationDispatcher;
+        this.slugAllocator = slugAllocator;
+        this.contentProcessor = contentProcessor;
     }
 
     public ArticleResponseDTO create(@Valid ArticlePostDTO articlePostDTO, Authentication authentication){
@@ -123,20 +129,22 @@ public class ArticleService {
             }
 
 
-            article.setContent(HtmlParser.cleanContent(article.getContent()));
+            applyContent(article, article.getContent());
 
             article.setAuthor(author);
 
-            article.setFirstParagraph(HtmlParser.extractFirstParagraph(article.getContent()));
+            Article savedArticle = slugAllocator.saveWithUniqueSlug(article, this.generateSlug(article.getTitle()));
+            ArticleResponseDTO response = articleMapper.articleToResponseDTO(savedArticle);
 
-            String baseSlug = this.generateSlug(article.getTitle());
-            String uniqueSlug = this.ensureUniqueSlug(baseSlug,null);
-            article.setSlug(uniqueSlug);
+            this.articleCache.put(snapshotFactory.create(response, author.getId()));
+            this.articleCache.evictFeeds();
 
-            Article savedArticle = articleRepository.save(article);
+            revalidationDispatcher.enqueue(savedArticle.getSlug(), authenticatedUsername);
 
-            return articleMapper.articleToResponseDTO(savedArticle);
+            return response;
 
+        }catch(EntityConflictException ex){
+            throw ex;
         }catch(Exception ex){
             log.debug(ex.getMessage());
             throw new RuntimeException();
@@ -144,6 +152,19 @@ public class ArticleService {
 
     }
 
+    // the content is parsed once, the stored html, first paragraph and search text all come from that parse
+    private void applyContent(Article article, String rawContent){
+        ParsedContent parsed = contentProcessor.process(rawContent);
+        article.setContent(parsed.sanitizedHtml());
+        article.setFirstParagraph(parsed.firstParagraph());
+        article.setPlainText(parsed.plainText());
+        article.setContentHash(ArticleContentProcessor.hash(parsed.sanitizedHtml()));
+    }
+
+    private static UUID authorId(Article article){
+        return article.getAuthor() == null ? null : article.getAuthor().getId();
+    }
+
     private String extractUsername(Authentication authentication){
         String authenticatedUsername;
         Object principal = authentication.getPrincipal();
@@ -160,24 +181,141 @@ public class ArticleService {
 
 
 
-    public Page<ArticleResponseDTO> list(int page, int size){
-
-        Pageable pageable = PageRequest.of(page, size, Sort.by("createdAt").descending());
-        Page<Article> articles =  this.articleRepository.findAll(pageable);
+    public Page<ArticleSummaryDTO> list(int page, int size){
 
-        return articles.map(articleMapper::articleToResponseDTO);
+        Pageable pageable = PageRequest.of(page, clampPageSize(size), Sort.by("createdAt").descending());
+        return this.articleRepository.findSummaries(pageable);
     }
 
-    public ArticleResponseDTO find(UUID id){
+    public ArticleSnapshot find(UUID id){
+
+        ArticleSnapshot cached = this.articleCache.getById(id);
+        if(cached != null){
+            return cached;
+        }
 
         Article article = this.articleRepository.findById(id).orElseThrow(()-> new ResourceNotFoundException("no article with id:" + id));
-        return articleMapper.articleToResponseDTO(article);
+        ArticleSnapshot snapshot = snapshotFactory.create(articleMapper.articleToResponseDTO(article), authorId(article));
+        this.articleCache.put(snapshot);
+        return snapshot;
+    }
+
+    public Page<ArticleSummaryDTO> getArticlesByUsername(String username, int page, int size) {
+        Pageable pageable = PageRequest.of(page, clampPageSize(size), Sort.by("createdAt").descending());
+        return articleRepository.findSummariesByAuthorUsername(username, pageable);
+    }
+
+    public CursorPageDTO<ArticleSummaryDTO> listFeed(String cursor, int size){
+        int pageSize = clampPageSize(size);
+        // one extra row tells whether there is a next page without running a count(*)
+        Limit limit = Limit.of(pageSize + 1);
+
+        List<ArticleSummaryDTO> articles;
+        if(cursor == null || cursor.isBlank()){
+            articles = this.articleRepository.findFeed(limit);
+        }else{
+            ArticleCursor after = ArticleCursor.decode(cursor);
+            articles = this.articleRepository.findFeedAfter(after.createdAt(), after.id(), limit);
+        }
+
+        return toCursorPage(articles, pageSize);
     }
 
-    public Page<ArticleResponseDTO> getArticlesByUsername(String username, int page, int size) {
-        Pageable pageable = PageRequest.of(page, size, Sort.by("createdAt").descending());
-        Page<Article> articles = articleRepository.findByAuthorUsername(username, pageable);
-        return articles.map(articleMapper::articleToResponseDTO);
+    // the first page of the main feed is what every visitor of the home page requests, it is rendered once per write
+    public FeedSnapshot firstFeedPage(int size){
+        int pageSize = clampPageSize(size);
+
+        FeedSnapshot cached = this.articleCache.getFeedFirstPage(pageSize);
+        if(cached != null){
+            return cached;
+        }
+
+        long generation = this.articleCache.feedGeneration();
+        List<ArticleSummaryDTO> articles = this.articleRepository.findFeed(Limit.of(pageSize + 1));
+        FeedSnapshot snapshot = snapshotFactory.create(toCursorPage(articles, pageSize));
+        this.articleCache.putFeedFirstPage(pageSize, generation, snapshot);
+        return snapshot;
+    }
+
+    public CursorPageDTO<ArticleSummaryDTO> getArticlesByUsernameFeed(String username, String cursor, int size){
+        int pageSize = clampPageSize(size);
+        Limit limit = Limit.of(pageSize + 1);
+
+        List<ArticleSummaryDTO> articles;
+        if(cursor == null || cursor.isBlank()){
+            articles = this.articleRepository.findFeedByAuthorUsername(username, limit);
+        }else{
+            ArticleCursor after = ArticleCursor.decode(cursor);
+            articles = this.articleRepository.findFeedByAuthorUsernameAfter(username, after.createdAt(), after.id(), limit);
+        }
+
+        return toCursorPage(articles, pageSize);
+    }
+
+    public CursorPageDTO<ArticleSummaryDTO> search(String query, String cursor, int size){
+        if(query == null || query.isBlank()){
+            throw new WrongParameterException("search query is required", ErrorAssetEnum.ARTICLE, ErrorCodeEnum.INPUT_FORMAT_ERROR);
+        }
+        if(query.length() > MAX_SEARCH_QUERY_SIZE){
+            throw new WrongParameterException("search query is too long", ErrorAssetEnum.ARTICLE, ErrorCodeEnum.INPUT_FORMAT_ERROR);
+        }
+        int pageSize = clampPageSize(size);
+
+        List<ArticleSearchHit> hits;
+        if(cursor == null || cursor.isBlank()){
+            hits = this.articleRepository.search(query, pageSize + 1);
+        }else{
+            SearchCursor after = SearchCursor.decode(cursor);
+            hits = this.articleRepository.searchAfter(query, after.rank(), after.id(), pageSize + 1);
+        }
+
+        boolean hasNext = hits.size() > pageSize;
+        List<ArticleSearchHit> pageHits = hasNext ? hits.subList(0, pageSize) : hits;
+        if(pageHits.isEmpty()){
+            return new CursorPageDTO<>(List.of(), null, false);
+        }
+
+        // the IN query doesn't keep the rank order, put the summaries back in it
+        Map<UUID, ArticleSummaryDTO> summaries = new HashMap<>();
+        for(ArticleSummaryDTO summary : this.articleRepository.findSummariesByIdIn(pageHits.stream().map(ArticleSearchHit::getId).toList())){
+            summaries.put(summary.id(), summary);
+        }
+        List<ArticleSummaryDTO> page = new ArrayList<>(pageHits.size());
+        for(ArticleSearchHit hit : pageHits){
+            ArticleSummaryDTO summary = summaries.get(hit.getId());
+            // deleted between the two queries
+            if(summary != null){
+                page.add(summary);
+            }
+        }
+
+        String nextCursor = null;
+        if(hasNext){
+            ArticleSearchHit last = pageHits.get(pageHits.size() - 1);
+            nextCursor = new SearchCursor(last.getRank(), last.getId()).encode();
+        }
+
+        return new CursorPageDTO<>(page, nextCursor, hasNext);
+    }
+
+    private CursorPageDTO<ArticleSummaryDTO> toCursorPage(List<ArticleSummaryDTO> articles, int pageSize){
+        boolean hasNext = articles.size() > pageSize;
+        List<ArticleSummaryDTO> page = hasNext ? List.copyOf(articles.subList(0, pageSize)) : articles;
+
+        String nextCursor = null;
+        if(hasNext){
+            ArticleSummaryDTO last = page.get(page.size() - 1);
+            nextCursor = new ArticleCursor(LocalDateTime.parse(last.createdAt()), last.id()).encode();
+        }
+
+        return new CursorPageDTO<>(page, nextCursor, hasNext);
+    }
+
+    private int clampPageSize(int size){
+        if(size < 1){
+            throw new WrongParameterException("size must be greater than zero", ErrorAssetEnum.ARTICLE, ErrorCodeEnum.INPUT_FORMAT_ERROR);
+        }
+        return Math.min(size, MAX_PAGE_SIZE);
     }
 
     public ArticleResponseDTO update(UUID id, @Valid ArticlePostDTO dto,Authentication authentication){
@@ -215,7 +353,10 @@ public class ArticleService {
             article.setSubtitle(HtmlParser.cleanNormalText(dto.subtitle()));
         }
 
-        article.setContent(HtmlParser.cleanContent(dto.content()));
+        // the editor sends back the stored body when only the title or thumbnail changed, it is already sanitized
+        if(!Arrays.equals(ArticleContentProcessor.hash(dto.content()), article.getContentHash())){
+            applyContent(article, dto.content());
+        }
         article.setAuthor(author);
         article.setUpdatedAt(LocalDateTime.now());
 
@@ -223,13 +364,17 @@ public class ArticleService {
             article.setThumbnailUrl(dto.thumbnailUrl());
         }
 
-        article.setFirstParagraph(HtmlParser.extractFirstParagraph(article.getContent()));
         log.info("saving content:{}",article.getContent());
         Article savedArticle = articleRepository.save(article);
+        ArticleResponseDTO response = articleMapper.articleToResponseDTO(savedArticle);
+
+        this.articleCache.evict(savedArticle.getId(), savedArticle.getSlug());
+        this.articleCache.put(snapshotFactory.create(response, author.getId()));
+        this.articleCache.evictFeeds();
 
-        triggerNextJsRevalidation(savedArticle.getSlug(),authenticatedUsername);
+        revalidationDispatcher.enqueue(savedArticle.getSlug(),authenticatedUsername);
 
-        return articleMapper.articleToResponseDTO(savedArticle);
+        return response;
 
         }catch(Exception ex){
             log.debug(ex.getMessage());
@@ -240,42 +385,34 @@ public class ArticleService {
 
     }
 
-    public void triggerNextJsRevalidation(String articleSlug,String username) {
-        RestTemplate restTemplate = new RestTemplate();
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_JSON);
-        headers.set("x-revalidation-secret", nextjsRevalidationSecret);
-
-
-        String requestBodyJson;
-        try {
-            //JSON object using Jackson
-            Map<String, Object> requestBodyMap = new HashMap<>();
-            requestBodyMap.put("articleSlug", articleSlug);
-            if (username != null && !username.trim().isEmpty()) {
-                requestBodyMap.put("username", username);
-            }
-            requestBodyJson = objectMapper.writeValueAsString(requestBodyMap);
-        } catch (Exception e) {
-            log.error("Error creating JSON request body for revalidation (slug: {}, username: {}): {}",
-                    articleSlug, username, e.getMessage(), e);
-            return;
+    // validators for conditional GETs, served from the cache or from a query that doesn't load the content
+    public ArticleVersion findVersionBySlug(String slug){
+        ArticleSnapshot cached = this.articleCache.getBySlug(slug);
+        if(cached != null){
+            return cached.version();
         }
+        return this.articleRepository.findVersionBySlug(slug).orElseThrow(()-> new ResourceNotFoundException("No article found with slug:" + slug));
+    }
 
+    public ArticleVersion findVersion(UUID id){
+        ArticleSnapshot cached = this.articleCache.getById(id);
+        if(cached != null){
+            return cached.version();
+        }
+        return this.articleRepository.findVersionById(id).orElseThrow(()-> new ResourceNotFoundException("no article with id:" + id));
+    }
 
-        HttpEntity<String> entity = new HttpEntity<>(requestBodyJson, headers);
+    public ArticleSnapshot findBySlug(String slug){
 
-        try {
-            restTemplate.exchange(nextjsRevalidationUrl, HttpMethod.POST, entity, String.class);
-            log.info("Successfully triggered revalidation for slug: {}",articleSlug);
-        } catch (Exception e) {
-            log.error("Error triggering Next.js revalidation for slug {} : {}",articleSlug,e.getMessage());
+        ArticleSnapshot cached = this.articleCache.getBySlug(slug);
+        if(cached != null){
+            return cached;
         }
-    }
 
-    public ArticleResponseDTO findBySlug(String slug){
         Article article = this.articleRepository.findBySlug(slug).orElseThrow(()-> new ResourceNotFoundException("No article found with slug:" + slug));
-        return articleMapper.articleToResponseDTO(article);
+        ArticleSnapshot snapshot = snapshotFactory.create(articleMapper.articleToResponseDTO(article), authorId(article));
+        this.articleCache.put(snapshot);
+        return snapshot;
     }
 
     public void delete(UUID id,Authentication authentication){
@@ -298,6 +435,9 @@ public class ArticleService {
 
         log.info("deleting article->user from dto:{}, user from token:{}",article.getAuthor().getUsername(),authenticatedUsername);
         this.articleRepository.delete(article);
+        this.articleCache.evictDeleted(article.getId(), article.getSlug());
+        this.articleCache.evictFeeds();
+        revalidationDispatcher.enqueue(article.getSlug(), authenticatedUsername);
     }
 
     private String generateSlug(String title){
@@ -321,27 +461,6 @@ public class ArticleService {
 
     }
 
-    private String ensureUniqueSlug(String baseSlug, UUID articleIdToExcludeFromCheck) {
-        String candidateSlug = baseSlug;
-
-        for (int attempt = 0; attempt < MAX_SLUG_ATTEMPTS; attempt++) {
-            if (attempt > 0) {
-                candidateSlug = baseSlug + "-" + attempt;
-            }
-
-            log.debug("Attempt {}: Checking uniqueness for slug '{}'", attempt + 1, candidateSlug);
-            Optional<Article> existing = articleRepository.findBySlug(candidateSlug);
-
-            if (existing.isEmpty() || (articleIdToExcludeFromCheck != null && existing.get().getId().equals(articleIdToExcludeFromCheck))) {
-                log.info("Unique slug found: '{}'", candidateSlug);
-                return candidateSlug;
-            }
-        }
-
-        log.warn("Could not generate a unique slug for base '{}' after {} attempts.", baseSlug, MAX_SLUG_ATTEMPTS);
-        // generate a slug with a random suffix here as a fallback,
-        return baseSlug + "-" + UUID.randomUUID().toString().substring(0,8);
-    }
 
 
 
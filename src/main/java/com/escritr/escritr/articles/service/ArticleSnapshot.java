@@ -0,0 +1,12 @@
+package com.escritr.escritr.articles.service;
+
+import com.escritr.escritr.articles.model.ArticleVersion;
+
+import java.util.UUID;
+
+/**
+ * Canonical UTF-8 JSON of an ArticleResponseDTO, rendered once when the article is loaded or saved
+ * and written as-is to every response that reads it.
+ */
+public record ArticleSnapshot(UUID id, String slug, ArticleVersion version, byte[] json) {
+}
@@ -0,0 +1,53 @@
+package com.escritr.escritr.articles.service;
+
+import com.escritr.escritr.articles.controller.DTOs.ArticleResponseDTO;
+import com.escritr.escritr.articles.controller.DTOs.ArticleSummaryDTO;
+import com.escritr.escritr.articles.controller.DTOs.AuthorResponseDTO;
+import com.escritr.escritr.articles.controller.DTOs.CursorPageDTO;
+import com.escritr.escritr.articles.model.ArticleVersion;
+import com.escritr.escritr.common.helpers.ETagGenerator;
+import com.escritr.escritr.exceptions.InternalServerErrorException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+// renders snapshots with the same ObjectMapper Spring MVC uses, so the bytes match what Jackson would write per request
+@Component
+public class ArticleSnapshotFactory {
+
+    private static final Logger log = LoggerFactory.getLogger(ArticleSnapshotFactory.class);
+
+    private final ObjectMapper objectMapper;
+
+    ArticleSnapshotFactory(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    // the author id is not in the response, it is what ArticleCache.evictAuthor finds the author's snapshots by
+    public ArticleSnapshot create(ArticleResponseDTO article, UUID authorId) {
+        LocalDateTime updatedAt = article.updatedAt() == null ? null : LocalDateTime.parse(article.updatedAt());
+        AuthorResponseDTO author = article.author();
+        ArticleVersion version = new ArticleVersion(article.id(), updatedAt, authorId,
+                author == null ? null : author.username(), author == null ? null : author.name());
+        return new ArticleSnapshot(article.id(), article.slug(), version, render(article));
+    }
+
+    public FeedSnapshot create(CursorPageDTO<ArticleSummaryDTO> page) {
+        byte[] json = render(page);
+        return new FeedSnapshot(ETagGenerator.strong(json), json);
+    }
+
+    private byte[] render(Object value) {
+        try {
+            return objectMapper.writeValueAsBytes(value);
+        } catch (JsonProcessingException e) {
+            log.error("Could not render JSON snapshot: {}", e.getMessage());
+            throw new InternalServerErrorException("An internal error have occurred");
+        }
+    }
+}
@@ -0,0 +1,5 @@
+package com.escritr.escritr.articles.service;
+
+// rendered JSON of a feed first page, with a validator over those exact bytes
+public record FeedSnapshot(String eTag, byte[] json) {
+}
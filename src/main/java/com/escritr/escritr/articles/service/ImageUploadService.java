@@ -0,0 +1,98 @@
+package com.escritr.escritr.articles.service;
+
+import com.escritr.escritr.articles.repository.ImageUploadRepository;
+import com.escritr.escritr.auth.model.UserDetailsImpl;
+import com.escritr.escritr.aws.s3.S3Service;
+import com.escritr.escritr.aws.s3.UploadedFile;
+import com.escritr.escritr.common.enums.ErrorAssetEnum;
+import com.escritr.escritr.common.enums.ErrorCodeEnum;
+import com.escritr.escritr.exceptions.AuthenticationTokenException;
+import com.escritr.escritr.exceptions.ResourceNotFoundException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Editor images and who holds them. Uploads are stored under their digest, so users uploading the same bytes
+ * share one object: every upload records its user in image_uploads, a delete drops the caller's row and the
+ * object (with its variants) is only removed from the bucket once no row is left for the key.
+ * An upload's row is written under the key's advisory lock before the bucket is asked whether the key is stored,
+ * and the last release holds that lock until the object is gone: a re-upload racing it either keeps the object
+ * or finds it deleted and stores it again, it is never answered with an object that is about to go.
+ */
+@Service
+public class ImageUploadService {
+
+    private static final Logger log = LoggerFactory.getLogger(ImageUploadService.class);
+
+    private enum Release { KEPT, DELETED, MISSING }
+
+    private final S3Service s3Service;
+    private final ImageUploadRepository imageUploadRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    ImageUploadService(S3Service s3Service, ImageUploadRepository imageUploadRepository, TransactionTemplate transactionTemplate) {
+        this.s3Service = s3Service;
+        this.imageUploadRepository = imageUploadRepository;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    public CompletableFuture<UploadedFile> upload(MultipartFile file, Authentication authentication) {
+        UUID userId = userId(authentication);
+        return s3Service.upload(file, key -> claim(key, userId));
+    }
+
+    // true when other users held the key already
+    private boolean claim(String key, UUID userId) {
+        return Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+            imageUploadRepository.lockObjectKey(key);
+            imageUploadRepository.insertIfAbsent(UUID.randomUUID(), key, userId);
+            return imageUploadRepository.countByObjectKey(key) > 1;
+        }));
+    }
+
+    /**
+     * Completes with true when the object was removed from the bucket, with false when other users still hold it,
+     * and fails with ResourceNotFoundException when there was nothing under the key. The S3 delete is waited for
+     * on the calling thread, inside the transaction that holds the key's lock.
+     */
+    public CompletableFuture<Boolean> delete(String fileKey, Authentication authentication) {
+        UUID userId = userId(authentication);
+        Release release;
+        try {
+            release = transactionTemplate.execute(status -> {
+                imageUploadRepository.lockObjectKey(fileKey);
+                imageUploadRepository.deleteByObjectKeyAndUserId(fileKey, userId);
+                if (imageUploadRepository.existsByObjectKey(fileKey)) {
+                    return Release.KEPT;
+                }
+                return s3Service.deleteFile(fileKey).join() ? Release.DELETED : Release.MISSING;
+            });
+        } catch (CompletionException e) {
+            return CompletableFuture.failedFuture(e.getCause());
+        }
+        return switch (release) {
+            case KEPT -> {
+                log.info("File {} is still held by other uploads, keeping it.", fileKey);
+                yield CompletableFuture.completedFuture(false);
+            }
+            case DELETED -> CompletableFuture.completedFuture(true);
+            case MISSING -> CompletableFuture.failedFuture(new ResourceNotFoundException("No file found with key:" + fileKey));
+        };
+    }
+
+    private static UUID userId(Authentication authentication) {
+        if (authentication == null || !authentication.isAuthenticated()
+                || !(authentication.getPrincipal() instanceof UserDetailsImpl user)) {
+            throw new AuthenticationTokenException("Not authorized", ErrorAssetEnum.STORAGE, ErrorCodeEnum.INVALID_CREDENTIALS);
+        }
+        return user.getId();
+    }
+}
@@ -0,0 +1,40 @@
+package com.escritr.escritr.articles.service;
+
+import com.escritr.escritr.common.enums.ErrorAssetEnum;
+import com.escritr.escritr.common.enums.ErrorCodeEnum;
+import com.escritr.escritr.exceptions.WrongParameterException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Position of the last article of a search page, (rank, id) is the sort key of the results.
+ * The rank is the float Postgres returned, Float.toString round-trips it exactly.
+ */
+public record SearchCursor(float rank, UUID id) {
+
+    private static final String SEPARATOR = "|";
+
+    public String encode() {
+        String raw = Float.toString(rank) + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static SearchCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.indexOf(SEPARATOR);
+            if (separator < 0) {
+                throw new IllegalArgumentException("missing separator");
+            }
+            float rank = Float.parseFloat(raw.substring(0, separator));
+            if (!Float.isFinite(rank)) {
+                throw new IllegalArgumentException("invalid rank");
+            }
+            return new SearchCursor(rank, UUID.fromString(raw.substring(separator + 1)));
+        } catch (RuntimeException ex) {
+            throw new WrongParameterException("invalid cursor", ErrorAssetEnum.ARTICLE, ErrorCodeEnum.INPUT_FORMAT_ERROR);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.escritr.escritr.articles.service;
+
+import com.escritr.escritr.articles.model.Article;
+import com.escritr.escritr.articles.repository.ArticleRepository;
+import com.escritr.escritr.exceptions.EntityConflictException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Gives new articles a unique slug: "base", else the first free "base-n".
+ * The taken suffixes come from a single prefix query, and uk_article_slug settles concurrent creates:
+ * the insert is optimistic and a creator that lost the race allocates again.
+ */
+@Component
+public class SlugAllocator {
+
+    private static final Logger log = LoggerFactory.getLogger(SlugAllocator.class);
+
+    static final int MAX_INSERT_ATTEMPTS = 5;
+
+    private final ArticleRepository articleRepository;
+
+    SlugAllocator(ArticleRepository articleRepository) {
+        this.articleRepository = articleRepository;
+    }
+
+    public String allocate(String baseSlug) {
+        return nextFree(baseSlug, articleRepository.findSlugsWithPrefix(baseSlug, escapeLike(baseSlug) + "-%"));
+    }
+
+    /**
+     * Inserts the article under the first free slug for baseSlug, retrying when another create takes it first.
+     * Once MAX_INSERT_ATTEMPTS are lost, a random suffix is used, as the sequential slug is too contended.
+     */
+    public Article saveWithUniqueSlug(Article article, String baseSlug) {
+        for (int attempt = 1; attempt <= MAX_INSERT_ATTEMPTS + 1; attempt++) {
+            String slug = attempt <= MAX_INSERT_ATTEMPTS
+                    ? allocate(baseSlug)
+                    : baseSlug + "-" + UUID.randomUUID().toString().substring(0, 8);
+            article.setSlug(slug);
+            try {
+                return articleRepository.saveAndFlush(article);
+            } catch (DataIntegrityViolationException ex) {
+                // the failed insert already assigned an id, the next attempt must persist a new row
+                article.setId(null);
+                if (!articleRepository.existsBySlug(slug)) {
+                    throw ex;
+                }
+                log.debug("Slug '{}' was taken by a concurrent create, attempt {}", slug, attempt);
+            }
+        }
+        throw new EntityConflictException("Could not allocate a unique slug for: " + baseSlug, null);
+    }
+
+    static String nextFree(String baseSlug, Collection<String> taken) {
+        if (!taken.contains(baseSlug)) {
+            return baseSlug;
+        }
+        String prefix = baseSlug + "-";
+        Set<Integer> suffixes = new HashSet<>();
+        for (String slug : taken) {
+            if (slug.length() > prefix.length() && slug.startsWith(prefix)) {
+                parseSuffix(slug.substring(prefix.length()), suffixes);
+            }
+        }
+        int suffix = 1;
+        while (suffixes.contains(suffix)) {
+            suffix++;
+        }
+        return prefix + suffix;
+    }
+
+    // "my-title-2" counts, "my-title-part-2" and "my-title-02" are other titles
+    private static void parseSuffix(String value, Set<Integer> suffixes) {
+        if (value.length() > 9 || value.charAt(0) == '0') {
+            return;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            if (!Character.isDigit(value.charAt(i))) {
+                return;
+            }
+        }
+        suffixes.add(Integer.parseInt(value));
+    }
+
+    static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
@@ -0,0 +1,73 @@
+package com.escritr.escritr.auth.config;
+
+import com.escritr.escritr.auth.service.AuthRateLimiter;
+import com.escritr.escritr.common.enums.ErrorAssetEnum;
+import com.escritr.escritr.common.enums.ErrorCodeEnum;
+import com.escritr.escritr.common.helpers.ErrorMessage;
+import com.escritr.escritr.exceptions.TooManyRequestsException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Rejects with 429 the clients that call the credential endpoints faster than auth.rate-limit.ip allows,
+ * before anything else (JWT, database, BCrypt) is spent on them.
+ * The client address is request.getRemoteAddr(), behind a proxy server.forward-headers-strategy must be set
+ * so it is the client's and not the proxy's.
+ */
+@Component
+public class AuthRateLimitFilter extends OncePerRequestFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(AuthRateLimitFilter.class);
+
+    private final AuthRateLimiter authRateLimiter;
+    private final ObjectMapper objectMapper;
+
+    public AuthRateLimitFilter(AuthRateLimiter authRateLimiter, ObjectMapper objectMapper) {
+        this.authRateLimiter = authRateLimiter;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return !(path.equals("/api/auth/login")
+                || path.equals("/api/auth/register")
+                || path.startsWith("/api/auth/check-email/")
+                || path.startsWith("/api/auth/check-username/"));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+
+        long waitNanos = authRateLimiter.acquireForIp(request.getRemoteAddr());
+        if (waitNanos == 0) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        long retryAfter = TooManyRequestsException.toRetryAfterSeconds(waitNanos);
+        logger.warn("Rate limit exceeded for {} on {}, retry after {}s", request.getRemoteAddr(), request.getRequestURI(), retryAfter);
+
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(retryAfter));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getWriter(), new ErrorMessage(
+                "Too many requests. Please try again later.",
+                ErrorAssetEnum.AUTHENTICATION,
+                ErrorCodeEnum.TOO_MANY_REQUESTS
+        ));
+    }
+}
@@ -1,9 +1,9 @@
 package com.escritr.escritr.auth.config;
 import com.escritr.escritr.auth.controller.DTOs.DecodedToken;
+import com.escritr.escritr.auth.model.CachedUser;
 import com.escritr.escritr.auth.service.TokenService;
 import com.escritr.escritr.auth.model.UserDetailsImpl;
-import com.escritr.escritr.user.domain.User;
-import com.escritr.escritr.user.repository.UserRepository;
+import com.escritr.escritr.auth.service.UserSessionCache;
 import com.escritr.escritr.exceptions.AuthenticationTokenException;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
@@ -12,12 +12,16 @@ import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.context.SecurityContextHolderStrategy;
 import org.springframework.stereotype.Component;
+import org.springframework.util.function.SingletonSupplier;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
 import java.util.Optional;
+import java.util.function.Supplier;
 
 @Component // Make sure it's a Spring component
 public class JwtFilter extends OncePerRequestFilter {
@@ -25,11 +29,12 @@ public class JwtFilter extends OncePerRequestFilter {
     private static final Logger logger = LoggerFactory.getLogger(JwtFilter.class);
 
     private final TokenService tokenService; // Inject these
-    private final UserRepository userRepository;
+    private final UserSessionCache userSessionCache;
+    private SecurityContextHolderStrategy securityContextHolderStrategy = SecurityContextHolder.getContextHolderStrategy();
 
-    public JwtFilter(TokenService tokenService, UserRepository userRepository) {
+    public JwtFilter(TokenService tokenService, UserSessionCache userSessionCache) {
         this.tokenService = tokenService;
-        this.userRepository = userRepository;
+        this.userSessionCache = userSessionCache;
     }
 
     private String getTokenFromHeader(HttpServletRequest request) {
@@ -47,40 +52,15 @@ public class JwtFilter extends OncePerRequestFilter {
         String token = this.getTokenFromHeader(request);
 
         if (token != null) {
-            try {
-                DecodedToken decodedJWT = tokenService.decodeToken(token); // This might throw AuthenticationTokenException
-
-                Optional<User> userOpt = userRepository.findById(decodedJWT.userId());
-
-                if (userOpt.isPresent()) {
-                    User user = userOpt.get();
-                    if (user.getTokenVersion() == decodedJWT.tokenVersion()) {
-                        UserDetailsImpl userDetails = new UserDetailsImpl(user);
-                        UsernamePasswordAuthenticationToken auth = new UsernamePasswordAuthenticationToken(
-                                userDetails, null, userDetails.getAuthorities()
-                        );
-                        SecurityContextHolder.getContext().setAuthentication(auth);
-                        logger.debug("Authentication successful for user: {}", user.getUsername());
-                    } else {
-                        logger.warn("Token version mismatch for user: {}. Clearing context.", user.getUsername());
-                        SecurityContextHolder.clearContext();
-                    }
-                } else {
-                    logger.warn("User ID from token not found: {}. Clearing context.", decodedJWT.userId());
-                    SecurityContextHolder.clearContext();
-                }
-            } catch (AuthenticationTokenException e) {
-                logger.warn("JWT Authentication failed: {}. Clearing context.", e.getMessage());
-                SecurityContextHolder.clearContext();
-            } catch (Exception e) {
-                // Catching general exceptions during token processing
-                logger.error("Unexpected error during JWT processing: {}. Clearing context.", e.getMessage(), e);
-                SecurityContextHolder.clearContext();
-            }
+            // The token is decoded and the user looked up only when something reads the authentication:
+            // the authorization check of a protected route, an Authentication argument, @AuthenticationPrincipal.
+            // permitAll routes never read it, so public traffic carrying a token pays nothing for it.
+            Supplier<SecurityContext> unauthenticated = securityContextHolderStrategy.getDeferredContext();
+            Supplier<SecurityContext> deferredContext = SingletonSupplier.of(() -> authenticate(token, unauthenticated));
+            securityContextHolderStrategy.setDeferredContext(deferredContext);
         } else {
+            // No token, the context the chain set up so far (anonymous) stays as it is.
             logger.trace("No JWT token found in request header for path: {}", request.getRequestURI());
-            // No token, so no authentication to set. SecurityContext remains empty.
-            SecurityContextHolder.clearContext();
         }
 
         // ALWAYS continue the filter chain.
@@ -88,4 +68,42 @@ public class JwtFilter extends OncePerRequestFilter {
         // can access the endpoint based on permitAll() or authenticated().
         filterChain.doFilter(request, response);
     }
+
+    // an invalid token leaves the request as if it carried none: the context set up before this filter (anonymous)
+    private SecurityContext authenticate(String token, Supplier<SecurityContext> unauthenticated) {
+        try {
+            DecodedToken decodedJWT = tokenService.decodeToken(token); // This might throw AuthenticationTokenException
+
+            // served from memory in the steady state, the users table is only read on a miss
+            Optional<CachedUser> userOpt = userSessionCache.get(decodedJWT.userId());
+
+            if (userOpt.isPresent()) {
+                CachedUser user = userOpt.get();
+                if (user.tokenVersion() == decodedJWT.tokenVersion()) {
+                    UserDetailsImpl userDetails = new UserDetailsImpl(user.toUser());
+                    UsernamePasswordAuthenticationToken auth = new UsernamePasswordAuthenticationToken(
+                            userDetails, null, userDetails.getAuthorities()
+                    );
+                    SecurityContext context = securityContextHolderStrategy.createEmptyContext();
+                    context.setAuthentication(auth);
+                    logger.debug("Authentication successful for user: {}", user.username());
+                    return context;
+                } else {
+                    logger.warn("Token version mismatch for user: {}. Leaving request unauthenticated.", user.username());
+                }
+            } else {
+                logger.warn("User ID from token not found: {}. Leaving request unauthenticated.", decodedJWT.userId());
+            }
+        } catch (AuthenticationTokenException e) {
+            logger.warn("JWT Authentication failed: {}. Leaving request unauthenticated.", e.getMessage());
+        } catch (Exception e) {
+            // Catching general exceptions during token processing
+            logger.error("Unexpected error during JWT processing: {}. Leaving request unauthenticated.", e.getMessage(), e);
+        }
+        return unauthenticated.get();
+    }
+
+    public void setSecurityContextHolderStrategy(SecurityContextHolderStrategy securityContextHolderStrategy) {
+        this.securityContextHolderStrategy = securityContextHolderStrategy;
+    }
 }
@@ -4,7 +4,6 @@ import com.escritr.escritr.auth.model.RefreshToken;
 import com.escritr.escritr.auth.model.UserDetailsImpl;
 import com.escritr.escritr.auth.service.TokenService;
 import com.escritr.escritr.user.domain.User;
-import com.escritr.escritr.user.repository.UserRepository;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
@@ -28,7 +27,6 @@ public class OAuth2LoginSuccessHandler extends SimpleUrlAuthenticationSuccessHan
 
 
     private final TokenService tokenService;
-    private final UserRepository userRepository;
 
     @Value("${frontend.oauth2.redirect-url}")
     private String frontendRedirectUrl;
@@ -48,9 +46,8 @@ public class OAuth2LoginSuccessHandler extends SimpleUrlAuthenticationSuccessHan
     @Value("${api.security.token.domain.value:}")
     private String cookieDomain;
 
-    public OAuth2LoginSuccessHandler(TokenService tokenService,UserRepository userRepository){
+    public OAuth2LoginSuccessHandler(TokenService tokenService){
         this.tokenService = tokenService;
-        this.userRepository = userRepository;
     }
 
     @Override
@@ -62,11 +59,8 @@ public class OAuth2LoginSuccessHandler extends SimpleUrlAuthenticationSuccessHan
         UserDetailsImpl userDetails = (UserDetailsImpl) authentication.getPrincipal();
         User user = userDetails.getUser();
 
-        // Invalidate old sessions and generate new tokens
-        user.incrementTokenVersion(); // Invalidate tokens from previous sessions
-        userRepository.save(user);
-        // TODO: TokenService.createRefreshToken may need to save the user if token version changed.
-
+        // a login is one more session, like a password login: the token version is only bumped by logout-all,
+        // createRefreshToken ends the oldest session past max-sessions-per-user
         String accessToken = tokenService.generateAccessToken(user);
         RefreshToken refreshToken = tokenService.createRefreshToken(user);
 
@@ -1,6 +1,9 @@
 package com.escritr.escritr.auth.config;
 import com.escritr.escritr.auth.service.CustomOidcUserService;
 import com.escritr.escritr.auth.service.MyUserDetailsService;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.DispatcherType;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
@@ -13,8 +16,9 @@ import org.springframework.security.config.annotation.web.configurers.AbstractHt
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.oauth2.client.web.OAuth2AuthorizationRequestRedirectFilter;
 import org.springframework.security.web.SecurityFilterChain;
-import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
+import org.springframework.security.web.session.SessionManagementFilter;
 
 @Configuration
 @EnableWebSecurity
@@ -22,6 +26,7 @@ public class SecurityConfig {
 
     private final MyUserDetailsService myUserDetailsService;
     private final JwtFilter jwtFilter;
+    private final AuthRateLimitFilter authRateLimitFilter;
     private final CustomAuthenticationEntryPoint customAuthenticationEntryPoint;
     private final CustomOidcUserService customOidcUserService; // Use the new OIDC service
     private final OAuth2LoginSuccessHandler oAuth2LoginSuccessHandler;
@@ -30,12 +35,14 @@ public class SecurityConfig {
 
     public SecurityConfig(MyUserDetailsService myUserDetailsService,
                           JwtFilter jwtFilter,
+                          AuthRateLimitFilter authRateLimitFilter,
                           CustomAuthenticationEntryPoint customAuthenticationEntryPoint,
                           CustomOidcUserService customOidcUserService, // Inject CustomOidcUserService
                           OAuth2LoginSuccessHandler oAuth2LoginSuccessHandler,
                           OAuth2LoginFailureHandler oAuth2LoginFailureHandler) {
         this.myUserDetailsService = myUserDetailsService;
         this.jwtFilter = jwtFilter;
+        this.authRateLimitFilter = authRateLimitFilter;
         this.customAuthenticationEntryPoint = customAuthenticationEntryPoint;
         this.customOidcUserService = customOidcUserService; // Assign
         this.oAuth2LoginSuccessHandler = oAuth2LoginSuccessHandler;
@@ -49,6 +56,10 @@ public class SecurityConfig {
                 .csrf(AbstractHttpConfigurer::disable)
                 .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
                 .authorizeHttpRequests(auth -> auth
+                        // the async dispatch of a CompletableFuture result was authorized on the initial request,
+                        // and JwtFilter doesn't run again for it
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
+                        .requestMatchers(HttpMethod.POST, "/api/auth/logout-all").authenticated()
                         .requestMatchers(
                                 "/api/auth/**",
                                 "/api/articles/slug/**",
@@ -56,7 +67,7 @@ public class SecurityConfig {
                                 "/oauth2/**",
                                 "/login/oauth2/code/*"
                         ).permitAll()
-                        .requestMatchers(HttpMethod.GET, "/api/articles", "/api/articles/user/{username}").permitAll()
+                        .requestMatchers(HttpMethod.GET, "/api/articles", "/api/articles/feed", "/api/articles/search", "/api/articles/user/{username}", "/api/articles/user/{username}/feed").permitAll()
                         .requestMatchers(HttpMethod.GET, "/api/articles/{username}").permitAll()
                         .anyRequest().authenticated()
                 )
@@ -67,7 +78,11 @@ public class SecurityConfig {
                         .successHandler(oAuth2LoginSuccessHandler)
                         .failureHandler(oAuth2LoginFailureHandler)
                 )
-                .addFilterBefore(jwtFilter, UsernamePasswordAuthenticationFilter.class)
+                // throttled clients are turned away before any authentication work
+                .addFilterBefore(authRateLimitFilter, OAuth2AuthorizationRequestRedirectFilter.class)
+                // after SessionManagementFilter, which reads the authentication of every request: the deferred
+                // context JwtFilter installs must only be resolved by what actually needs the user
+                .addFilterAfter(jwtFilter, SessionManagementFilter.class)
                 .userDetailsService(myUserDetailsService)
                 .exceptionHandling(exceptions ->
                         exceptions.authenticationEntryPoint(customAuthenticationEntryPoint)
@@ -80,8 +95,15 @@ public class SecurityConfig {
         return authenticationConfiguration.getAuthenticationManager();
     }
 
+    // used by the AuthenticationManager for logins and by registration, see BoundedPasswordEncoder
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder passwordEncoder(
+            @Value("${auth.password.bcrypt-strength:10}") int strength,
+            @Value("${auth.password.hashing-threads:0}") int threads,
+            @Value("${auth.password.hashing-queue-capacity:64}") int queueCapacity,
+            MeterRegistry meterRegistry) {
+        // by default half the cores, the other half stays available for everything else
+        int poolSize = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        return new BoundedPasswordEncoder(new BCryptPasswordEncoder(strength), poolSize, queueCapacity, meterRegistry);
     }
 }
\ No newline at end of file
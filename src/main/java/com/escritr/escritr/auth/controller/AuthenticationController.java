@@ -156,6 +156,31 @@ public class AuthenticationController {
                 .body("Logout successful");
     }
 
+    // ends every session of the user, this device's included
+    @PostMapping("/logout-all")
+    public ResponseEntity<?> logoutAll(@AuthenticationPrincipal UserDetailsImpl userDetails) {
+        if (userDetails == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(new ErrorMessage("No authenticated user found.", ErrorAssetEnum.AUTHENTICATION, ErrorCodeEnum.UNAUTHORIZED));
+        }
+        authenticationService.revokeAllSessions(userDetails.getId());
+
+        ResponseCookie.ResponseCookieBuilder cookieBuilder = ResponseCookie.from(refreshTokenCookieName, "")
+                .httpOnly(cookieHttpOnly)
+                .secure(cookieSecure)
+                .path(cookiePath)
+                .maxAge(0)
+                .sameSite(cookieSameSite);
+
+        if (cookieDomain != null && !cookieDomain.isEmpty() && !"localhost".equalsIgnoreCase(cookieDomain)) {
+            cookieBuilder.domain(cookieDomain);
+        }
+
+        return ResponseEntity.ok()
+                .header(HttpHeaders.SET_COOKIE, cookieBuilder.build().toString())
+                .body("Logged out from all devices");
+    }
+
     @PostMapping("/register")
     public ResponseEntity<?> register(@RequestBody @Valid RegisterDTO data) {
 
@@ -0,0 +1,21 @@
+package com.escritr.escritr.auth.model;
+
+import com.escritr.escritr.user.domain.User;
+
+import java.util.UUID;
+
+// what an authenticated request needs to know about its user, kept by UserSessionCache instead of the entity
+public record CachedUser(UUID id, String username, String email, String name, int tokenVersion) {
+
+    public static CachedUser from(User user) {
+        return new CachedUser(user.getId(), user.getUsername(), user.getEmail(), user.getName(), user.getTokenVersion());
+    }
+
+    // a detached user for the principal, it has no password and no account links
+    public User toUser() {
+        User user = new User(username, email, name);
+        user.setId(id);
+        user.setTokenVersion(tokenVersion);
+        return user;
+    }
+}
@@ -17,12 +17,21 @@ public class RefreshToken {
     @JoinColumn(name = "user_id", nullable = false)
     private User user;
 
-    @Column(nullable = false, unique = true)
+    // sha-256 of the value sent in the cookie, the value itself is never stored
+    @Column(name = "token_hash", nullable = false, unique = true, length = 32)
+    private byte[] tokenHash;
+
+    // only known right after the token was created, a token loaded from the database has none
+    @Transient
     private String token;
 
     @Column(nullable = false)
     private Instant expiryDate;
 
+    // the user's token version when this token was issued, the token is revoked once the user's moves on
+    @Column(name = "token_version", nullable = false)
+    private int tokenVersion;
+
     public RefreshToken() {}
 
     public UUID getId() {
@@ -49,6 +58,14 @@ public class RefreshToken {
         this.token = token;
     }
 
+    public byte[] getTokenHash() {
+        return tokenHash;
+    }
+
+    public void setTokenHash(byte[] tokenHash) {
+        this.tokenHash = tokenHash;
+    }
+
     public Instant getExpiryDate() {
         return expiryDate;
     }
@@ -56,4 +73,12 @@ public class RefreshToken {
     public void setExpiryDate(Instant expiryDate) {
         this.expiryDate = expiryDate;
     }
+
+    public int getTokenVersion() {
+        return tokenVersion;
+    }
+
+    public void setTokenVersion(int tokenVersion) {
+        this.tokenVersion = tokenVersion;
+    }
 }
\ No newline at end of file
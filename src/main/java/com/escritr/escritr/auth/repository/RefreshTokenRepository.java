@@ -3,16 +3,60 @@ package com.escritr.escritr.auth.repository;
 import com.escritr.escritr.auth.model.RefreshToken;
 import com.escritr.escritr.user.domain.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
 import java.util.Optional;
 import java.util.UUID;
 
 @Repository
 public interface RefreshTokenRepository extends JpaRepository<RefreshToken, UUID> {
 
-    Optional<RefreshToken> findByToken(String token);
+    Optional<RefreshToken> findByTokenHash(byte[] tokenHash);
+
+    // the refresh exchange: the token and the current state of its user in one select
+    @Query("SELECT r FROM RefreshToken r JOIN FETCH r.user WHERE r.tokenHash = :tokenHash")
+    Optional<RefreshToken> findWithUserByTokenHash(@Param("tokenHash") byte[] tokenHash);
+
+    @Modifying
+    @Query("DELETE FROM RefreshToken r WHERE r.tokenHash = :tokenHash")
+    int deleteByTokenHash(@Param("tokenHash") byte[] tokenHash);
+
+    // logout from all devices, a single statement however many sessions the user has
+    @Modifying
+    @Query("DELETE FROM RefreshToken r WHERE r.user = :user")
+    int deleteAllByUser(@Param("user") User user);
+
+    // keeps the user's `keep` most recent sessions (expiry_date is creation time plus a fixed lifetime)
+    @Modifying
+    @Query(value = """
+            DELETE FROM escritr.refresh_token
+            WHERE user_id = :userId
+              AND id NOT IN (
+                  SELECT id FROM escritr.refresh_token
+                  WHERE user_id = :userId
+                  ORDER BY expiry_date DESC
+                  LIMIT :keep
+              )
+            """, nativeQuery = true)
+    int deleteAllButNewest(@Param("userId") UUID userId, @Param("keep") int keep);
 
-    // Method to delete tokens by user (useful for logout all devices)
-    int deleteByUser(User user);
+    // one short transaction per call, rows another reaper or a refresh already locked are left for the next batch
+    @Modifying
+    @Transactional
+    @Query(value = """
+            DELETE FROM escritr.refresh_token
+            WHERE id IN (
+                SELECT id FROM escritr.refresh_token
+                WHERE expiry_date < :now
+                LIMIT :batchSize
+                FOR UPDATE SKIP LOCKED
+            )
+            """, nativeQuery = true)
+    int deleteExpiredBatch(@Param("now") Instant now, @Param("batchSize") int batchSize);
 
 }
\ No newline at end of file
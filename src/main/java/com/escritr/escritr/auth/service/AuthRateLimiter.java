@@ -0,0 +1,71 @@
+package com.escritr.escritr.auth.service;
+
+import com.escritr.escritr.common.helpers.RateLimiter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Locale;
+
+/**
+ * Throttling of the unauthenticated auth endpoints. Every client IP has one bucket shared by login, register and
+ * the availability checks (AuthRateLimitFilter), and every login identifier has its own bucket so an account
+ * can't be brute forced from many addresses (AuthenticationService). The account bucket is only charged by failed
+ * logins, its owner logging in doesn't use it up.
+ * acquireForIp and checkAccount return 0 when the request may go on, otherwise the nanoseconds the caller should wait.
+ */
+@Component
+public class AuthRateLimiter {
+
+    private final RateLimiter byIp;
+    private final RateLimiter byAccount;
+
+    private final Counter ipRejections;
+    private final Counter accountRejections;
+
+    public AuthRateLimiter(
+            @Value("${auth.rate-limit.ip.capacity:30}") int ipCapacity,
+            @Value("${auth.rate-limit.ip.refill-period:PT1M}") Duration ipRefillPeriod,
+            @Value("${auth.rate-limit.account.capacity:10}") int accountCapacity,
+            @Value("${auth.rate-limit.account.refill-period:PT5M}") Duration accountRefillPeriod,
+            @Value("${auth.rate-limit.max-keys:100000}") long maxKeys,
+            MeterRegistry meterRegistry
+    ) {
+        this.byIp = new RateLimiter(ipCapacity, ipRefillPeriod, maxKeys);
+        this.byAccount = new RateLimiter(accountCapacity, accountRefillPeriod, maxKeys);
+
+        this.ipRejections = Counter.builder("auth.rate-limit.rejected").tag("key", "ip").register(meterRegistry);
+        this.accountRejections = Counter.builder("auth.rate-limit.rejected").tag("key", "account").register(meterRegistry);
+        Gauge.builder("auth.rate-limit.keys", byIp, RateLimiter::trackedKeys).tag("key", "ip").register(meterRegistry);
+        Gauge.builder("auth.rate-limit.keys", byAccount, RateLimiter::trackedKeys).tag("key", "account").register(meterRegistry);
+    }
+
+    public long acquireForIp(String ip) {
+        long wait = byIp.tryAcquire(ip);
+        if (wait > 0) {
+            ipRejections.increment();
+        }
+        return wait;
+    }
+
+    // whether the account has failed attempts left, without using one
+    public long checkAccount(String login) {
+        long wait = byAccount.waitFor(accountKey(login));
+        if (wait > 0) {
+            accountRejections.increment();
+        }
+        return wait;
+    }
+
+    public void recordAccountFailure(String login) {
+        byAccount.tryAcquire(accountKey(login));
+    }
+
+    // usernames and e-mails are matched case-insensitively, so is their bucket
+    private static String accountKey(String login) {
+        return login.trim().toLowerCase(Locale.ROOT);
+    }
+}
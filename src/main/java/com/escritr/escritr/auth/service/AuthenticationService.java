@@ -9,7 +9,9 @@ import com.escritr.escritr.auth.model.UserDetailsImpl;
 import com.escritr.escritr.common.enums.ErrorAssetEnum;
 import com.escritr.escritr.common.enums.ErrorCodeEnum;
 import com.escritr.escritr.exceptions.InvalidRefreshTokenException;
+import com.escritr.escritr.exceptions.ResourceNotFoundException;
 import com.escritr.escritr.exceptions.SessionInvalidatedException;
+import com.escritr.escritr.exceptions.TooManyRequestsException;
 import com.escritr.escritr.exceptions.UserAlreadyExistsException;
 import com.escritr.escritr.exceptions.WrongParameterException;
 import com.escritr.escritr.user.domain.User;
@@ -17,13 +19,16 @@ import com.escritr.escritr.user.repository.UserRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.AuthenticationException;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.UUID;
+
 @Service
 public class AuthenticationService {
 
@@ -33,18 +38,38 @@ public class AuthenticationService {
     private final AuthenticationManager authenticationManager;
     private final TokenService tokenService;
     private final UserRepository userRepository;
+    private final PasswordEncoder passwordEncoder;
+    private final AuthRateLimiter authRateLimiter;
+    private final TakenIdentifiers takenIdentifiers;
 
-    public AuthenticationService(AuthenticationManager authenticationManager, TokenService tokenService,UserRepository userRepository){
+    public AuthenticationService(AuthenticationManager authenticationManager, TokenService tokenService,UserRepository userRepository,
+                                 PasswordEncoder passwordEncoder, AuthRateLimiter authRateLimiter, TakenIdentifiers takenIdentifiers){
         this.authenticationManager = authenticationManager;
         this.tokenService = tokenService;
         this.userRepository = userRepository;
+        this.passwordEncoder = passwordEncoder;
+        this.authRateLimiter = authRateLimiter;
+        this.takenIdentifiers = takenIdentifiers;
 
     }
 
-    @Transactional
+    // not transactional: a throttled attempt opens none and the password check holds no connection,
+    // createRefreshToken is a transaction of its own
     public AuthenticationResult authenticateAndGenerateTokens(LoginDTO loginData) throws AuthenticationException {
 
-        Authentication authentication = authenticateUser(loginData.login(), loginData.password());
+        // per account, the per-IP limit is applied by AuthRateLimitFilter; only a wrong password takes a token
+        long waitNanos = authRateLimiter.checkAccount(loginData.login());
+        if (waitNanos > 0) {
+            throw new TooManyRequestsException(TooManyRequestsException.toRetryAfterSeconds(waitNanos));
+        }
+
+        Authentication authentication;
+        try {
+            authentication = authenticateUser(loginData.login(), loginData.password());
+        } catch (BadCredentialsException e) {
+            authRateLimiter.recordAccountFailure(loginData.login());
+            throw e;
+        }
         UserDetailsImpl userDetails = (UserDetailsImpl) authentication.getPrincipal();
         User user = userDetails.getUser();
         String accessToken = tokenService.generateAccessToken(user);
@@ -71,18 +96,15 @@ public class AuthenticationService {
 
         refreshToken = tokenService.verifyRefreshToken(refreshToken);
 
-        //lazy fetch
+        // fetched in the same select as the token, no other query is needed to check and issue the access token
         User user = refreshToken.getUser();
 
-        User currentUser = userRepository.findById(user.getId())
-                .orElseThrow(() -> new SessionInvalidatedException("User not found."));
-
-        if (currentUser.getTokenVersion() != user.getTokenVersion()) {
+        if (refreshToken.getTokenVersion() != user.getTokenVersion()) {
             tokenService.deleteByToken(requestRefreshToken);
             throw new SessionInvalidatedException();
         }
 
-        String newAcessToken = tokenService.generateAccessToken(currentUser);
+        String newAcessToken = tokenService.generateAccessToken(user);
         return new AuthenticationResult(newAcessToken,null,user);
 
         }catch(InvalidRefreshTokenException | SessionInvalidatedException ex){
@@ -95,16 +117,27 @@ public class AuthenticationService {
 
     }
 
+    // logout from all devices: the new version rejects the access tokens already issued (JwtFilter compares it)
+    // and any refresh token that survives the delete, both commit together
+    @Transactional
+    public void revokeAllSessions(UUID userId){
+        User user = this.userRepository.findById(userId)
+                .orElseThrow(() -> new ResourceNotFoundException("No user found with id:" + userId));
+        user.incrementTokenVersion();
+        this.userRepository.save(user);
+        tokenService.deleteAllUserRefreshTokens(user);
+    }
+
     public void register(RegisterDTO data){
-        if (this.userRepository.findByEmail(data.email()).isPresent()) {
+        if (this.userRepository.existsByEmail(data.email())) {
             throw new UserAlreadyExistsException("The e-mail is already linked to an existing account");
         }
 
-        if(this.userRepository.findByUsername(data.username()).isPresent()){
+        if(this.userRepository.existsByUsername(data.username())){
             throw new UserAlreadyExistsException("The username is already linked to an existing account");
         }
 
-        String encryptedPassword = new BCryptPasswordEncoder().encode(data.password());
+        String encryptedPassword = passwordEncoder.encode(data.password());
         User user = new User(data.username(), data.email(), encryptedPassword, data.name());
         this.userRepository.save(user);
     }
@@ -117,7 +150,11 @@ public class AuthenticationService {
             throw new WrongParameterException("e-mail can't be empty", ErrorAssetEnum.AUTHENTICATION, ErrorCodeEnum.INPUT_FORMAT_ERROR);
         }
 
-        return this.userRepository.findByEmail(email).isEmpty();
+        // a definite negative from the filter is the common case while typing, only probable hits reach the database
+        if (!takenIdentifiers.mightHaveEmail(email)) {
+            return true;
+        }
+        return !this.userRepository.existsByEmail(email);
     }
 
     public Boolean checkUsernameAvailability(String username){
@@ -128,7 +165,10 @@ public class AuthenticationService {
             throw new WrongParameterException("username can't be empty", ErrorAssetEnum.AUTHENTICATION, ErrorCodeEnum.INPUT_FORMAT_ERROR);
         }
 
-        return this.userRepository.findByUsername(username).isEmpty();
+        if (!takenIdentifiers.mightHaveUsername(username)) {
+            return true;
+        }
+        return !this.userRepository.existsByUsername(username);
     }
 
 
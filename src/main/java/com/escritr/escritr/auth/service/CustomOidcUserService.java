@@ -8,6 +8,7 @@ import com.escritr.escritr.user.repository.UserRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.oauth2.client.oidc.userinfo.OidcUserRequest;
@@ -23,6 +24,8 @@ import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 
 import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
@@ -39,6 +42,14 @@ public class CustomOidcUserService implements OAuth2UserService<OidcUserRequest,
     @Autowired
     private UserAccountLinkRepository userAccountLinkRepository;
 
+    @Autowired
+    private OAuthUserProvisioner oAuthUserProvisioner;
+
+    private static final int USERNAME_MAX_LENGTH = 50;
+    // all checked with a single query, enough that even a very common base name almost always gets a free one
+    private static final int USERNAME_CANDIDATES = 16;
+    private static final int MAX_PROVISIONING_ATTEMPTS = 3;
+
     // We can delegate to Spring's default OidcUserService to fetch the standard OidcUser first.
     private final OidcUserService delegate = new OidcUserService();
 
@@ -81,21 +92,7 @@ public class CustomOidcUserService implements OAuth2UserService<OidcUserRequest,
                 userOptionalByEmail = userRepository.findByEmail(email);
             }
             if (userOptionalByEmail.isPresent()) {
-                userEntity = userOptionalByEmail.get();
-                logger.info("Existing user found by email '{}' for provider '{}'. User ID: {}, Username: {}",
-                        email, providerName, userEntity.getId(), userEntity.getUsername());
-                if (userEntity.getPassword() != null && !userEntity.getPassword().isEmpty()) {
-                    logger.warn("OAuth login attempt for email '{}' (provider '{}') which already exists as a local account with a password.", email, providerName);
-                    throw new OAuth2AuthenticationException(
-                            "An account already exists with this email address and is password-protected. " +
-                                    "Please log in using your password, or link this provider from your account settings if supported."
-                    );
-                } else {
-                    logger.info("Linking new {} provider account (ID: {}) to existing user (ID: {}).",
-                            providerName, providerUserId, userEntity.getId());
-                    linkProviderToUser(userEntity, providerName, providerUserId);
-                    updateUserFromOAuthAttributes(userEntity, attributes, email, name);
-                }
+                userEntity = linkExistingUser(userOptionalByEmail.get(), email, name, providerName, providerUserId);
             } else {
                 logger.info("Creating new user for {} provider (ID: {}) and email: {}",
                         providerName, providerUserId, email);
@@ -103,12 +100,9 @@ public class CustomOidcUserService implements OAuth2UserService<OidcUserRequest,
                     logger.warn("Email not provided by {} for new user with provider ID {}. Username generation may be less ideal.",
                             providerName, providerUserId);
                 }
-                String username = generateUniqueUsername(email, name, providerUserId);
-                userEntity = new User(username, email, name);
-                userRepository.save(userEntity);
-                linkProviderToUser(userEntity, providerName, providerUserId);
+                userEntity = createOAuthUser(email, name, providerName, providerUserId);
                 logger.info("New user created with username: {} (ID: {}) and linked to {} (ID: {})",
-                        username, userEntity.getId(), providerName, providerUserId);
+                        userEntity.getUsername(), userEntity.getId(), providerName, providerUserId);
             }
         }
         // --- End of your user logic ---
@@ -150,7 +144,25 @@ public class CustomOidcUserService implements OAuth2UserService<OidcUserRequest,
         return customOidcPrincipal;
     }
 
-    // --- Helper methods (linkProviderToUser, updateUserFromOAuthAttributes, getProviderUserId, generateUniqueUsername) ---
+    // a provider account whose e-mail is already registered: linked to that user, unless the user has a password
+    private User linkExistingUser(User userEntity, String email, String name, String providerName, String providerUserId) {
+        logger.info("Existing user found by email '{}' for provider '{}'. User ID: {}, Username: {}",
+                email, providerName, userEntity.getId(), userEntity.getUsername());
+        if (userEntity.getPassword() != null && !userEntity.getPassword().isEmpty()) {
+            logger.warn("OAuth login attempt for email '{}' (provider '{}') which already exists as a local account with a password.", email, providerName);
+            throw new OAuth2AuthenticationException(
+                    "An account already exists with this email address and is password-protected. " +
+                            "Please log in using your password, or link this provider from your account settings if supported."
+            );
+        }
+        logger.info("Linking new {} provider account (ID: {}) to existing user (ID: {}).",
+                providerName, providerUserId, userEntity.getId());
+        linkProviderToUser(userEntity, providerName, providerUserId);
+        updateUserFromOAuthAttributes(userEntity, Map.of(), email, name);
+        return userEntity;
+    }
+
+    // --- Helper methods (linkProviderToUser, updateUserFromOAuthAttributes, getProviderUserId, baseUsername, createOAuthUser) ---
     // These remain the same as in your previous CustomOAuth2UserService
     private void linkProviderToUser(User user, String providerName, String providerUserId) {
         UserAccountLink newLink = new UserAccountLink(user, providerName, providerUserId);
@@ -192,7 +204,8 @@ public class CustomOidcUserService implements OAuth2UserService<OidcUserRequest,
         return (idValue != null) ? idValue.toString() : null;
     }
 
-    private String generateUniqueUsername(String email, String name, String providerUserId) {
+    // the name the user would pick, derived from the e-mail, the display name or the provider id
+    private String baseUsername(String email, String name, String providerUserId) {
         String baseUsername = null;
         int maxLength = 45;
         if (StringUtils.hasText(email)) {
@@ -208,24 +221,68 @@ public class CustomOidcUserService implements OAuth2UserService<OidcUserRequest,
         if (baseUsername.trim().isEmpty()) {
             baseUsername = "oauthuser";
         }
-        String finalUsername = baseUsername;
-        int attempts = 0;
-        while (userRepository.findByUsername(finalUsername).isPresent() && attempts < 100) {
-            String suffix = UUID.randomUUID().toString().substring(0, attempts < 10 ? 3 : 5);
-            int availableLengthForBase = 50 - 1 - suffix.length();
-            String potentiallyShortenedBase = baseUsername;
-            if (baseUsername.length() > availableLengthForBase) {
-                potentiallyShortenedBase = baseUsername.substring(0, availableLengthForBase);
+        return baseUsername;
+    }
+
+    /**
+     * Creates the user of a first-time login. The candidates for its username are checked with one query,
+     * and a candidate taken between that query and the insert only costs another round.
+     * A conflict on the e-mail (a registration with the same address meanwhile) is not retried, the user that
+     * took it is handled like one found by e-mail before the insert.
+     * The user is inserted in the provisioner's own transaction, it is read again into the login's.
+     */
+    User createOAuthUser(String email, String name, String providerName, String providerUserId) {
+        String baseUsername = baseUsername(email, name, providerUserId);
+        for (int attempt = 1; ; attempt++) {
+            String username = pickUsername(usernameCandidates(baseUsername));
+            User created;
+            try {
+                created = oAuthUserProvisioner.createLinkedUser(username, email, name, providerName, providerUserId);
+            } catch (DataIntegrityViolationException e) {
+                // the same provider account logging in twice at once: the other request created it
+                Optional<UserAccountLink> link =
+                        userAccountLinkRepository.findByProviderNameAndProviderUserId(providerName, providerUserId);
+                if (link.isPresent()) {
+                    return link.get().getUser();
+                }
+                Optional<User> byEmail = StringUtils.hasText(email) ? userRepository.findByEmail(email) : Optional.empty();
+                if (byEmail.isPresent()) {
+                    return linkExistingUser(byEmail.get(), email, name, providerName, providerUserId);
+                }
+                if (attempt >= MAX_PROVISIONING_ATTEMPTS) {
+                    logger.error("Could not create user for {} provider (ID: {}) after {} attempts: {}",
+                            providerName, providerUserId, attempt, e.getMessage());
+                    throw new OAuth2AuthenticationException("Fatal error: Could not generate a unique username.");
+                }
+                logger.warn("Username '{}' was taken before it could be inserted, retrying: {}", username, e.getMessage());
+                continue;
             }
-            finalUsername = potentiallyShortenedBase + "_" + suffix;
-            attempts++;
+            return userRepository.findById(created.getId())
+                    .orElseThrow(() -> new OAuth2AuthenticationException("Fatal error: Could not load the created user."));
         }
-        if (userRepository.findByUsername(finalUsername).isPresent()) {
-            finalUsername = "user_" + UUID.randomUUID().toString().replace("-","").substring(0, Math.min(32, 50-5));
-            if (userRepository.findByUsername(finalUsername).isPresent()) {
-                throw new OAuth2AuthenticationException("Fatal error: Could not generate a unique username.");
-            }
+    }
+
+    // the base name first, then suffixed variants, last a random name that is practically never taken
+    static List<String> usernameCandidates(String baseUsername) {
+        Set<String> candidates = new LinkedHashSet<>();
+        candidates.add(truncate(baseUsername, USERNAME_MAX_LENGTH));
+        for (int i = 0; candidates.size() < USERNAME_CANDIDATES; i++) {
+            String suffix = UUID.randomUUID().toString().substring(0, i < 5 ? 3 : 5);
+            candidates.add(truncate(baseUsername, USERNAME_MAX_LENGTH - 1 - suffix.length()) + "_" + suffix);
         }
-        return finalUsername.substring(0, Math.min(finalUsername.length(), 50));
+        candidates.add("user_" + UUID.randomUUID().toString().replace("-", ""));
+        return List.copyOf(candidates);
+    }
+
+    private String pickUsername(List<String> candidates) {
+        Set<String> taken = new HashSet<>(userRepository.findUsernamesIn(candidates));
+        return candidates.stream()
+                .filter(candidate -> !taken.contains(candidate))
+                .findFirst()
+                .orElseThrow(() -> new OAuth2AuthenticationException("Fatal error: Could not generate a unique username."));
+    }
+
+    private static String truncate(String value, int maxLength) {
+        return value.length() > maxLength ? value.substring(0, maxLength) : value;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,34 @@
+package com.escritr.escritr.auth.service;
+
+import com.escritr.escritr.user.domain.User;
+import com.escritr.escritr.user.domain.UserAccountLink;
+import com.escritr.escritr.user.repository.UserAccountLinkRepository;
+import com.escritr.escritr.user.repository.UserRepository;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Inserts the user of a first-time OAuth login with its provider link, in a transaction of its own:
+ * a unique violation (username taken meanwhile, same account signing up twice) only rolls back this insert,
+ * and CustomOidcUserService can retry inside the login's transaction.
+ */
+@Component
+public class OAuthUserProvisioner {
+
+    private final UserRepository userRepository;
+    private final UserAccountLinkRepository userAccountLinkRepository;
+
+    OAuthUserProvisioner(UserRepository userRepository, UserAccountLinkRepository userAccountLinkRepository) {
+        this.userRepository = userRepository;
+        this.userAccountLinkRepository = userAccountLinkRepository;
+    }
+
+    // throws DataIntegrityViolationException when a unique constraint rejects the user or the link
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public User createLinkedUser(String username, String email, String name, String providerName, String providerUserId) {
+        User user = userRepository.saveAndFlush(new User(username, email, name));
+        userAccountLinkRepository.saveAndFlush(new UserAccountLink(user, providerName, providerUserId));
+        return user;
+    }
+}
@@ -0,0 +1,87 @@
+package com.escritr.escritr.auth.service;
+
+import com.escritr.escritr.auth.repository.RefreshTokenRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+
+/**
+ * Deletes expired refresh tokens in the background. Tokens are otherwise only removed when a client presents
+ * them after they expired, so abandoned sessions would stay in the table forever.
+ * Rows are deleted in batches of batch-size, each in its own transaction, so a run never holds many row locks
+ * or one long transaction, however far behind it is.
+ */
+@Component
+public class RefreshTokenReaper {
+
+    private static final Logger log = LoggerFactory.getLogger(RefreshTokenReaper.class);
+
+    private final RefreshTokenRepository refreshTokenRepository;
+    private final boolean enabled;
+    private final int batchSize;
+    private final int maxBatchesPerRun;
+
+    private final Counter purged;
+    private final Timer batchLatency;
+
+    RefreshTokenReaper(
+            RefreshTokenRepository refreshTokenRepository,
+            MeterRegistry meterRegistry,
+            @Value("${auth.refresh-token.reaper.enabled:true}") boolean enabled,
+            @Value("${auth.refresh-token.reaper.batch-size:1000}") int batchSize,
+            @Value("${auth.refresh-token.reaper.max-batches-per-run:500}") int maxBatchesPerRun
+    ) {
+        this.refreshTokenRepository = refreshTokenRepository;
+        this.enabled = enabled;
+        this.batchSize = Math.max(1, batchSize);
+        this.maxBatchesPerRun = Math.max(1, maxBatchesPerRun);
+
+        this.purged = Counter.builder("auth.refresh.tokens.purged")
+                .description("Expired refresh tokens deleted by the reaper")
+                .register(meterRegistry);
+        this.batchLatency = Timer.builder("auth.refresh.tokens.purge.batch")
+                .description("Duration of one batched delete of expired refresh tokens")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(
+            initialDelayString = "${auth.refresh-token.reaper.initial-delay:PT5M}",
+            fixedDelayString = "${auth.refresh-token.reaper.interval:PT1H}"
+    )
+    public void reap() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            long deleted = purgeExpired();
+            if (deleted > 0) {
+                log.info("Deleted {} expired refresh tokens", deleted);
+            }
+        } catch (RuntimeException e) {
+            log.error("Refresh token reaper failed: {}", e.getMessage(), e);
+        }
+    }
+
+    // the cutoff is fixed for the run, tokens expiring while it runs are left for the next one
+    long purgeExpired() {
+        Instant now = Instant.now();
+        long total = 0;
+        for (int batch = 0; batch < maxBatchesPerRun; batch++) {
+            int deleted = batchLatency.record(() -> refreshTokenRepository.deleteExpiredBatch(now, batchSize));
+            purged.increment(deleted);
+            total += deleted;
+            if (deleted < batchSize) {
+                return total;
+            }
+        }
+        log.warn("Refresh token reaper stopped after {} batches, the rest is left for the next run", maxBatchesPerRun);
+        return total;
+    }
+}
@@ -0,0 +1,145 @@
+package com.escritr.escritr.auth.service;
+
+import com.escritr.escritr.common.helpers.BloomFilter;
+import com.escritr.escritr.user.domain.UserIdentifiers;
+import com.escritr.escritr.user.repository.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Locale;
+import java.util.stream.Stream;
+
+/**
+ * Bloom filters of the usernames and e-mails in use, so the availability checks the signup form sends on every
+ * keystroke only reach the database when the name is probably taken.
+ * Built from the users table once the application is ready, kept up to date by UserCacheInvalidationListener
+ * on every insert and update, and rebuilt periodically since a Bloom filter can't forget a released name.
+ * Keys are lower-cased: a superset of the exact-match lookups behind it, so a negative is still definite.
+ * Until the first build completes every name is reported as possibly taken.
+ */
+@Component
+public class TakenIdentifiers {
+
+    private static final Logger log = LoggerFactory.getLogger(TakenIdentifiers.class);
+
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+
+    private final UserRepository userRepository;
+    private final long expectedUsers;
+
+    private volatile Filters current;
+    // set while a rebuild streams the table, names added meanwhile go into both
+    private volatile Filters building;
+
+    private final Counter filtered;
+    private final Counter queried;
+
+    public TakenIdentifiers(
+            UserRepository userRepository,
+            @Value("${auth.availability-filter.expected-users:1000000}") long expectedUsers,
+            MeterRegistry meterRegistry
+    ) {
+        this.userRepository = userRepository;
+        this.expectedUsers = expectedUsers;
+        this.filtered = Counter.builder("auth.availability.checks").tag("source", "filter")
+                .description("Availability checks answered from memory").register(meterRegistry);
+        this.queried = Counter.builder("auth.availability.checks").tag("source", "database")
+                .description("Availability checks that had to query the users table").register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(
+            initialDelayString = "${auth.availability-filter.rebuild-interval:PT6H}",
+            fixedDelayString = "${auth.availability-filter.rebuild-interval:PT6H}"
+    )
+    @Transactional(readOnly = true)
+    public void rebuild() {
+        long start = System.nanoTime();
+        // room to grow until the next rebuild resizes it
+        long expected = Math.max(expectedUsers, userRepository.count() * 2);
+        Filters filters = new Filters(new BloomFilter(expected, FALSE_POSITIVE_RATE), new BloomFilter(expected, FALSE_POSITIVE_RATE));
+        building = filters;
+        long users = 0;
+        try (Stream<UserIdentifiers> identifiers = userRepository.streamIdentifiers()) {
+            for (UserIdentifiers identifier : (Iterable<UserIdentifiers>) identifiers::iterator) {
+                filters.put(identifier.getUsername(), identifier.getEmail());
+                users++;
+            }
+            current = filters;
+        } finally {
+            building = null;
+        }
+        log.info("Built username/e-mail filters from {} users ({} bits each) in {} ms",
+                users, filters.usernames().bitSize(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Records the identifiers of a saved user. Inside a transaction that happens after the commit,
+     * a rebuild running concurrently either reads the committed row or sees this call.
+     */
+    public void add(String username, String email) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    put(username, email);
+                }
+            });
+        } else {
+            put(username, email);
+        }
+    }
+
+    public boolean mightHaveUsername(String username) {
+        Filters filters = current;
+        return record(filters == null || filters.usernames().mightContain(normalize(username)));
+    }
+
+    public boolean mightHaveEmail(String email) {
+        Filters filters = current;
+        return record(filters == null || filters.emails().mightContain(normalize(email)));
+    }
+
+    // building is read first: a rebuild swapping in between moves it to current, which is then read as the same
+    // filters. Read the other way round, the old filters would get the name and the new ones, no longer building, not
+    private void put(String username, String email) {
+        Filters next = building;
+        if (next != null) {
+            next.put(username, email);
+        }
+        Filters filters = current;
+        if (filters != null && filters != next) {
+            filters.put(username, email);
+        }
+    }
+
+    private boolean record(boolean mightHave) {
+        (mightHave ? queried : filtered).increment();
+        return mightHave;
+    }
+
+    private static String normalize(String value) {
+        return value.toLowerCase(Locale.ROOT);
+    }
+
+    private record Filters(BloomFilter usernames, BloomFilter emails) {
+        void put(String username, String email) {
+            if (username != null) {
+                usernames.put(normalize(username));
+            }
+            if (email != null) {
+                emails.put(normalize(email));
+            }
+        }
+    }
+}
@@ -1,9 +1,11 @@
 package com.escritr.escritr.auth.service;
 
 import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTVerifier;
 import com.auth0.jwt.algorithms.Algorithm;
 import com.auth0.jwt.exceptions.JWTCreationException;
 import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.auth0.jwt.interfaces.DecodedJWT;
 import com.escritr.escritr.auth.controller.DTOs.DecodedToken;
 import com.escritr.escritr.common.enums.ErrorAssetEnum;
 import com.escritr.escritr.common.enums.ErrorCodeEnum;
@@ -12,19 +14,43 @@ import com.escritr.escritr.user.domain.User;
 import com.escritr.escritr.auth.model.RefreshToken;
 import com.escritr.escritr.auth.repository.RefreshTokenRepository;
 import com.escritr.escritr.exceptions.AuthenticationTokenException;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.Base64;
+import java.util.HexFormat;
 import java.util.UUID;
 import java.util.Optional;
 
 @Service // Add @Service annotation
 public class TokenService {
 
+    private static final Logger logger = LoggerFactory.getLogger(TokenService.class);
+
+    private static final String ISSUER = "escritr";
+
+    // one entry per live access token, a session sends the same token until it expires
+    private static final int VERIFIED_TOKENS_MAX_SIZE = 10_000;
+
+    // 256 bits of entropy per refresh token
+    private static final int REFRESH_TOKEN_BYTES = 32;
+
+    private static final SecureRandom SECURE_RANDOM = new SecureRandom();
+
     @Value("${api.security.token.secret}")
     private String secret;
 
@@ -34,20 +60,68 @@ public class TokenService {
     @Value("${api.security.token.refresh-token-expiration-days:7}")
     private long refreshTokenExpirationDays;
 
+    // sessions (devices) a user can be logged in on at once, logging in on one more ends the oldest
+    @Value("${api.security.token.max-sessions-per-user:5}")
+    private int maxSessionsPerUser;
+
     @Autowired
     private RefreshTokenRepository refreshTokenRepository;
 
+    // Algorithm and JWTVerifier are immutable and thread safe, built once from the secret on first use
+    private volatile Signing signing;
+
+    // sha-256 of the token -> its verified claims, each entry expires with the token itself
+    private final Cache<String, VerifiedToken> verifiedTokens = Caffeine.newBuilder()
+            .maximumSize(VERIFIED_TOKENS_MAX_SIZE)
+            .expireAfter(new Expiry<String, VerifiedToken>() {
+                @Override
+                public long expireAfterCreate(String key, VerifiedToken token, long currentTime) {
+                    return Math.max(0, Duration.between(Instant.now(), token.expiresAt()).toNanos());
+                }
+
+                @Override
+                public long expireAfterUpdate(String key, VerifiedToken token, long currentTime, long currentDuration) {
+                    return currentDuration;
+                }
+
+                @Override
+                public long expireAfterRead(String key, VerifiedToken token, long currentTime, long currentDuration) {
+                    return currentDuration;
+                }
+            })
+            .build();
+
+    private record Signing(Algorithm algorithm, JWTVerifier verifier) {
+    }
+
+    private record VerifiedToken(DecodedToken token, Instant expiresAt) {
+    }
+
+    private Signing signing() {
+        Signing current = signing;
+        if (current == null) {
+            synchronized (this) {
+                current = signing;
+                if (current == null) {
+                    Algorithm algorithm = Algorithm.HMAC256(secret);
+                    current = new Signing(algorithm, JWT.require(algorithm).withIssuer(ISSUER).build());
+                    signing = current;
+                }
+            }
+        }
+        return current;
+    }
+
     public String generateAccessToken(User user) {
         try {
-            Algorithm algorithm = Algorithm.HMAC256(secret);
             return JWT.create()
-                    .withIssuer("escritr")
+                    .withIssuer(ISSUER)
                     .withSubject(user.getId().toString())
                     .withClaim("usr", user.getUsername())
                     .withClaim("eml", user.getEmail())
                     .withClaim("ver", user.getTokenVersion())
                     .withExpiresAt(generateAccessTokenExpirationDate())
-                    .sign(algorithm);
+                    .sign(signing().algorithm());
         } catch (JWTCreationException ex) {
             //TODO: Log the exception properly
             throw new AuthenticationTokenException("Error while generating access token", ErrorAssetEnum.AUTHENTICATION,ErrorCodeEnum.INTERNAL_SERVER_ERROR);
@@ -57,37 +131,55 @@ public class TokenService {
     @Transactional // Ensure atomicity when saving
     public RefreshToken createRefreshToken(User user) {
 
-        refreshTokenRepository.deleteByUser(user);
+        // makes room for the new session: one delete, however many sessions the user had
+        refreshTokenRepository.deleteAllButNewest(user.getId(), Math.max(0, maxSessionsPerUser - 1));
 
+        String token = generateRefreshTokenValue();
         RefreshToken refreshToken = new RefreshToken();
         refreshToken.setUser(user);
         refreshToken.setExpiryDate(generateRefreshTokenExpirationDate());
-        refreshToken.setToken(UUID.randomUUID().toString());
+        refreshToken.setTokenVersion(user.getTokenVersion());
+        refreshToken.setToken(token);
+        refreshToken.setTokenHash(hashRefreshToken(token));
 
         return refreshTokenRepository.save(refreshToken);
     }
 
+    // the user comes fetched with the token, its token version is the current one
     public Optional<RefreshToken> findByToken(String token) {
-        return refreshTokenRepository.findByToken(token);
+        return refreshTokenRepository.findWithUserByTokenHash(hashRefreshToken(token));
     }
 
+    // the expired row is removed with the same single delete as logout, the exception must not roll it back
+    @Transactional(noRollbackFor = InvalidRefreshTokenException.class)
     public RefreshToken verifyRefreshToken(RefreshToken token) {
         if (token.getExpiryDate().isBefore(Instant.now())) {
-            refreshTokenRepository.delete(token);
+            refreshTokenRepository.deleteByTokenHash(token.getTokenHash());
             // TODO: throw specific exception here
-            throw new InvalidRefreshTokenException("Refresh token " + token.getToken() + " was expired. Please log in again.");
+            throw new InvalidRefreshTokenException("Refresh token was expired. Please log in again.");
         }
         return token;
     }
 
     @Transactional
     public void deleteByToken(String token) {
-        refreshTokenRepository.findByToken(token).ifPresent(refreshTokenRepository::delete);
+        refreshTokenRepository.deleteByTokenHash(hashRefreshToken(token));
     }
 
     @Transactional
     public void deleteAllUserRefreshTokens(User user) {
-        refreshTokenRepository.deleteByUser(user);
+        refreshTokenRepository.deleteAllByUser(user);
+    }
+
+    // what is stored and looked up in place of the cookie value
+    static byte[] hashRefreshToken(String token) {
+        return sha256(token);
+    }
+
+    private static String generateRefreshTokenValue() {
+        byte[] bytes = new byte[REFRESH_TOKEN_BYTES];
+        SECURE_RANDOM.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
     }
 
 
@@ -99,40 +191,63 @@ public class TokenService {
         return Instant.now().plus(refreshTokenExpirationDays, ChronoUnit.DAYS);
     }
 
+    // a token seen before and not expired yet is answered from memory, without the HMAC and the claims parsing
     public DecodedToken decodeToken(String token) {
+        if (token == null) {
+            throw new AuthenticationTokenException("Invalid or expired token",ErrorAssetEnum.AUTHENTICATION,ErrorCodeEnum.INVALID_TOKEN);
+        }
+        String key = digest(token);
+        VerifiedToken cached = verifiedTokens.getIfPresent(key);
+        if (cached != null) {
+            return cached.token();
+        }
+
+        VerifiedToken verified = verify(token);
+        verifiedTokens.put(key, verified);
+        return verified.token();
+    }
+
+    private VerifiedToken verify(String token) {
         try {
-            Algorithm algorithm = Algorithm.HMAC256(secret);
-            var jwt = JWT.require(algorithm)
-                    .withIssuer("escritr")
-                    .build()
-                    .verify(token);
+            DecodedJWT jwt = signing().verifier().verify(token);
 
             // Check if required claims exist before accessing
             Integer tokenVersion = jwt.getClaim("ver").asInt();
             String username = jwt.getClaim("usr").asString();
             String email = jwt.getClaim("eml").asString();
             UUID userId = UUID.fromString(jwt.getSubject());
-            System.out.println(tokenVersion);
             if (tokenVersion == null || username == null || email == null) {
-                System.err.println("Token missing required claims.");
+                logger.warn("Token missing required claims.");
                 throw  new AuthenticationTokenException("Token missing required claims.", ErrorAssetEnum.AUTHENTICATION, ErrorCodeEnum.INVALID_TOKEN);
             }
 
-
-            return new DecodedToken(
+            // tokens without exp are never cached
+            Instant expiresAt = jwt.getExpiresAtAsInstant() == null ? Instant.now() : jwt.getExpiresAtAsInstant();
+            return new VerifiedToken(new DecodedToken(
                     userId,
                     tokenVersion,
                     username,
                     email
-            );
+            ), expiresAt);
         } catch (JWTVerificationException ex) {
-            // Log the verification failure
-            System.err.println("Access Token Verification Failed: " + ex.getMessage());
+            logger.debug("Access Token Verification Failed: {}", ex.getMessage());
             throw new AuthenticationTokenException("Invalid or expired token",ErrorAssetEnum.AUTHENTICATION,ErrorCodeEnum.INVALID_TOKEN);
         }catch (IllegalArgumentException e) { // Example: Catching specific expected exceptions
-            System.err.println("Error decoding token (e.g., UUID parsing): " + e.getMessage());
+            logger.debug("Error decoding token (e.g., UUID parsing): {}", e.getMessage());
             throw new AuthenticationTokenException("Malformed token data", ErrorAssetEnum.AUTHENTICATION, ErrorCodeEnum.INVALID_TOKEN);
         }
     }
 
+    private static String digest(String token) {
+        return HexFormat.of().formatHex(sha256(token));
+    }
+
+    private static byte[] sha256(String value) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,79 @@
+package com.escritr.escritr.auth.service;
+
+import com.escritr.escritr.articles.service.ArticleCache;
+import com.escritr.escritr.user.domain.User;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.UUID;
+
+// JPA entity listener on User, Hibernate gets it from the Spring context.
+// Keeps the in-memory views of the users table (session cache, taken usernames/e-mails, the author embedded in
+// rendered articles) in step with it.
+// The providers keep it usable in slices (e.g. @DataJpaTest) that don't have them
+public class UserCacheInvalidationListener {
+
+    private final ObjectProvider<UserSessionCache> userSessionCache;
+    private final ObjectProvider<TakenIdentifiers> takenIdentifiers;
+    private final ObjectProvider<ArticleCache> articleCache;
+
+    public UserCacheInvalidationListener(ObjectProvider<UserSessionCache> userSessionCache,
+                                         ObjectProvider<TakenIdentifiers> takenIdentifiers,
+                                         ObjectProvider<ArticleCache> articleCache) {
+        this.userSessionCache = userSessionCache;
+        this.takenIdentifiers = takenIdentifiers;
+        this.articleCache = articleCache;
+    }
+
+    // registration and OAuth signup
+    @PostPersist
+    public void created(User user) {
+        recordIdentifiers(user);
+        user.markAuthorStored();
+    }
+
+    @PostLoad
+    public void loaded(User user) {
+        user.markAuthorStored();
+    }
+
+    // covers incrementTokenVersion, which is how sessions get revoked, and e-mail and name changes from OAuth providers.
+    // evictAuthor walks the whole article cache and drops the feed pages, so it only runs for a rename, once committed:
+    // a reader reloading the article before that would cache the old name again
+    @PostUpdate
+    public void updated(User user) {
+        evict(user);
+        recordIdentifiers(user);
+        if (user.authorChangedSinceStored()) {
+            user.markAuthorStored();
+            evictAuthorAfterCommit(user.getId(), user.getUsername(), user.getName());
+        }
+    }
+
+    @PostRemove
+    public void evict(User user) {
+        userSessionCache.ifAvailable(cache -> cache.evict(user.getId()));
+    }
+
+    private void evictAuthorAfterCommit(UUID authorId, String username, String name) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    articleCache.ifAvailable(cache -> cache.evictAuthor(authorId, username, name));
+                }
+            });
+        } else {
+            articleCache.ifAvailable(cache -> cache.evictAuthor(authorId, username, name));
+        }
+    }
+
+    private void recordIdentifiers(User user) {
+        takenIdentifiers.ifAvailable(identifiers -> identifiers.add(user.getUsername(), user.getEmail()));
+    }
+}
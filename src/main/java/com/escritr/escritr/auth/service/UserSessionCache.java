@@ -0,0 +1,68 @@
+package com.escritr.escritr.auth.service;
+
+import com.escritr.escritr.auth.model.CachedUser;
+import com.escritr.escritr.user.repository.UserRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * userId -> token version and principal data, so JwtFilter doesn't query the users table on every request.
+ * Entries are evicted when a user row is updated or deleted (UserCacheInvalidationListener),
+ * the short TTL only bounds how long a missed invalidation (e.g. a manual SQL update) can be served.
+ */
+@Component
+public class UserSessionCache {
+
+    private final UserRepository userRepository;
+    private final Cache<UUID, CachedUser> users;
+
+    public UserSessionCache(
+            UserRepository userRepository,
+            @Value("${auth.user-cache.max-size:10000}") long maxSize,
+            @Value("${auth.user-cache.ttl:PT1M}") Duration ttl,
+            MeterRegistry meterRegistry
+    ) {
+        this.userRepository = userRepository;
+        this.users = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, users, "auth.users");
+    }
+
+    // unknown ids are not cached, they go to the database every time
+    public Optional<CachedUser> get(UUID userId) {
+        return Optional.ofNullable(users.get(userId,
+                id -> userRepository.findById(id).map(CachedUser::from).orElse(null)));
+    }
+
+    /**
+     * Evicts now and again once the current transaction completes, a request that reads the row
+     * before the commit can't keep the old token version cached.
+     */
+    public void evict(UUID userId) {
+        if (userId == null) {
+            return;
+        }
+        users.invalidate(userId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    users.invalidate(userId);
+                }
+            });
+        }
+    }
+}
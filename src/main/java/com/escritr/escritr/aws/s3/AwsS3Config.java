@@ -9,8 +9,9 @@ import org.springframework.context.annotation.Profile;
 import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
 import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
 import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
 import software.amazon.awssdk.regions.Region;
-import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.services.s3.S3Configuration;
 
 import java.net.URI;
@@ -30,19 +31,22 @@ public class AwsS3Config {
     @Value("${aws.secretKey:#{null}}")
     private String secretKey;
 
+    // the async client runs on the netty event loop: a transfer in flight holds no request thread,
+    // maxConcurrency is the connection pool and should be at least aws.s3.max-in-flight
     //for production/default
     @Bean
     @Profile("!dev")
-    public S3Client s3Client() {
+    public S3AsyncClient s3Client(@Value("${aws.s3.max-connections:64}") int maxConnections) {
         Region region = Region.of(awsRegion);
 
         // Reminder:
         // For production i should use IAM Roles (EC2 Instance Profile)
         // for hmg env i can use aws directly with keys located on ~/.aws/credentials
         // either way the aws sdk will recognize the keys automatically
-        return S3Client.builder()
+        return S3AsyncClient.builder()
                 .region(region)
                 .credentialsProvider(DefaultCredentialsProvider.create())
+                .httpClientBuilder(NettyNioAsyncHttpClient.builder().maxConcurrency(maxConnections))
                 .build();
 
 
@@ -50,14 +54,16 @@ public class AwsS3Config {
 
     @Bean
     @Profile("dev")
-    public S3Client s3ClientDev(
+    public S3AsyncClient s3ClientDev(
+            @Value("${aws.s3.max-connections:64}") int maxConnections,
             @Value("${aws.s3.localstack.endpoint}") String localstackEndpoint,
             @Value("${aws.s3.localstack.accessKey:test}") String localstackAccessKey, // Default "test" for LocalStack
             @Value("${aws.s3.localstack.secretKey:test}") String localstackSecretKey  // Default "test" for LocalStack
     ) throws URISyntaxException {
-        log.info("Creating S3Client for LocalStack DEV environment. Endpoint: {}, Region: {}", localstackEndpoint, awsRegion);
-        return S3Client.builder()
+        log.info("Creating S3AsyncClient for LocalStack DEV environment. Endpoint: {}, Region: {}", localstackEndpoint, awsRegion);
+        return S3AsyncClient.builder()
                 .region(Region.of(awsRegion))
+                .httpClientBuilder(NettyNioAsyncHttpClient.builder().maxConcurrency(maxConnections))
                 .endpointOverride(new URI(localstackEndpoint))
                 .credentialsProvider(StaticCredentialsProvider.create(
                         AwsBasicCredentials.create(localstackAccessKey, localstackSecretKey)))
@@ -0,0 +1,55 @@
+package com.escritr.escritr.aws.s3;
+
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+
+import java.nio.ByteBuffer;
+import java.util.Optional;
+
+/**
+ * A request body over a slice of a byte array that is not copied, unlike AsyncRequestBody.fromBytes.
+ * The caller must leave the array alone until the request completed. Every subscription (the SDK
+ * subscribes again on retries) gets its own read-only view of the slice.
+ */
+final class ByteArrayPartBody implements AsyncRequestBody {
+
+    private final byte[] buffer;
+    private final int length;
+
+    ByteArrayPartBody(byte[] buffer, int length) {
+        this.buffer = buffer;
+        this.length = length;
+    }
+
+    @Override
+    public Optional<Long> contentLength() {
+        return Optional.of((long) length);
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super ByteBuffer> subscriber) {
+        subscriber.onSubscribe(new Subscription() {
+            private boolean done;
+
+            @Override
+            public void request(long n) {
+                if (done) {
+                    return;
+                }
+                done = true;
+                if (n <= 0) {
+                    subscriber.onError(new IllegalArgumentException("Demand must be positive, got " + n));
+                    return;
+                }
+                subscriber.onNext(ByteBuffer.wrap(buffer, 0, length).asReadOnlyBuffer());
+                subscriber.onComplete();
+            }
+
+            @Override
+            public void cancel() {
+                done = true;
+            }
+        });
+    }
+}
@@ -3,46 +3,159 @@ package com.escritr.escritr.aws.s3;
 import com.escritr.escritr.common.enums.ErrorAssetEnum;
 import com.escritr.escritr.common.enums.ErrorCodeEnum;
 import com.escritr.escritr.common.services.FileValidationService;
+import com.escritr.escritr.common.services.ImageVariantService;
+import com.escritr.escritr.common.services.ImageVariantService.ImageVariant;
 import com.escritr.escritr.exceptions.FileUploadException;
 import com.escritr.escritr.exceptions.InternalServerErrorException;
+import com.escritr.escritr.exceptions.StorageUnavailableException;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.multipart.MultipartFile;
-import software.amazon.awssdk.core.exception.SdkException;
-import software.amazon.awssdk.core.sync.RequestBody;
-import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.services.s3.model.*;
 
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 import java.util.stream.Collectors;
 
+/**
+ * Image storage on top of the async S3 client: transfers run on the SDK's event loop and the methods
+ * return futures, so a request thread is only held while the first chunk of an upload is read and validated.
+ * At most aws.s3.max-in-flight uploads run at once, each holding one part buffer (the max file size by default,
+ * 16 x 8MB); past that uploads are turned away with a 503 instead of queueing buffers.
+ * Files that fit in one part are stored under the SHA-256 of their bytes, see storeContentAddressed.
+ */
 @Service
 public class S3Service {
 
     private static final Logger logger = LoggerFactory.getLogger(S3Service.class);
 
-    private final S3Client s3Client;
+    // S3 rejects multipart parts smaller than this, except the last one
+    static final int MIN_PART_SIZE = 5 * 1024 * 1024;
+
+    // user metadata of content-addressed originals, the comma-separated names of their variants
+    private static final String VARIANTS_METADATA = "variants";
+    // a bucket lifecycle rule on this prefix cleans up what a failed promote leaves behind
+    private static final String TEMPORARY_PREFIX = "tmp/";
+
+    private final S3AsyncClient s3Client;
     private final FileValidationService fileValidationService;
+    private final ImageVariantService imageVariantService;
+    private final String bucketName;
+    private final int partSize;
+    private final Semaphore inFlight;
+    private final Counter rejected;
+    private final Counter deduplicatedFromCache;
+    private final Counter deduplicatedFromHead;
 
-    @Value("${aws.s3.bucket-name}")
-    private String bucketName;
+    // content-addressed keys known to be stored, with the names of their variants
+    private final Cache<String, List<String>> knownObjects;
 
-    public S3Service(S3Client s3Client,FileValidationService fileValidationService){
+    // reads the chunks after the first one, off the SDK threads: a part spooled to disk is blocking IO
+    private final ExecutorService partReader = Executors.newVirtualThreadPerTaskExecutor();
+
+    public S3Service(S3AsyncClient s3Client,
+                     FileValidationService fileValidationService,
+                     ImageVariantService imageVariantService,
+                     @Value("${aws.s3.bucket-name}") String bucketName,
+                     @Value("${aws.s3.upload.part-size:${spring.servlet.multipart.max-file-size:8MB}}") DataSize partSize,
+                     @Value("${aws.s3.max-in-flight:16}") int maxInFlight,
+                     @Value("${aws.s3.known-objects.max-size:100000}") long knownObjectsMaxSize,
+                     @Value("${aws.s3.known-objects.ttl:PT24H}") Duration knownObjectsTtl,
+                     MeterRegistry meterRegistry){
         this.s3Client = s3Client;
         this.fileValidationService = fileValidationService;
+        this.imageVariantService = imageVariantService;
+        this.bucketName = bucketName;
+        this.partSize = (int) Math.max(MIN_PART_SIZE, Math.min(partSize.toBytes(), Integer.MAX_VALUE));
+        this.inFlight = new Semaphore(maxInFlight);
+
+        Gauge.builder("aws.s3.uploads.in-flight", inFlight, semaphore -> maxInFlight - semaphore.availablePermits())
+                .description("Uploads currently streaming to the bucket")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("aws.s3.uploads.rejected").register(meterRegistry);
+        this.deduplicatedFromCache = Counter.builder("aws.s3.uploads.deduplicated").tag("source", "cache").register(meterRegistry);
+        this.deduplicatedFromHead = Counter.builder("aws.s3.uploads.deduplicated").tag("source", "head").register(meterRegistry);
+
+        // the TTL only bounds how long an object removed behind the service's back is still handed out
+        this.knownObjects = Caffeine.newBuilder()
+                .maximumSize(knownObjectsMaxSize)
+                .expireAfterWrite(knownObjectsTtl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, knownObjects, "aws.s3.known-objects");
+    }
+
+    @PreDestroy
+    void stop() {
+        partReader.shutdownNow();
+    }
+
+    /**
+     * Records an upload's hold on its key before the bucket is asked whether the key is stored, so a delete
+     * of the last other hold can't remove the object in between. Returns true when other uploads already
+     * held the key: only then is an object known from this node's memory still trusted, a lone hold checks
+     * the bucket in case another node deleted it. Called from blocking-friendly threads only.
+     */
+    @FunctionalInterface
+    public interface KeyClaim {
+        boolean claim(String key);
     }
 
+    // no one else keeps track of the keys, what this node knows is trusted
+    public CompletableFuture<UploadedFile> upload(MultipartFile file) {
+        return upload(file, key -> true);
+    }
 
-    public String uploadFile(MultipartFile file) {
 
-        fileValidationService.validateFile(file);
+    /**
+     * Streams the file to the bucket reading the part exactly once: the first chunk is sniffed for its type
+     * before anything is sent, the SHA-256 and the size cap are updated chunk by chunk, and memory is bounded
+     * by one part buffer whatever the size of the file. A file that fits in one part is stored under its digest with
+     * a single PutObject, unless it is already there. Anything bigger goes through a multipart upload under a temporary
+     * key, aborted if a later chunk fails, then copied under its digest once the last chunk gave it (see promote).
+     * JPEG and PNG images that fit in one part also get their downscaled variants (see ImageVariantService), stored
+     * next to the original under derived keys: the future completes once they are all stored. Bigger files are stored
+     * without variants, decoding them would mean reading the part a second time or holding a decoder thread
+     * while each part is sent. With the default aws.s3.upload.part-size, the max file size, every upload is single-part.
+     * The claim is made with the digest key before its existence is checked, see KeyClaim.
+     * Validation errors are thrown right away, storage errors complete the future exceptionally.
+     */
+    public CompletableFuture<UploadedFile> upload(MultipartFile file, KeyClaim claim) {
+
+        fileValidationService.validateMetadata(file);
 
 
         String originalFileName = file.getOriginalFilename();
@@ -54,63 +167,375 @@ public class S3Service {
         if (lastDot > 0 && lastDot < originalFileName.length() - 1) {
             fileExtension = originalFileName.substring(lastDot);
         }
-        String uniqueFileName = UUID.randomUUID().toString() + fileExtension;
+        // where a multipart upload is assembled before it is copied under its digest, see promote
+        String uniqueFileName = TEMPORARY_PREFIX + UUID.randomUUID().toString() + fileExtension;
+        String name = originalFileName;
 
-        try{
-            PutObjectRequest putObjectRequest = PutObjectRequest.builder()
-                    .bucket(bucketName)
-                    .key(uniqueFileName)
-                    .contentType(file.getContentType())
-                    .build();
+        if (!inFlight.tryAcquire()) {
+            rejected.increment();
+            throw new StorageUnavailableException();
+        }
 
-            s3Client.putObject(putObjectRequest, RequestBody.fromInputStream(file.getInputStream(), file.getSize()));
-            logger.info("File {} uploaded successfully to S3 bucket {}.", uniqueFileName, bucketName);
+        PartStream part = null;
+        CompletableFuture<UploadedFile> upload;
+        try {
+            part = new PartStream(file.getInputStream());
+            if (part.nextChunk() == 0) {
+                throw new FileUploadException("File is empty or not provided.", ErrorAssetEnum.STORAGE, ErrorCodeEnum.STORAGE_ERROR);
+            }
+            String contentType = fileValidationService.detectContentType(part.buffer, part.length, originalFileName);
+            if (part.last) {
+                upload = storeContentAddressed(contentType, part, claim);
+            } else {
+                upload = uploadMultipart(uniqueFileName, contentType, part, claim);
+            }
+        } catch (IOException | RuntimeException e) {
+            inFlight.release();
+            closeQuietly(part);
+            throw translate(e, name);
+        }
 
-            GetUrlRequest getUrlRequest = GetUrlRequest.builder()
-                    .bucket(bucketName)
-                    .key(uniqueFileName)
-                    .build();
-            URL url = s3Client.utilities().getUrl(getUrlRequest);
-            return url.toString();
-        }catch (S3Exception e) {
-            logger.error("S3Exception during upload of file '{}' to bucket '{}': Status Code: {}, AWS Error Code: {}, Message: {}",
-                    uniqueFileName, bucketName, e.statusCode(), e.awsErrorDetails().errorCode(), e.awsErrorDetails().errorMessage(), e);
-            throw new InternalServerErrorException("Failed to save image to storage due to an unexpected error with the storage provider.");
-        } catch (IOException e) {
-            logger.error("IOException during S3 upload preparation for file: {}. Error: {}", originalFileName, e.getMessage(), e);
-            throw new FileUploadException("There was an error while processing the file for upload",ErrorAssetEnum.STORAGE,ErrorCodeEnum.STORAGE_ERROR);
-        } catch (Exception e) {
-            logger.info("Error while saving image to storage:{}", e.getMessage());
-            throw new InternalServerErrorException("Error while saving image to storage");
+        PartStream stream = part;
+        return upload.handle((uploaded, error) -> {
+            inFlight.release();
+            closeQuietly(stream);
+            if (error != null) {
+                throw translate(error, name);
+            }
+            logger.info("File {} ({} bytes, {} variants) uploaded successfully to S3 bucket {}.",
+                    uploaded.key(), uploaded.size(), uploaded.variants().size(), bucketName);
+            return uploaded;
+        });
+    }
+
+    /**
+     * Stores a file that fits in the buffer under the SHA-256 of its bytes, so the same image uploaded again
+     * (editor pastes, retries) costs a lookup in knownObjects or a single HEAD instead of a transfer.
+     * The original is written last, after its variants and with their names in its metadata: once the key
+     * exists its variants do too, which is what lets a duplicate answer from a HEAD.
+     */
+    private CompletableFuture<UploadedFile> storeContentAddressed(String contentType, PartStream part, KeyClaim claim) {
+        byte[] hash = part.digest.digest();
+        String sha256 = HexFormat.of().formatHex(hash);
+        String key = sha256 + extensionFor(contentType);
+
+        // still on the request thread
+        List<String> known = claim.claim(key) ? knownObjects.getIfPresent(key) : null;
+        if (known != null) {
+            deduplicatedFromCache.increment();
+            return CompletableFuture.completedFuture(existing(key, contentType, part.size, sha256, known));
         }
 
+        HeadObjectRequest headObjectRequest = HeadObjectRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .build();
+        return s3Client.headObject(headObjectRequest)
+                .<Optional<List<String>>>handle((head, error) -> {
+                    if (error == null) {
+                        return Optional.of(variantNames(head.metadata()));
+                    }
+                    if (unwrap(error) instanceof S3Exception e && e.statusCode() == 404) {
+                        return Optional.empty();
+                    }
+                    throw error instanceof CompletionException completion ? completion : new CompletionException(error);
+                })
+                .thenCompose(stored -> {
+                    if (stored.isPresent()) {
+                        deduplicatedFromHead.increment();
+                        knownObjects.put(key, stored.get());
+                        return CompletableFuture.completedFuture(existing(key, contentType, part.size, sha256, stored.get()));
+                    }
+                    return imageVariantService.generate(() -> new ByteArrayInputStream(part.buffer, 0, part.length), contentType)
+                            .thenCompose(generated -> storeVariants(key, generated))
+                            .thenCompose(variants -> putObject(key, contentType, part, hash, variants.keySet())
+                                    .thenApply(uploaded -> {
+                                        knownObjects.put(key, List.copyOf(variants.keySet()));
+                                        return uploaded.withVariants(variants);
+                                    }));
+                });
     }
 
-    public void deleteFile(String fileKey) {
-        try {
+    private UploadedFile existing(String key, String contentType, long size, String sha256, List<String> variantNames) {
+        Map<String, String> variants = new LinkedHashMap<>();
+        for (String variant : variantNames) {
+            variants.put(variant, urlOf(variantKey(key, variant)));
+        }
+        return new UploadedFile(key, urlOf(key), contentType, size, sha256, Map.of()).withVariants(variants);
+    }
 
-            HeadObjectRequest headObjectRequest = HeadObjectRequest.builder()
-                    .bucket(bucketName)
-                    .key(fileKey)
+    private CompletableFuture<UploadedFile> putObject(String key, String contentType, PartStream part, byte[] hash,
+                                                      Collection<String> variantNames) {
+        PutObjectRequest putObjectRequest = PutObjectRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .contentType(contentType)
+                .contentLength((long) part.length)
+                .checksumSHA256(Base64.getEncoder().encodeToString(hash))
+                .metadata(Map.of(VARIANTS_METADATA, String.join(",", variantNames)))
+                .build();
+        return s3Client.putObject(putObjectRequest, new ByteArrayPartBody(part.buffer, part.length))
+                .thenApply(response -> uploaded(key, contentType, part.size, hash));
+    }
+
+    private CompletableFuture<UploadedFile> uploadMultipart(String key, String contentType, PartStream part, KeyClaim claim) {
+        return s3Client.createMultipartUpload(CreateMultipartUploadRequest.builder()
+                        .bucket(bucketName)
+                        .key(key)
+                        .contentType(contentType)
+                        .build())
+                .thenCompose(created -> {
+                    String uploadId = created.uploadId();
+                    List<CompletedPart> parts = new ArrayList<>();
+                    return uploadParts(key, uploadId, part, parts)
+                            .thenCompose(done -> s3Client.completeMultipartUpload(CompleteMultipartUploadRequest.builder()
+                                    .bucket(bucketName)
+                                    .key(key)
+                                    .uploadId(uploadId)
+                                    .multipartUpload(CompletedMultipartUpload.builder().parts(parts).build())
+                                    .build()))
+                            .whenComplete((completed, error) -> {
+                                if (error != null) {
+                                    abortMultipart(key, uploadId);
+                                }
+                            });
+                })
+                .thenCompose(completed -> promote(key, contentType, part.size, part.digest.digest(), claim));
+    }
+
+    /**
+     * Moves a multipart upload from its temporary key to the SHA-256 of its bytes, so big duplicates are
+     * deduplicated like small ones: when the digest key is already stored the copy is skipped and the
+     * temporary object is dropped, otherwise it is copied in the bucket (no transfer) and then dropped.
+     */
+    private CompletableFuture<UploadedFile> promote(String temporaryKey, String contentType, long size, byte[] hash, KeyClaim claim) {
+        String sha256 = HexFormat.of().formatHex(hash);
+        String key = sha256 + extensionFor(contentType);
+
+        // the claim is blocking, it runs on the part reader's virtual threads and not on the SDK's
+        return CompletableFuture.supplyAsync(() -> claim.claim(key), partReader)
+                .thenCompose(shared -> {
+                    List<String> known = shared ? knownObjects.getIfPresent(key) : null;
+                    if (known != null) {
+                        deduplicatedFromCache.increment();
+                        return CompletableFuture.completedFuture(existing(key, contentType, size, sha256, known));
+                    }
+                    return copyUnlessStored(temporaryKey, key, contentType, size, hash);
+                })
+                .whenComplete((uploaded, error) -> deleteTemporary(temporaryKey));
+    }
+
+    private CompletableFuture<UploadedFile> copyUnlessStored(String temporaryKey, String key, String contentType, long size, byte[] hash) {
+        String sha256 = HexFormat.of().formatHex(hash);
+        CompletableFuture<Optional<List<String>>> stored = s3Client.headObject(HeadObjectRequest.builder().bucket(bucketName).key(key).build())
+                .handle((head, error) -> {
+                    if (error == null) {
+                        return Optional.of(variantNames(head.metadata()));
+                    }
+                    if (unwrap(error) instanceof S3Exception e && e.statusCode() == 404) {
+                        return Optional.empty();
+                    }
+                    throw error instanceof CompletionException completion ? completion : new CompletionException(error);
+                });
+
+        return stored.thenCompose(existing -> {
+            if (existing.isPresent()) {
+                deduplicatedFromHead.increment();
+                knownObjects.put(key, existing.get());
+                return CompletableFuture.completedFuture(existing(key, contentType, size, sha256, existing.get()));
+            }
+            CopyObjectRequest copyObjectRequest = CopyObjectRequest.builder()
+                    .sourceBucket(bucketName)
+                    .sourceKey(temporaryKey)
+                    .destinationBucket(bucketName)
+                    .destinationKey(key)
+                    .contentType(contentType)
+                    .metadataDirective(MetadataDirective.REPLACE)
+                    .metadata(Map.of(VARIANTS_METADATA, ""))
                     .build();
-            s3Client.headObject(headObjectRequest); // Throws S3Exception if not found
+            return s3Client.copyObject(copyObjectRequest).thenApply(copied -> {
+                knownObjects.put(key, List.of());
+                return uploaded(key, contentType, size, hash);
+            });
+        });
+    }
+
+    private void deleteTemporary(String key) {
+        s3Client.deleteObject(DeleteObjectRequest.builder().bucket(bucketName).key(key).build())
+                .whenComplete((deleted, error) -> {
+                    if (error != null) {
+                        logger.warn("Could not delete temporary upload {}: {}", key, unwrap(error).getMessage());
+                    }
+                });
+    }
+
+    // sends the chunk in the buffer, then reads the next one into the same buffer once the part went out
+    private CompletableFuture<Void> uploadParts(String key, String uploadId, PartStream part, List<CompletedPart> parts) {
+        int partNumber = parts.size() + 1;
+        UploadPartRequest request = UploadPartRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .uploadId(uploadId)
+                .partNumber(partNumber)
+                .contentLength((long) part.length)
+                .build();
+        return s3Client.uploadPart(request, new ByteArrayPartBody(part.buffer, part.length))
+                .thenComposeAsync(response -> {
+                    parts.add(CompletedPart.builder().partNumber(partNumber).eTag(response.eTag()).build());
+                    if (part.last) {
+                        return CompletableFuture.completedFuture(null);
+                    }
+                    try {
+                        part.nextChunk();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    return uploadParts(key, uploadId, part, parts);
+                }, partReader);
+    }
+
+    private void abortMultipart(String key, String uploadId) {
+        s3Client.abortMultipartUpload(AbortMultipartUploadRequest.builder()
+                        .bucket(bucketName)
+                        .key(key)
+                        .uploadId(uploadId)
+                        .build())
+                .whenComplete((aborted, error) -> {
+                    if (error != null) {
+                        // the bucket lifecycle rule for incomplete multipart uploads cleans up what is left
+                        logger.warn("Could not abort multipart upload {} of file {}: {}", uploadId, key, unwrap(error).getMessage());
+                    }
+                });
+    }
+
+    private UploadedFile uploaded(String key, String contentType, long size, byte[] hash) {
+        return new UploadedFile(key, urlOf(key), contentType, size, HexFormat.of().formatHex(hash), Map.of());
+    }
 
-            DeleteObjectRequest deleteObjectRequest = DeleteObjectRequest.builder()
+    // a variant that could not be stored is left out of the map, the original is enough to show the image
+    private CompletableFuture<Map<String, String>> storeVariants(String originalKey, List<ImageVariant> variants) {
+        if (variants.isEmpty()) {
+            return CompletableFuture.completedFuture(Map.of());
+        }
+        List<CompletableFuture<String>> puts = new ArrayList<>();
+        for (ImageVariant variant : variants) {
+            String key = variantKey(originalKey, variant.name());
+            PutObjectRequest request = PutObjectRequest.builder()
                     .bucket(bucketName)
-                    .key(fileKey)
+                    .key(key)
+                    .contentType(variant.contentType())
+                    .contentLength((long) variant.content().length)
                     .build();
-            s3Client.deleteObject(deleteObjectRequest);
-            logger.info("File {} deleted successfully from S3 bucket {}.", fileKey, bucketName);
-        } catch (S3Exception e) {
-            if (e.statusCode() == 404) {
-                logger.warn("File {} not found in S3 bucket {} during deletion attempt.", fileKey, bucketName);
-            } else {
-                logger.error("Error deleting file {} from S3: {}", fileKey, e.getMessage(), e);
-                throw e;
+            puts.add(s3Client.putObject(request, new ByteArrayPartBody(variant.content(), variant.content().length))
+                    .handle((response, error) -> {
+                        if (error != null) {
+                            logger.warn("Could not store variant {} of file {}: {}", variant.name(), originalKey, unwrap(error).getMessage());
+                            return null;
+                        }
+                        return key;
+                    }));
+        }
+        return CompletableFuture.allOf(puts.toArray(CompletableFuture[]::new)).thenApply(done -> {
+            Map<String, String> urls = new LinkedHashMap<>();
+            for (int i = 0; i < variants.size(); i++) {
+                String key = puts.get(i).join();
+                if (key != null) {
+                    urls.put(variants.get(i).name(), urlOf(key));
+                }
             }
-        } catch(Exception e){
-            throw new InternalServerErrorException("Failed to delete file");
+            return urls;
+        });
+    }
+
+    private static List<String> variantNames(Map<String, String> metadata) {
+        String variants = metadata.get(VARIANTS_METADATA);
+        if (variants == null || variants.isEmpty()) {
+            return List.of();
         }
+        return List.of(variants.split(","));
+    }
+
+    // from the detected type, the same bytes get the same key whatever the file was called
+    private static String extensionFor(String contentType) {
+        return switch (contentType) {
+            case "image/jpeg" -> ".jpg";
+            case "image/png" -> ".png";
+            case "image/gif" -> ".gif";
+            case "image/webp" -> ".webp";
+            default -> "";
+        };
+    }
+
+    // photo.jpg -> photo-320w.jpg
+    static String variantKey(String key, String variantName) {
+        int lastDot = key.lastIndexOf('.');
+        return lastDot > 0
+                ? key.substring(0, lastDot) + "-" + variantName + key.substring(lastDot)
+                : key + "-" + variantName;
+    }
+
+    private RuntimeException translate(Throwable error, String originalFileName) {
+        Throwable cause = unwrap(error);
+        if (cause instanceof UncheckedIOException unchecked) {
+            cause = unchecked.getCause();
+        }
+        if (cause instanceof FileUploadException e) {
+            return e;
+        }
+        if (cause instanceof S3Exception e) {
+            logger.error("S3Exception during upload of file '{}' to bucket '{}': Status Code: {}, AWS Error Code: {}, Message: {}",
+                    originalFileName, bucketName, e.statusCode(), e.awsErrorDetails().errorCode(), e.awsErrorDetails().errorMessage(), e);
+            return new InternalServerErrorException("Failed to save image to storage due to an unexpected error with the storage provider.");
+        }
+        if (cause instanceof IOException e) {
+            logger.error("IOException during S3 upload of file: {}. Error: {}", originalFileName, e.getMessage(), e);
+            return new FileUploadException("There was an error while processing the file for upload",ErrorAssetEnum.STORAGE,ErrorCodeEnum.STORAGE_ERROR);
+        }
+        logger.info("Error while saving image to storage:{}", cause.getMessage());
+        return new InternalServerErrorException("Error while saving image to storage");
+    }
+
+    /**
+     * Deletes the object and its variants in one batch delete, keys that were never stored are ignored by S3.
+     * Completes with false when there was no object under the key. Content-addressed keys are shared by every
+     * upload of the same bytes: callers check that nothing holds the key anymore and keep new claims out until
+     * the future completed, see ImageUploadService.
+     */
+    public CompletableFuture<Boolean> deleteFile(String fileKey) {
+        HeadObjectRequest headObjectRequest = HeadObjectRequest.builder()
+                .bucket(bucketName)
+                .key(fileKey)
+                .build();
+        List<ObjectIdentifier> keys = new ArrayList<>();
+        keys.add(ObjectIdentifier.builder().key(fileKey).build());
+        for (String variant : imageVariantService.variantNames()) {
+            keys.add(ObjectIdentifier.builder().key(variantKey(fileKey, variant)).build());
+        }
+        DeleteObjectsRequest deleteObjectsRequest = DeleteObjectsRequest.builder()
+                .bucket(bucketName)
+                .delete(Delete.builder().objects(keys).quiet(true).build())
+                .build();
+
+        // before the delete is sent: from here on the same bytes uploaded again are checked in the bucket
+        knownObjects.invalidate(fileKey);
+        return s3Client.headObject(headObjectRequest) // fails with a 404 if not found
+                .thenCompose(head -> s3Client.deleteObjects(deleteObjectsRequest))
+                .handle((deleted, error) -> {
+                    if (error == null) {
+                        if (deleted.hasErrors()) {
+                            deleted.errors().forEach(e -> logger.error("Error deleting object {}: {}", e.key(), e.message()));
+                        }
+                        logger.info("File {} deleted successfully from S3 bucket {}.", fileKey, bucketName);
+                        return true;
+                    }
+                    Throwable cause = unwrap(error);
+                    if (cause instanceof S3Exception e && e.statusCode() == 404) {
+                        logger.warn("File {} not found in S3 bucket {} during deletion attempt.", fileKey, bucketName);
+                        return false;
+                    }
+                    logger.error("Error deleting file {} from S3: {}", fileKey, cause.getMessage(), cause);
+                    throw new InternalServerErrorException("Failed to delete file", cause);
+                });
     }
 
 
@@ -130,30 +555,108 @@ public class S3Service {
         }
     }
 
-    public void deleteMultipleFiles(List<String> fileKeys) {
+    public CompletableFuture<Void> deleteMultipleFiles(List<String> fileKeys) {
         if (fileKeys == null || fileKeys.isEmpty()) {
-            return;
+            return CompletableFuture.completedFuture(null);
         }
 
+        // content-addressed objects may be shared, callers check their references as for deleteFile
         List<ObjectIdentifier> objectsToDelete = fileKeys.stream()
                 .map(key -> ObjectIdentifier.builder().key(key).build())
                 .collect(Collectors.toList());
+        knownObjects.invalidateAll(fileKeys);
 
         DeleteObjectsRequest deleteObjectsRequest = DeleteObjectsRequest.builder()
                 .bucket(bucketName)
                 .delete(Delete.builder().objects(objectsToDelete).quiet(false).build())
                 .build();
 
+        return s3Client.deleteObjects(deleteObjectsRequest)
+                .whenComplete((response, error) -> {
+                    if (error != null) {
+                        logger.error("Error during batch delete from S3: {}", unwrap(error).getMessage(), error);
+                        return;
+                    }
+                    logger.info("Successfully deleted {} objects.", response.deleted().size());
+                    if (response.hasErrors()) {
+                        response.errors().forEach(e ->
+                                logger.error("Error deleting object {}: {}", e.key(), e.message()));
+                    }
+                })
+                .thenApply(response -> null);
+    }
+
+    private String urlOf(String key) {
+        GetUrlRequest getUrlRequest = GetUrlRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .build();
+        URL url = s3Client.utilities().getUrl(getUrlRequest);
+        return url.toString();
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
         try {
-            DeleteObjectsResponse response = s3Client.deleteObjects(deleteObjectsRequest);
-            logger.info("Successfully deleted {} objects.", response.deleted().size());
-            if (response.hasErrors()) {
-                response.errors().forEach(error ->
-                        logger.error("Error deleting object {}: {}", error.key(), error.message()));
+            closeable.close();
+        } catch (IOException e) {
+            logger.debug("Could not close upload stream: {}", e.getMessage());
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    // reads the part once, one buffer-sized chunk at a time, keeping the digest and the size cap up to date
+    private final class PartStream implements Closeable {
+
+        private final InputStream in;
+        private final byte[] buffer;
+        private final long maxFileSize;
+        private final MessageDigest digest = sha256();
+        private long size;
+        private int length;
+        private boolean last;
+        // readNBytes only returns a short chunk at the end of the stream, a full one needs a look past it
+        private int lookahead = -1;
+
+        private PartStream(InputStream in) {
+            this.in = in;
+            this.maxFileSize = fileValidationService.getMaxFileSize();
+            this.buffer = new byte[(int) Math.min(partSize, maxFileSize + 1)];
+        }
+
+        private int nextChunk() throws IOException {
+            int offset = 0;
+            if (lookahead != -1) {
+                buffer[0] = (byte) lookahead;
+                offset = 1;
             }
-        } catch (S3Exception e) {
-            logger.error("Error during batch delete from S3: {}", e.getMessage(), e);
-            throw e;
+            length = offset + in.readNBytes(buffer, offset, buffer.length - offset);
+            size += length;
+            if (size > maxFileSize) {
+                throw fileValidationService.sizeLimitExceeded();
+            }
+            digest.update(buffer, 0, length);
+            lookahead = length < buffer.length ? -1 : in.read();
+            last = lookahead == -1;
+            return length;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
         }
     }
 }
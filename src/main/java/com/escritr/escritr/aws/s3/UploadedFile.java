@@ -0,0 +1,14 @@
+package com.escritr.escritr.aws.s3;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// sha256 is the hex digest of the bytes that were stored, contentType the detected one,
+// variants the urls of the downscaled copies by name (320w, 768w, 1280w, placeholder)
+public record UploadedFile(String key, String url, String contentType, long size, String sha256, Map<String, String> variants) {
+
+    public UploadedFile withVariants(Map<String, String> variants) {
+        return new UploadedFile(key, url, contentType, size, sha256, Collections.unmodifiableMap(new LinkedHashMap<>(variants)));
+    }
+}
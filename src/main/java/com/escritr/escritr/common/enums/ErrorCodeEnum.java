@@ -12,7 +12,9 @@ public enum ErrorCodeEnum {
     UNAUTHORIZED("UNAUTHORIZED"),
     STORAGE_ERROR("STORAGE_ERROR"),
     FILE_UPLOAD_ERROR("FILE_UPLOAD_ERROR"),
-    INPUT_FORMAT_ERROR("INPUT_FORMAT_ERROR");
+    INPUT_FORMAT_ERROR("INPUT_FORMAT_ERROR"),
+    SERVICE_UNAVAILABLE("SERVICE_UNAVAILABLE"),
+    TOO_MANY_REQUESTS("TOO_MANY_REQUESTS");
 
     private final String value;
 
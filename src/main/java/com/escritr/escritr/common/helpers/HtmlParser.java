@@ -3,11 +3,53 @@ package com.escritr.escritr.common.helpers;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.nodes.TextNode;
+import org.jsoup.safety.Cleaner;
 import org.jsoup.safety.Safelist;
 import org.jsoup.select.Elements;
+import org.jsoup.select.NodeTraversor;
+import org.jsoup.select.NodeVisitor;
+
+import java.util.ArrayList;
+import java.util.List;
 
 public class HtmlParser {
 
+    // built once and never modified afterwards, a Cleaner only reads its safelist so one instance serves every thread
+    private static final Cleaner CLEANER = new Cleaner(safe());
+
+    private static final int WORDS_PER_MINUTE = 200;
+
+    /**
+     * Sanitizes article content and extracts everything derived from it, parsing the input once and walking
+     * the sanitized tree once. Prefer this over calling cleanContent, extractFirstParagraph and extractPlainText
+     * one after the other, each of them parses the content again.
+     */
+    public static ParsedContent process(String input){
+        if (input == null || input.isBlank()) {
+            return ParsedContent.EMPTY;
+        }
+
+        Document clean = CLEANER.clean(Jsoup.parseBodyFragment(input, ""));
+        Element body = clean.body();
+
+        ContentVisitor visitor = new ContentVisitor();
+        NodeTraversor.traverse(visitor, body);
+
+        String plainText = visitor.plainText.toString().trim();
+        int wordCount = countWords(plainText);
+        return new ParsedContent(
+                body.html(),
+                visitor.firstParagraph == null ? "" : visitor.firstParagraph,
+                plainText,
+                wordCount,
+                wordCount == 0 ? 0 : (wordCount + WORDS_PER_MINUTE - 1) / WORDS_PER_MINUTE,
+                List.copyOf(visitor.headings),
+                List.copyOf(visitor.imageUrls)
+        );
+    }
+
     public static String extractFirstParagraph(String _input){
 
         String input = Jsoup.clean(_input,safe());
@@ -28,7 +70,15 @@ public class HtmlParser {
         if (input == null) {
             return "";
         }
-        return Jsoup.clean(input,safe());
+        return CLEANER.clean(Jsoup.parseBodyFragment(input, "")).body().html();
+    }
+
+    // text the search index is built from, expects content that already went through cleanContent
+    public static String extractPlainText(String content){
+        if (content == null || content.isBlank()) {
+            return "";
+        }
+        return Jsoup.parse(content).text();
     }
 
     public static Safelist safe() {
@@ -47,4 +97,92 @@ public class HtmlParser {
         return plainText.trim().replaceAll("\\s+", " ");
     }
 
+    private static int countWords(String text) {
+        int words = 0;
+        boolean inWord = false;
+        for (int i = 0; i < text.length(); i++) {
+            boolean whitespace = Character.isWhitespace(text.charAt(i));
+            if (!whitespace && !inWord) {
+                words++;
+            }
+            inWord = !whitespace;
+        }
+        return words;
+    }
+
+    // collects the text, outline and images in document order, the same order Element.text() and select() use
+    private static final class ContentVisitor implements NodeVisitor {
+
+        private final StringBuilder plainText = new StringBuilder();
+        private final List<ParsedContent.Heading> headings = new ArrayList<>();
+        private final List<String> imageUrls = new ArrayList<>();
+        private String firstParagraph;
+
+        @Override
+        public void head(Node node, int depth) {
+            if (node instanceof TextNode textNode) {
+                appendText(textNode);
+            } else if (node instanceof Element element) {
+                if (element.isBlock() || element.nameIs("br")) {
+                    separate();
+                }
+                if (element.nameIs("img")) {
+                    String src = element.attr("src");
+                    if (!src.isBlank()) {
+                        imageUrls.add(src);
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void tail(Node node, int depth) {
+            if (!(node instanceof Element element)) {
+                return;
+            }
+            if (element.isBlock()) {
+                separate();
+            }
+            int level = headingLevel(element);
+            // the subtree walk in text() stays inside the heading or paragraph, both are short
+            if (level > 0) {
+                String text = element.text();
+                if (!text.isEmpty()) {
+                    headings.add(new ParsedContent.Heading(level, text));
+                }
+            }
+            if (firstParagraph == null && (element.nameIs("p") || level == 1 || level == 2)) {
+                String text = element.text().trim();
+                if (!text.isEmpty()) {
+                    firstParagraph = text;
+                }
+            }
+        }
+
+        private void appendText(TextNode textNode) {
+            String text = textNode.getWholeText();
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (Character.isWhitespace(c) || c == '\u00a0') {
+                    separate();
+                } else {
+                    plainText.append(c);
+                }
+            }
+        }
+
+        private void separate() {
+            if (!plainText.isEmpty() && plainText.charAt(plainText.length() - 1) != ' ') {
+                plainText.append(' ');
+            }
+        }
+
+        private static int headingLevel(Element element) {
+            String name = element.normalName();
+            if (name.length() == 2 && name.charAt(0) == 'h' && name.charAt(1) >= '1' && name.charAt(1) <= '6') {
+                return name.charAt(1) - '0';
+            }
+            return 0;
+        }
+    }
 }
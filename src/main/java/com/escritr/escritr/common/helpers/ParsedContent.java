@@ -0,0 +1,23 @@
+package com.escritr.escritr.common.helpers;
+
+import java.util.List;
+
+/**
+ * Everything derived from an article body by HtmlParser.process.
+ * sanitizedHtml is what gets stored, the other fields are computed from it.
+ */
+public record ParsedContent(
+        String sanitizedHtml,
+        String firstParagraph,
+        String plainText,
+        int wordCount,
+        int readingTimeMinutes,
+        List<Heading> headings,
+        List<String> imageUrls
+) {
+
+    public static final ParsedContent EMPTY = new ParsedContent("", "", "", 0, 0, List.of(), List.of());
+
+    public record Heading(int level, String text) {
+    }
+}
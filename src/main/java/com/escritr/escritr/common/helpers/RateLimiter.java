@@ -0,0 +1,81 @@
+package com.escritr.escritr.common.helpers;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket per key, in its GCRA form: the whole state of a bucket is one long, the time at which it would be
+ * full again ("theoretical arrival time"), updated with a CAS. Admissions never lock, contention on a key only
+ * retries the CAS, and different keys live in different bins of the cache's map.
+ * A bucket untouched for a full refill period is full, so it is dropped (expireAfterAccess) and memory only
+ * holds the keys seen recently, bounded by maxKeys under churn.
+ */
+public class RateLimiter {
+
+    private final long emissionIntervalNanos;
+    private final long toleranceNanos;
+    private final LongSupplier nanoClock;
+    private final Cache<String, AtomicLong> buckets;
+
+    /**
+     * @param capacity     requests a key can make in a burst
+     * @param refillPeriod time for an empty bucket to fill up again, capacity / refillPeriod is the sustained rate
+     */
+    public RateLimiter(int capacity, Duration refillPeriod, long maxKeys) {
+        this(capacity, refillPeriod, maxKeys, System::nanoTime);
+    }
+
+    RateLimiter(int capacity, Duration refillPeriod, long maxKeys, LongSupplier nanoClock) {
+        int burst = Math.max(1, capacity);
+        this.emissionIntervalNanos = Math.max(1, refillPeriod.toNanos() / burst);
+        this.toleranceNanos = emissionIntervalNanos * (burst - 1);
+        this.nanoClock = nanoClock;
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maxKeys)
+                .expireAfterAccess(refillPeriod)
+                .build();
+    }
+
+    /**
+     * Takes a token from the bucket of the key.
+     * @return 0 if the request is admitted, otherwise the nanoseconds until the key gets a token back
+     */
+    public long tryAcquire(String key) {
+        long now = nanoClock.getAsLong();
+        AtomicLong theoreticalArrival = buckets.get(key, k -> new AtomicLong(now));
+        while (true) {
+            long current = theoreticalArrival.get();
+            long start = current - now < 0 ? now : current;
+            long waitNanos = start - toleranceNanos - now;
+            if (waitNanos > 0) {
+                return waitNanos;
+            }
+            if (theoreticalArrival.compareAndSet(current, start + emissionIntervalNanos)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * What tryAcquire would answer, without taking the token: for callers that only charge some outcomes.
+     * @return 0 if the key has a token left, otherwise the nanoseconds until it gets one back
+     */
+    public long waitFor(String key) {
+        AtomicLong theoreticalArrival = buckets.getIfPresent(key);
+        if (theoreticalArrival == null) {
+            return 0;
+        }
+        long now = nanoClock.getAsLong();
+        long current = theoreticalArrival.get();
+        long start = current - now < 0 ? now : current;
+        return Math.max(0, start - toleranceNanos - now);
+    }
+
+    public long trackedKeys() {
+        return buckets.estimatedSize();
+    }
+}
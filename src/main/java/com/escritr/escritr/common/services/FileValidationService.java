@@ -13,8 +13,6 @@ import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.IOException;
-import java.io.InputStream;
 import java.util.Arrays;
 import java.util.List;
 
@@ -27,6 +25,9 @@ public class FileValidationService {
     private final List<String> allowedExtensions;
     private final long maxFileSize; // in bytes
 
+    // the image signatures Tika knows sit in the first few bytes, this is plenty
+    public static final int CONTENT_SNIFF_BYTES = 4096;
+
     private final Tika tika = new Tika(); // For MIME type detection
 
     public FileValidationService(
@@ -65,7 +66,16 @@ public class FileValidationService {
     }
 
 
-    public void validateFile(MultipartFile file) throws FileUploadException {
+    public long getMaxFileSize() {
+        return maxFileSize;
+    }
+
+    /**
+     * Checks what can be checked without reading the content: presence, name, declared size and extension.
+     * The content type is checked by detectContentType against the first bytes of the upload, so the
+     * part is only read once, by whoever streams it to storage.
+     */
+    public void validateMetadata(MultipartFile file) throws FileUploadException {
         if (file == null || file.isEmpty()) {
             throw new FileUploadException("File is empty or not provided.", ErrorAssetEnum.STORAGE, ErrorCodeEnum.STORAGE_ERROR);
         }
@@ -76,8 +86,7 @@ public class FileValidationService {
         }
 
         if (file.getSize() > maxFileSize) {
-            throw new FileSizeLimitExceededException(
-                    String.format("File size exceeds the limit of %d MB.", maxFileSize / (1024 * 1024)),ErrorAssetEnum.STORAGE, ErrorCodeEnum.STORAGE_ERROR);
+            throw sizeLimitExceeded();
         }
 
 
@@ -88,25 +97,30 @@ public class FileValidationService {
                     String.format("File extension '%s' is not allowed. Allowed extensions are: %s",
                             extension, String.join(", ", allowedExtensions)),ErrorAssetEnum.STORAGE, ErrorCodeEnum.STORAGE_ERROR);
         }
+    }
 
+    /**
+     * Detects the MIME type from the magic bytes at the start of the content (Tika only looks at a prefix)
+     * and returns it when it is allowed.
+     */
+    public String detectContentType(byte[] head, int length, String originalFilename) throws UnsupportedFileTypeException {
         // Validate MIME type using Apache Tika
-        String detectedMimeType;
-        try (InputStream inputStream = file.getInputStream()) {
-            detectedMimeType = tika.detect(inputStream);
-        } catch (IOException e) {
-            logger.error("Could not read file content to detect MIME type for file: {}", originalFilename, e);
-            throw new FileUploadException("Could not process file content.",ErrorAssetEnum.STORAGE, ErrorCodeEnum.STORAGE_ERROR);
-        }
+        String detectedMimeType = tika.detect(Arrays.copyOf(head, Math.min(length, CONTENT_SNIFF_BYTES)));
 
         if (detectedMimeType == null || !allowedMimeTypes.contains(detectedMimeType.toLowerCase())) {
-            logger.warn("File upload rejected. Invalid MIME type: '{}' for file '{}'. Client reported: '{}'. Allowed: {}",
-                    detectedMimeType, originalFilename, file.getContentType(), allowedMimeTypes);
+            logger.warn("File upload rejected. Invalid MIME type: '{}' for file '{}'. Allowed: {}",
+                    detectedMimeType, originalFilename, allowedMimeTypes);
             throw new UnsupportedFileTypeException(
                     String.format("File type '%s' is not allowed. Allowed types are: %s",
                             detectedMimeType, String.join(", ", allowedMimeTypes)),ErrorAssetEnum.STORAGE, ErrorCodeEnum.STORAGE_ERROR);
         }
 
-        logger.debug("File validation successful for: {}, Detected MIME type: {}, Size: {}",
-                originalFilename, detectedMimeType, file.getSize());
+        logger.debug("File type detected for: {}, Detected MIME type: {}", originalFilename, detectedMimeType);
+        return detectedMimeType;
+    }
+
+    public FileSizeLimitExceededException sizeLimitExceeded() {
+        return new FileSizeLimitExceededException(
+                String.format("File size exceeds the limit of %d MB.", maxFileSize / (1024 * 1024)),ErrorAssetEnum.STORAGE, ErrorCodeEnum.STORAGE_ERROR);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,328 @@
+package com.escritr.escritr.common.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.w3c.dom.Node;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Downscaled copies of uploaded images for the feed and for srcset: one per configured width narrower than
+ * the original, plus a tiny placeholder to show while they load. JPEG and PNG only, the JDK has no WebP
+ * encoder and resizing a GIF would drop its animation.
+ * The image is decoded once, on a small dedicated pool (never on a request thread), and the widths are produced
+ * from the largest down, each from the previous one. A JPEG's EXIF orientation is applied after decoding, browsers
+ * apply it to the original and the variants have to look the same. Once `threads` are busy and `queue-capacity` images are
+ * waiting, new images get no variants instead of piling up, the original is still stored.
+ */
+@Service
+public class ImageVariantService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageVariantService.class);
+
+    public static final String PLACEHOLDER = "placeholder";
+    private static final int PLACEHOLDER_WIDTH = 24;
+    private static final float JPEG_QUALITY = 0.8f;
+    // what the largest variant is scaled from at most, decoding big originals subsampled keeps the raster small
+    private static final int DECODE_OVERSAMPLING = 2;
+
+    private static final String JPEG_METADATA_FORMAT = "javax_imageio_jpeg_image_1.0";
+    private static final int APP1 = 0xE1;
+    private static final byte[] EXIF_HEADER = "Exif\0\0".getBytes(StandardCharsets.US_ASCII);
+    private static final int ORIENTATION_TAG = 0x0112;
+
+    public record ImageVariant(String name, int width, int height, String contentType, byte[] content) {
+    }
+
+    private final int[] widths;
+    private final long maxPixels;
+    private final ThreadPoolExecutor executor;
+    private final Timer latency;
+    private final Counter rejected;
+
+    public ImageVariantService(
+            @Value("${images.variants.widths:320,768,1280}") int[] widths,
+            @Value("${images.variants.max-pixels:40000000}") long maxPixels,
+            @Value("${images.variants.threads:0}") int threads,
+            @Value("${images.variants.queue-capacity:32}") int queueCapacity,
+            MeterRegistry meterRegistry
+    ) {
+        this.widths = Arrays.stream(widths).filter(width -> width > PLACEHOLDER_WIDTH).sorted().toArray();
+        this.maxPixels = maxPixels;
+
+        // by default half the cores, like password hashing: decoding a photo is seconds of CPU under load
+        int poolSize = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+                poolSize, poolSize,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "image-variants-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy()
+        );
+
+        ExecutorServiceMetrics.monitor(meterRegistry, executor, "images.variants");
+        this.latency = Timer.builder("images.variants.latency")
+                .description("Time from submitting an image to its variants, queueing included")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("images.variants.rejected")
+                .description("Images stored without variants because the pool and its queue were full")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public static boolean supports(String contentType) {
+        return "image/jpeg".equals(contentType) || "image/png".equals(contentType);
+    }
+
+    // the names generate can return, for callers that need the keys without the image (deleting them)
+    public List<String> variantNames() {
+        List<String> names = new ArrayList<>();
+        for (int width : widths) {
+            names.add(width + "w");
+        }
+        names.add(PLACEHOLDER);
+        return names;
+    }
+
+    /**
+     * Completes with the variants of the image the source opens, largest first, or with none when the type is not
+     * supported, the image can't be decoded or the pool is saturated. Never completes exceptionally.
+     */
+    public CompletableFuture<List<ImageVariant>> generate(Callable<InputStream> source, String contentType) {
+        if (!supports(contentType)) {
+            return CompletableFuture.completedFuture(List.of());
+        }
+        long start = System.nanoTime();
+        try {
+            return CompletableFuture.supplyAsync(() -> generateNow(source, contentType), executor)
+                    .whenComplete((variants, error) -> latency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS));
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            logger.warn("Image variant pool is saturated, storing the image without variants");
+            return CompletableFuture.completedFuture(List.of());
+        }
+    }
+
+    private List<ImageVariant> generateNow(Callable<InputStream> source, String contentType) {
+        try (InputStream in = source.call()) {
+            BufferedImage image = decode(in);
+            if (image == null) {
+                return List.of();
+            }
+            boolean png = "image/png".equals(contentType);
+            List<ImageVariant> variants = new ArrayList<>();
+            BufferedImage current = image;
+            for (int i = widths.length - 1; i >= 0; i--) {
+                if (widths[i] >= current.getWidth()) {
+                    continue;
+                }
+                current = scale(current, widths[i], png);
+                variants.add(encode(widths[i] + "w", current, png));
+            }
+            variants.add(encode(PLACEHOLDER, scale(current, Math.min(PLACEHOLDER_WIDTH, current.getWidth()), png), png));
+            return variants;
+        } catch (Exception e) {
+            // a corrupt file or an unusual encoding (CMYK JPEGs) is served as it was uploaded
+            logger.warn("Could not generate image variants: {}", e.getMessage());
+            return List.of();
+        }
+    }
+
+    // reads the dimensions from the header first, so an original much bigger than the largest variant is decoded subsampled
+    private BufferedImage decode(InputStream in) throws IOException {
+        try (ImageInputStream input = new MemoryCacheImageInputStream(in)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, false);
+                int orientation = orientation(reader.getImageMetadata(0));
+                // orientations 5 to 8 turn the image a quarter, what is shown as the width is stored as the height
+                boolean quarterTurn = orientation >= 5;
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                int shownWidth = quarterTurn ? height : width;
+                int largest = widths.length == 0 ? PLACEHOLDER_WIDTH : widths[widths.length - 1];
+                int subsampling = Math.max(1, shownWidth / (largest * DECODE_OVERSAMPLING));
+                if ((long) (width / subsampling) * (height / subsampling) > maxPixels) {
+                    logger.warn("Image of {}x{} is too large to generate variants", width, height);
+                    return null;
+                }
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return orient(reader.read(0, param), orientation);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    // the Orientation tag of IFD0 in the APP1 Exif segment, 1 (as stored) when there is none or it can't be read
+    static int orientation(IIOMetadata metadata) {
+        if (metadata == null || !JPEG_METADATA_FORMAT.equals(metadata.getNativeMetadataFormatName())) {
+            return 1;
+        }
+        Node root = metadata.getAsTree(JPEG_METADATA_FORMAT);
+        for (Node segment = root.getLastChild() == null ? null : root.getLastChild().getFirstChild();
+             segment != null; segment = segment.getNextSibling()) {
+            if (!"unknown".equals(segment.getNodeName())
+                    || !String.valueOf(APP1).equals(((IIOMetadataNode) segment).getAttribute("MarkerTag"))
+                    || !(((IIOMetadataNode) segment).getUserObject() instanceof byte[] data)) {
+                continue;
+            }
+            int orientation = exifOrientation(data);
+            if (orientation != 0) {
+                return orientation;
+            }
+        }
+        return 1;
+    }
+
+    // Exif\0\0, then a TIFF header (byte order, 42, offset of IFD0) and IFD0's 12-byte entries; 0 when not found
+    private static int exifOrientation(byte[] data) {
+        if (data.length < EXIF_HEADER.length + 8 || !Arrays.equals(data, 0, EXIF_HEADER.length, EXIF_HEADER, 0, EXIF_HEADER.length)) {
+            return 0;
+        }
+        ByteBuffer tiff = ByteBuffer.wrap(data, EXIF_HEADER.length, data.length - EXIF_HEADER.length).slice();
+        if (tiff.get(0) == 'I' && tiff.get(1) == 'I') {
+            tiff.order(ByteOrder.LITTLE_ENDIAN);
+        } else if (tiff.get(0) != 'M' || tiff.get(1) != 'M') {
+            return 0;
+        }
+        int ifd = tiff.getInt(4);
+        if (ifd < 8 || ifd + 2 > tiff.limit()) {
+            return 0;
+        }
+        int entries = Short.toUnsignedInt(tiff.getShort(ifd));
+        for (int i = 0; i < entries; i++) {
+            int entry = ifd + 2 + i * 12;
+            if (entry + 12 > tiff.limit()) {
+                return 0;
+            }
+            if (Short.toUnsignedInt(tiff.getShort(entry)) == ORIENTATION_TAG) {
+                int value = Short.toUnsignedInt(tiff.getShort(entry + 8));
+                return value >= 1 && value <= 8 ? value : 0;
+            }
+        }
+        return 0;
+    }
+
+    // turns and mirrors the decoded raster the way the EXIF orientation says the stored one is to be shown
+    static BufferedImage orient(BufferedImage image, int orientation) {
+        int w = image.getWidth();
+        int h = image.getHeight();
+        AffineTransform transform = switch (orientation) {
+            case 2 -> new AffineTransform(-1, 0, 0, 1, w, 0);
+            case 3 -> new AffineTransform(-1, 0, 0, -1, w, h);
+            case 4 -> new AffineTransform(1, 0, 0, -1, 0, h);
+            case 5 -> new AffineTransform(0, 1, 1, 0, 0, 0);
+            case 6 -> new AffineTransform(0, 1, -1, 0, h, 0);
+            case 7 -> new AffineTransform(0, -1, -1, 0, h, w);
+            case 8 -> new AffineTransform(0, -1, 1, 0, 0, w);
+            default -> null;
+        };
+        if (transform == null) {
+            return image;
+        }
+        boolean quarterTurn = orientation >= 5;
+        BufferedImage oriented = new BufferedImage(quarterTurn ? h : w, quarterTurn ? w : h,
+                image.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = oriented.createGraphics();
+        try {
+            graphics.drawImage(image, transform, null);
+        } finally {
+            graphics.dispose();
+        }
+        return oriented;
+    }
+
+    // halves with bilinear filtering until the next step is the last one, a single bilinear pass over a big ratio aliases
+    private static BufferedImage scale(BufferedImage source, int width, boolean alpha) {
+        BufferedImage current = source;
+        int currentWidth = source.getWidth();
+        int currentHeight = source.getHeight();
+        int height = Math.max(1, Math.round((float) source.getHeight() * width / source.getWidth()));
+        do {
+            currentWidth = currentWidth / 2 >= width ? currentWidth / 2 : width;
+            currentHeight = currentWidth == width ? height : Math.max(height, currentHeight / 2);
+            BufferedImage scaled = new BufferedImage(currentWidth, currentHeight, alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+            Graphics2D graphics = scaled.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                graphics.drawImage(current, 0, 0, currentWidth, currentHeight, null);
+            } finally {
+                graphics.dispose();
+            }
+            current = scaled;
+        } while (currentWidth > width);
+        return current;
+    }
+
+    // through a memory cache, ImageIO.write would spool to a temporary file
+    private static ImageVariant encode(String name, BufferedImage image, boolean png) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageWriter writer = ImageIO.getImageWritersByFormatName(png ? "png" : "jpeg").next();
+        try (MemoryCacheImageOutputStream output = new MemoryCacheImageOutputStream(out)) {
+            writer.setOutput(output);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if (!png) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(JPEG_QUALITY);
+            }
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return new ImageVariant(name, image.getWidth(), image.getHeight(), png ? "image/png" : "image/jpeg", out.toByteArray());
+    }
+}
@@ -4,36 +4,43 @@ import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Component;
-import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.services.s3.model.CreateBucketRequest;
 import software.amazon.awssdk.services.s3.model.HeadBucketRequest;
 import software.amazon.awssdk.services.s3.model.NoSuchBucketException;
 import software.amazon.awssdk.services.s3.model.S3Exception;
 
+import java.util.concurrent.CompletionException;
+
 @Component
 @Profile("dev")
 public class LocalStackBucketInitializer {
-    private final S3Client s3Client;
+    private final S3AsyncClient s3Client;
     private final String bucketName;
 
-    public LocalStackBucketInitializer(S3Client s3Client, @Value("${aws.s3.bucket-name}") String bucketName) {
+    public LocalStackBucketInitializer(S3AsyncClient s3Client, @Value("${aws.s3.bucket-name}") String bucketName) {
         this.s3Client = s3Client;
         this.bucketName = bucketName;
     }
 
     //creates the s3 bucket in localstack
-    //the S3Client object using localstack is constructed on aws/s3/S3Config
+    //the S3AsyncClient object using localstack is constructed on aws/s3/S3Config
+    //startup can wait for it, so the calls are joined
     @PostConstruct
     public void init() {
         try {
-            s3Client.headBucket(HeadBucketRequest.builder().bucket(bucketName).build());
+            s3Client.headBucket(HeadBucketRequest.builder().bucket(bucketName).build()).join();
             System.out.println("LocalStack S3 bucket '" + bucketName + "' already exists.");
-        } catch (NoSuchBucketException e) {
-            System.out.println("LocalStack S3 bucket '" + bucketName + "' does not exist. Creating...");
-            s3Client.createBucket(CreateBucketRequest.builder().bucket(bucketName).build());
-            System.out.println("LocalStack S3 bucket '" + bucketName + "' created.");
-        } catch (S3Exception e) {
-            System.err.println("Error checking/creating LocalStack S3 bucket: " + e.getMessage());
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof NoSuchBucketException) {
+                System.out.println("LocalStack S3 bucket '" + bucketName + "' does not exist. Creating...");
+                s3Client.createBucket(CreateBucketRequest.builder().bucket(bucketName).build()).join();
+                System.out.println("LocalStack S3 bucket '" + bucketName + "' created.");
+            } else if (e.getCause() instanceof S3Exception s3Exception) {
+                System.err.println("Error checking/creating LocalStack S3 bucket: " + s3Exception.getMessage());
+            } else {
+                throw e;
+            }
         }
     }
-}
\ No newline at end of file
+}
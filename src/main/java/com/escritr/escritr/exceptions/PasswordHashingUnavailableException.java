@@ -0,0 +1,15 @@
+package com.escritr.escritr.exceptions;
+
+import com.escritr.escritr.common.enums.ErrorAssetEnum;
+import com.escritr.escritr.common.enums.ErrorCodeEnum;
+
+public class PasswordHashingUnavailableException extends BaseException {
+
+    public PasswordHashingUnavailableException() {
+        super("Too many login attempts are being processed. Please try again in a moment.",
+                ErrorAssetEnum.AUTHENTICATION,
+                ErrorCodeEnum.SERVICE_UNAVAILABLE
+        );
+    }
+
+}
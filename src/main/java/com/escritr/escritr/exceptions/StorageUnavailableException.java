@@ -0,0 +1,15 @@
+package com.escritr.escritr.exceptions;
+
+import com.escritr.escritr.common.enums.ErrorAssetEnum;
+import com.escritr.escritr.common.enums.ErrorCodeEnum;
+
+public class StorageUnavailableException extends BaseException {
+
+    public StorageUnavailableException() {
+        super("Too many uploads are in progress. Please try again in a moment.",
+                ErrorAssetEnum.STORAGE,
+                ErrorCodeEnum.SERVICE_UNAVAILABLE
+        );
+    }
+
+}
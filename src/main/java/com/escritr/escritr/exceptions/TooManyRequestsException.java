@@ -0,0 +1,26 @@
+package com.escritr.escritr.exceptions;
+
+import com.escritr.escritr.common.enums.ErrorAssetEnum;
+import com.escritr.escritr.common.enums.ErrorCodeEnum;
+
+public class TooManyRequestsException extends BaseException {
+
+    private final long retryAfterSeconds;
+
+    public TooManyRequestsException(long retryAfterSeconds) {
+        super("Too many attempts. Please try again later.",
+                ErrorAssetEnum.AUTHENTICATION,
+                ErrorCodeEnum.TOO_MANY_REQUESTS
+        );
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    // whole seconds, rounded up, as the Retry-After header expects
+    public static long toRetryAfterSeconds(long waitNanos) {
+        return Math.max(1, (waitNanos + 999_999_999L) / 1_000_000_000L);
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -1,9 +1,11 @@
 package com.escritr.escritr.user.domain;
 
+import com.escritr.escritr.auth.service.UserCacheInvalidationListener;
 import jakarta.persistence.*;
 import lombok.*;
 
 import java.util.HashSet;
+import java.util.Objects;
 import java.util.Set;
 import java.util.UUID;
 
@@ -13,6 +15,7 @@ import java.util.UUID;
 @Setter
 @NoArgsConstructor
 @EqualsAndHashCode
+@EntityListeners(UserCacheInvalidationListener.class)
 public class User{
 
     @Id
@@ -24,6 +27,19 @@ public class User{
     private String name;
     private int tokenVersion = 0;
 
+    // username and name as last read from or written to the row, UserCacheInvalidationListener compares them
+    // on update: only a rename makes the articles embedding the author stale
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    private String storedUsername;
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    private String storedName;
+
     @OneToMany(mappedBy = "user", cascade = CascadeType.ALL, orphanRemoval = true, fetch = FetchType.LAZY)
     private Set<UserAccountLink> accountLinks = new HashSet<>();
 
@@ -47,6 +63,15 @@ public class User{
         this.tokenVersion++;
     }
 
+    public void markAuthorStored() {
+        this.storedUsername = username;
+        this.storedName = name;
+    }
+
+    public boolean authorChangedSinceStored() {
+        return !(Objects.equals(storedUsername, username) && Objects.equals(storedName, name));
+    }
+
 
     @Override
     public String toString(){
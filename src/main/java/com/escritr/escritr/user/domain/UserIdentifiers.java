@@ -0,0 +1,7 @@
+package com.escritr.escritr.user.domain;
+
+// what makes an account unique, read when (re)building TakenIdentifiers
+public interface UserIdentifiers {
+    String getUsername();
+    String getEmail();
+}
@@ -1,10 +1,20 @@
 package com.escritr.escritr.user.repository;
 
 import com.escritr.escritr.user.domain.User;
+import com.escritr.escritr.user.domain.UserIdentifiers;
+import jakarta.persistence.QueryHint;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
 
 public interface UserRepository extends JpaRepository<User, UUID> {
 
@@ -12,6 +22,16 @@ public interface UserRepository extends JpaRepository<User, UUID> {
     Optional<User> findByEmail(String email);
     Optional<User> findByUsername(String username);
 
+    boolean existsByEmail(String email);
+    boolean existsByUsername(String username);
 
-}
+    // which of the candidates are taken, one query for the whole batch
+    @Query("SELECT u.username FROM User u WHERE u.username IN :usernames")
+    List<String> findUsernamesIn(@Param("usernames") Collection<String> usernames);
 
+    // streamed in chunks of the fetch size, must be consumed inside a transaction
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT u.username AS username, u.email AS email FROM User u")
+    Stream<UserIdentifiers> streamIdentifiers();
+
+}
@@ -0,0 +1,4 @@
+-- keyset pagination: the feed is ordered by (created_at DESC, id DESC), both directions must match the index
+CREATE INDEX idx_articles_created_at_id ON escritr.articles (created_at DESC, id DESC);
+
+CREATE INDEX idx_articles_author_created_at_id ON escritr.articles (author_id, created_at DESC, id DESC);
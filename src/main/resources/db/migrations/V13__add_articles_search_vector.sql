@@ -0,0 +1,15 @@
+-- plain text of the sanitized content, written by the application (HtmlParser.extractPlainText) on every save.
+-- existing rows are backfilled by stripping the tags here, they get the exact text on their next update
+ALTER TABLE escritr.articles ADD COLUMN plain_text TEXT;
+
+UPDATE escritr.articles
+SET plain_text = btrim(regexp_replace(regexp_replace(content, '<[^>]*>', ' ', 'g'), '\s+', ' ', 'g'));
+
+-- 'simple' keeps every word as typed: articles are not all in the same language, so no stemming or stop words
+ALTER TABLE escritr.articles ADD COLUMN search_vector tsvector GENERATED ALWAYS AS (
+    setweight(to_tsvector('simple', coalesce(title, '')), 'A') ||
+    setweight(to_tsvector('simple', coalesce(subtitle, '')), 'B') ||
+    setweight(to_tsvector('simple', coalesce(plain_text, '')), 'C')
+) STORED;
+
+CREATE INDEX idx_articles_search_vector ON escritr.articles USING GIN (search_vector);
@@ -0,0 +1,3 @@
+-- uk_article_slug's index follows the database collation and can't serve LIKE 'prefix%',
+-- slug allocation looks up every "<base>-<n>" with a prefix match on this one
+CREATE INDEX idx_articles_slug_pattern ON escritr.articles (slug varchar_pattern_ops);
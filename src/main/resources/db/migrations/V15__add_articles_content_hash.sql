@@ -0,0 +1,5 @@
+-- sha-256 of the stored (sanitized) content. An update whose body hashes to it is the body the editor loaded,
+-- it is not sanitized again and the content column is not rewritten
+ALTER TABLE escritr.articles ADD COLUMN content_hash BYTEA;
+
+UPDATE escritr.articles SET content_hash = sha256(convert_to(content, 'UTF8'));
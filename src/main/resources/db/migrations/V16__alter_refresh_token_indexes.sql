@@ -0,0 +1,5 @@
+-- the reaper deletes by expiry_date in small batches, each batch must find its rows without scanning the table
+CREATE INDEX idx_refresh_token_expiry_date ON escritr.refresh_token (expiry_date);
+
+-- token is UNIQUE, the index backing that constraint already serves the lookups by token
+DROP INDEX IF EXISTS escritr.idx_refresh_token_token;
@@ -0,0 +1,15 @@
+-- refresh tokens are stored as the sha-256 of the cookie value: 32 bytes instead of a 36 char string,
+-- and a leaked table can't be replayed. Hashing the current values keeps the existing sessions valid.
+ALTER TABLE escritr.refresh_token ADD COLUMN token_hash BYTEA;
+
+UPDATE escritr.refresh_token SET token_hash = sha256(convert_to(token, 'UTF8'));
+
+ALTER TABLE escritr.refresh_token ALTER COLUMN token_hash SET NOT NULL;
+
+-- drops the unique constraint on token and its index with it
+ALTER TABLE escritr.refresh_token DROP COLUMN token;
+
+ALTER TABLE escritr.refresh_token ADD CONSTRAINT uk_refresh_token_token_hash UNIQUE (token_hash);
+
+-- logout from all devices and the per-user session cap both select a user's tokens by creation order
+CREATE INDEX idx_refresh_token_user_id_expiry_date ON escritr.refresh_token (user_id, expiry_date);
@@ -0,0 +1,7 @@
+-- the token version of the user when the refresh token was issued, compared with the user's current one
+-- on refresh so revoking sessions (incrementing users.token_version) also revokes their refresh tokens
+ALTER TABLE escritr.refresh_token ADD COLUMN token_version INTEGER;
+
+UPDATE escritr.refresh_token r SET token_version = u.token_version FROM escritr.users u WHERE u.id = r.user_id;
+
+ALTER TABLE escritr.refresh_token ALTER COLUMN token_version SET NOT NULL;
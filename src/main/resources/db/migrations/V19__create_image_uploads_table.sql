@@ -0,0 +1,12 @@
+-- who uploaded which stored image. Content-addressed keys are shared by every upload of the same bytes:
+-- deleting an image drops the caller's row, the object goes once no row is left for its key
+CREATE TABLE escritr.image_uploads (
+    id UUID PRIMARY KEY NOT NULL,
+    object_key VARCHAR(255) NOT NULL,
+    user_id UUID NOT NULL,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    CONSTRAINT fk_image_uploads_user FOREIGN KEY (user_id) REFERENCES escritr.users(id) ON DELETE CASCADE,
+    CONSTRAINT uq_image_uploads_key_user UNIQUE (object_key, user_id)
+);
+
+CREATE INDEX idx_image_uploads_user_id ON escritr.image_uploads(user_id);
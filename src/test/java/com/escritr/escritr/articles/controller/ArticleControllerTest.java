@@ -0,0 +1,114 @@
+package com.escritr.escritr.articles.controller;
+
+import com.escritr.escritr.articles.model.ArticleVersion;
+import com.escritr.escritr.articles.service.ArticleService;
+import com.escritr.escritr.articles.service.ArticleSnapshot;
+import com.escritr.escritr.articles.service.FeedSnapshot;
+import com.escritr.escritr.articles.service.ImageUploadService;
+import com.escritr.escritr.aws.s3.S3Service;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@ExtendWith(MockitoExtension.class)
+class ArticleControllerTest {
+
+    @Mock
+    private ArticleService articleService;
+    @Mock
+    private S3Service s3Service;
+    @Mock
+    private ImageUploadService imageUploadService;
+
+    private MockMvc mockMvc;
+    private ArticleVersion version;
+
+    @BeforeEach
+    void setUp() {
+        mockMvc = MockMvcBuilders.standaloneSetup(new ArticleController(articleService, s3Service, imageUploadService)).build();
+        version = new ArticleVersion(UUID.randomUUID(), LocalDateTime.of(2025, 5, 17, 10, 0, 0, 123456000),
+                UUID.randomUUID(), "testuser", "name");
+    }
+
+    @Test
+    @DisplayName("GET /slug/{slug} should answer 304 without loading the article when If-None-Match matches")
+    void findBySlug_NotModified() throws Exception {
+        when(articleService.findVersionBySlug("my-slug")).thenReturn(version);
+
+        mockMvc.perform(get("/api/articles/slug/my-slug").header("If-None-Match", version.eTag()))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        verify(articleService, never()).findBySlug(anyString());
+    }
+
+    @Test
+    @DisplayName("GET /slug/{slug} should return the article with ETag and Last-Modified when the validator is stale")
+    void findBySlug_Modified() throws Exception {
+        byte[] json = "{\"id\":\"%s\",\"slug\":\"my-slug\"}".formatted(version.id()).getBytes(StandardCharsets.UTF_8);
+        when(articleService.findVersionBySlug("my-slug")).thenReturn(version);
+        when(articleService.findBySlug("my-slug")).thenReturn(new ArticleSnapshot(version.id(), "my-slug", version, json));
+
+        mockMvc.perform(get("/api/articles/slug/my-slug").header("If-None-Match", "\"stale\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", version.eTag()))
+                .andExpect(header().exists("Last-Modified"))
+                .andExpect(content().contentType("application/json"))
+                .andExpect(content().bytes(json));
+    }
+
+    @Test
+    @DisplayName("GET /feed without a cursor should write the rendered first page and answer 304 on a matching ETag")
+    void feed_FirstPageSnapshot() throws Exception {
+        byte[] json = "{\"content\":[],\"nextCursor\":null,\"hasNext\":false}".getBytes(StandardCharsets.UTF_8);
+        FeedSnapshot page = new FeedSnapshot("\"abc\"", json);
+        when(articleService.firstFeedPage(10)).thenReturn(page);
+
+        mockMvc.perform(get("/api/articles/feed"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", page.eTag()))
+                .andExpect(content().bytes(json));
+
+        mockMvc.perform(get("/api/articles/feed").header("If-None-Match", page.eTag()))
+                .andExpect(status().isNotModified());
+
+        verify(articleService, never()).listFeed(any(), anyInt());
+    }
+
+    @Test
+    @DisplayName("DELETE /image should not report a deletion when the image is still held by other uploads")
+    void deleteImage_KeptWhileShared() throws Exception {
+        String url = "https://bucket.s3.amazonaws.com/abc.jpg";
+        when(s3Service.extractKeyFromUrl(url)).thenReturn("abc.jpg");
+        when(imageUploadService.delete(eq("abc.jpg"), any())).thenReturn(CompletableFuture.completedFuture(false));
+
+        MvcResult started = mockMvc.perform(delete("/api/articles/image").param("url", url)
+                        .principal(new TestingAuthenticationToken("testuser", null)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.deleted").value(false))
+                .andExpect(jsonPath("$.message").value("File is still used by other uploads, it was kept: " + url));
+    }
+}
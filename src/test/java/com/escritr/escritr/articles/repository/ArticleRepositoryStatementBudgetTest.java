@@ -0,0 +1,169 @@
+package com.escritr.escritr.articles.repository;
+
+import com.escritr.escritr.articles.controller.DTOs.ArticleSummaryDTO;
+import com.escritr.escritr.articles.model.Article;
+import com.escritr.escritr.articles.model.ArticleVersion;
+import com.escritr.escritr.support.SqlStatementCounter;
+import com.escritr.escritr.user.domain.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static com.escritr.escritr.support.SqlStatementCounter.assertStatementBudget;
+import static org.junit.jupiter.api.Assertions.*;
+
+// every endpoint backed by ArticleRepository has a fixed SQL budget, no matter how many authors are on the page
+@DataJpaTest(properties = {
+        "spring.flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.hbm2ddl.create_namespaces=true",
+        SqlStatementCounter.PROPERTY
+})
+class ArticleRepositoryStatementBudgetTest {
+
+    private static final int AUTHORS = 5;
+    private static final int ARTICLES_PER_AUTHOR = 4;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private ArticleRepository articleRepository;
+
+    private Article sampleArticle;
+
+    @BeforeEach
+    void setUp() {
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < AUTHORS; i++) {
+            User author = entityManager.persist(new User("author" + i, "author" + i + "@example.com", "password", "Author " + i));
+            for (int j = 0; j < ARTICLES_PER_AUTHOR; j++) {
+                Article article = new Article();
+                article.setAuthor(author);
+                article.setTitle("title " + i + "-" + j);
+                article.setContent("<p>content</p>");
+                article.setFirstParagraph("content");
+                article.setSlug("title-" + i + "-" + j);
+                sampleArticle = entityManager.persist(article);
+                // spread the rows in time, @PrePersist sets createdAt to now
+                article.setCreatedAt(now.minusMinutes(i * ARTICLES_PER_AUTHOR + j));
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    @DisplayName("GET /api/articles should run the page select and the count select only")
+    void list_Budget() {
+        Page<ArticleSummaryDTO> page = assertStatementBudget("GET /api/articles", 2,
+                () -> articleRepository.findSummaries(PageRequest.of(0, 10, Sort.by("createdAt").descending())));
+
+        assertEquals(10, page.getContent().size());
+        assertEquals(AUTHORS * ARTICLES_PER_AUTHOR, page.getTotalElements());
+        assertNotNull(page.getContent().get(0).author());
+    }
+
+    @Test
+    @DisplayName("GET /api/articles/feed should be a single select for pages spanning several authors")
+    void feed_Budget() {
+        List<ArticleSummaryDTO> firstPage = assertStatementBudget("GET /api/articles/feed", 1,
+                () -> articleRepository.findFeed(Limit.of(AUTHORS * ARTICLES_PER_AUTHOR)));
+
+        assertEquals(AUTHORS * ARTICLES_PER_AUTHOR, firstPage.size());
+        assertEquals(AUTHORS, firstPage.stream().map(a -> a.author().username()).distinct().count());
+
+        ArticleSummaryDTO last = firstPage.get(4);
+        List<ArticleSummaryDTO> nextPage = assertStatementBudget("GET /api/articles/feed?cursor", 1,
+                () -> articleRepository.findFeedAfter(LocalDateTime.parse(last.createdAt()), last.id(), Limit.of(5)));
+
+        assertEquals(firstPage.subList(5, 10), nextPage);
+    }
+
+    @Test
+    @DisplayName("GET /api/articles/user/{username}/feed should be a single select")
+    void authorFeed_Budget() {
+        List<ArticleSummaryDTO> page = assertStatementBudget("GET /api/articles/user/{username}/feed", 1,
+                () -> articleRepository.findFeedByAuthorUsername("author1", Limit.of(10)));
+
+        assertEquals(ARTICLES_PER_AUTHOR, page.size());
+        assertTrue(page.stream().allMatch(a -> a.author().username().equals("author1")));
+    }
+
+    @Test
+    @DisplayName("GET /api/articles/search should load the summaries of a page of hits in one select")
+    void searchSummaries_Budget() {
+        List<ArticleSummaryDTO> feed = articleRepository.findFeed(Limit.of(6));
+        List<UUID> ids = feed.stream().map(ArticleSummaryDTO::id).toList();
+
+        List<ArticleSummaryDTO> page = assertStatementBudget("GET /api/articles/search", 1,
+                () -> articleRepository.findSummariesByIdIn(ids));
+
+        assertEquals(6, page.size());
+        assertTrue(page.stream().allMatch(a -> a.author() != null));
+        assertFalse(SqlStatementCounter.statements().get(0).contains("plain_text"));
+    }
+
+    @Test
+    @DisplayName("GET /api/articles/slug/{slug} should load the article and its author in one select")
+    void findBySlug_Budget() {
+        Article article = assertStatementBudget("GET /api/articles/slug/{slug}", 1, () -> {
+            Article found = articleRepository.findBySlug(sampleArticle.getSlug()).orElseThrow();
+            found.getAuthor().getName();
+            return found;
+        });
+
+        assertEquals(sampleArticle.getId(), article.getId());
+    }
+
+    @Test
+    @DisplayName("GET /api/articles/{id} should load the article and its author in one select")
+    void findById_Budget() {
+        Article article = assertStatementBudget("GET /api/articles/{id}", 1, () -> {
+            Article found = articleRepository.findById(sampleArticle.getId()).orElseThrow();
+            found.getAuthor().getName();
+            return found;
+        });
+
+        assertEquals(sampleArticle.getSlug(), article.getSlug());
+    }
+
+    @Test
+    @DisplayName("a title-only update should not rewrite the content column")
+    void titleUpdate_SkipsContentColumn() {
+        Article article = articleRepository.findById(sampleArticle.getId()).orElseThrow();
+        article.setTitle("a new title");
+
+        assertStatementBudget("PUT /api/articles/{id} (title only)", 1, () -> {
+            entityManager.flush();
+            return null;
+        });
+
+        String update = SqlStatementCounter.statements().get(0).toLowerCase();
+        assertTrue(update.startsWith("update"));
+        assertTrue(update.contains("title"));
+        assertFalse(update.contains("content"), update);
+    }
+
+    @Test
+    @DisplayName("conditional GETs should validate with one select that doesn't read the content column")
+    void findVersion_Budget() {
+        ArticleVersion version = assertStatementBudget("If-None-Match /api/articles/slug/{slug}", 1,
+                () -> articleRepository.findVersionBySlug(sampleArticle.getSlug()).orElseThrow());
+
+        assertEquals(sampleArticle.getId(), version.id());
+        assertNotNull(version.authorUsername());
+        assertFalse(SqlStatementCounter.statements().get(0).contains("content"));
+    }
+}
@@ -0,0 +1,101 @@
+package com.escritr.escritr.articles.repository;
+
+import com.escritr.escritr.articles.model.Article;
+import com.escritr.escritr.articles.model.ArticleSearchHit;
+import com.escritr.escritr.common.helpers.HtmlParser;
+import com.escritr.escritr.user.domain.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// the search queries are native Postgres (tsvector, websearch_to_tsquery, the generated search_vector column),
+// H2 can't run them: these run against the database in TEST_POSTGRES_URL, migrated by Flyway, and are skipped without it
+@DataJpaTest(properties = {
+        "spring.flyway.enabled=true",
+        "spring.flyway.locations=classpath:db/migrations",
+        "spring.flyway.schemas=escritr",
+        "spring.jpa.hibernate.ddl-auto=none"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@EnabledIfEnvironmentVariable(named = "TEST_POSTGRES_URL", matches = ".+")
+class ArticleSearchRepositoryTest {
+
+    @DynamicPropertySource
+    static void postgres(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> System.getenv("TEST_POSTGRES_URL"));
+        registry.add("spring.datasource.username", () -> System.getenv("TEST_POSTGRES_USER"));
+        registry.add("spring.datasource.password", () -> System.getenv("TEST_POSTGRES_PASSWORD"));
+    }
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private ArticleRepository articleRepository;
+
+    private User author;
+
+    @BeforeEach
+    void setUp() {
+        String suffix = UUID.randomUUID().toString().substring(0, 8);
+        author = entityManager.persist(new User("search" + suffix, "search" + suffix + "@example.com", "password", "Search Author"));
+    }
+
+    @Test
+    @DisplayName("search should rank title matches above body matches and searchAfter should continue after the cursor")
+    void search_RankedKeyset() {
+        Article inTitle = persist("The lighthouse keeper", "<p>a story about the sea</p>");
+        Article inBody = persist("A walk on the coast", "<p>we passed an old lighthouse on the way</p>");
+        persist("Unrelated", "<p>nothing to see here</p>");
+        entityManager.flush();
+
+        List<ArticleSearchHit> hits = articleRepository.search("lighthouse", 10);
+
+        assertEquals(List.of(inTitle.getId(), inBody.getId()), hits.stream().map(ArticleSearchHit::getId).toList());
+        assertTrue(hits.get(0).getRank() > hits.get(1).getRank());
+
+        List<ArticleSearchHit> next = articleRepository.searchAfter("lighthouse", hits.get(0).getRank(), hits.get(0).getId(), 10);
+
+        assertEquals(List.of(inBody.getId()), next.stream().map(ArticleSearchHit::getId).toList());
+    }
+
+    @Test
+    @DisplayName("search should find an edited article by its new text only, the search vector follows plain_text")
+    void search_FollowsEdits() {
+        Article article = persist("Travel notes", "<p>an old harbour at dawn</p>");
+        entityManager.flush();
+        assertEquals(1, articleRepository.search("harbour", 10).size());
+
+        String edited = "<p>a <b>lighthouse</b> at dusk</p>";
+        article.setContent(HtmlParser.process(edited).sanitizedHtml());
+        article.setPlainText(HtmlParser.process(edited).plainText());
+        entityManager.flush();
+        entityManager.clear();
+
+        assertTrue(articleRepository.search("harbour", 10).isEmpty());
+        assertEquals(List.of(article.getId()), articleRepository.search("lighthouse", 10).stream().map(ArticleSearchHit::getId).toList());
+    }
+
+    private Article persist(String title, String content) {
+        Article article = new Article();
+        article.setAuthor(author);
+        article.setTitle(title);
+        article.setContent(HtmlParser.process(content).sanitizedHtml());
+        article.setPlainText(HtmlParser.process(content).plainText());
+        article.setFirstParagraph(HtmlParser.process(content).firstParagraph());
+        article.setSlug(title.toLowerCase().replace(' ', '-') + "-" + UUID.randomUUID());
+        return entityManager.persist(article);
+    }
+}
@@ -0,0 +1,129 @@
+package com.escritr.escritr.articles.revalidation;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RevalidationDispatcherTest {
+
+    @Mock
+    private RevalidationClient client;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private RevalidationDispatcher dispatcher(int maxPending, boolean batchEnabled) {
+        return new RevalidationDispatcher(client, meterRegistry, Duration.ofHours(1), maxPending, 2, batchEnabled, Duration.ofMillis(200));
+    }
+
+    @Test
+    @DisplayName("flush should coalesce repeated saves of a slug into one call with the latest username")
+    void flush_CoalescesSameSlug() {
+        RevalidationDispatcher dispatcher = dispatcher(100, false);
+        when(client.revalidate(any(PendingRevalidation.class))).thenReturn(true);
+
+        dispatcher.enqueue("my-slug", "old");
+        dispatcher.enqueue("my-slug", "testuser");
+        dispatcher.enqueue("my-slug", "testuser");
+        dispatcher.enqueue("other-slug", "testuser");
+
+        dispatcher.flush(false);
+        verifyNoInteractions(client);
+
+        dispatcher.flush(true);
+
+        ArgumentCaptor<PendingRevalidation> captor = ArgumentCaptor.forClass(PendingRevalidation.class);
+        verify(client, times(2)).revalidate(captor.capture());
+        assertTrue(captor.getAllValues().stream().anyMatch(r -> r.slug().equals("my-slug") && r.username().equals("testuser")));
+        assertEquals(0, dispatcher.pendingSize());
+        assertEquals(2, meterRegistry.get("articles.revalidation.latency").timer().count());
+    }
+
+    @Test
+    @DisplayName("flush should send batches of batch-size when batching is enabled")
+    void flush_Batches() {
+        RevalidationDispatcher dispatcher = dispatcher(100, true);
+        when(client.revalidate(anyList())).thenReturn(true);
+
+        dispatcher.enqueue("a", "testuser");
+        dispatcher.enqueue("b", "testuser");
+        dispatcher.enqueue("c", "testuser");
+        dispatcher.flush(true);
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<PendingRevalidation>> captor = ArgumentCaptor.forClass(List.class);
+        verify(client, times(2)).revalidate(captor.capture());
+        assertEquals(3, captor.getAllValues().stream().mapToInt(List::size).sum());
+        verify(client, never()).revalidate(any(PendingRevalidation.class));
+    }
+
+    @Test
+    @DisplayName("enqueue should drop new slugs once the queue is full but still coalesce queued ones")
+    void enqueue_BoundedQueue() {
+        RevalidationDispatcher dispatcher = dispatcher(2, false);
+
+        dispatcher.enqueue("a", "testuser");
+        dispatcher.enqueue("b", "testuser");
+        dispatcher.enqueue("c", "testuser");
+        dispatcher.enqueue("a", "testuser");
+
+        assertEquals(2, dispatcher.pendingSize());
+        assertEquals(1.0, meterRegistry.get("articles.revalidation.dropped").counter().count());
+        assertEquals(2.0, meterRegistry.get("articles.revalidation.queue.size").gauge().value());
+    }
+
+    @Test
+    @DisplayName("stop should send what is still queued")
+    void stop_FlushesQueue() {
+        RevalidationDispatcher dispatcher = dispatcher(100, false);
+        when(client.revalidate(any(PendingRevalidation.class))).thenReturn(true);
+        dispatcher.start();
+
+        dispatcher.enqueue("a", "testuser");
+        dispatcher.stop();
+
+        verify(client).revalidate(any(PendingRevalidation.class));
+        assertEquals(0, dispatcher.pendingSize());
+    }
+
+    @Test
+    @DisplayName("stop should give up on a frontend that doesn't answer after the shutdown timeout")
+    void stop_BoundedByTimeout() {
+        RevalidationDispatcher dispatcher = dispatcher(100, false);
+        when(client.revalidate(any(PendingRevalidation.class))).thenAnswer(invocation -> {
+            Thread.sleep(Duration.ofSeconds(30));
+            return true;
+        });
+        dispatcher.start();
+        dispatcher.enqueue("a", "testuser");
+
+        long start = System.nanoTime();
+        dispatcher.stop();
+
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).compareTo(Duration.ofSeconds(5)) < 0);
+    }
+
+    @Test
+    @DisplayName("flush should count failed calls")
+    void flush_CountsFailures() {
+        RevalidationDispatcher dispatcher = dispatcher(100, false);
+        when(client.revalidate(any(PendingRevalidation.class))).thenReturn(false);
+
+        dispatcher.enqueue("a", "testuser");
+        dispatcher.flush(true);
+
+        assertEquals(1.0, meterRegistry.get("articles.revalidation.failures").counter().count());
+    }
+}
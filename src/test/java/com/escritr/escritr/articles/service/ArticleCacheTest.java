@@ -0,0 +1,149 @@
+package com.escritr.escritr.articles.service;
+
+import com.escritr.escritr.articles.controller.DTOs.ArticleResponseDTO;
+import com.escritr.escritr.articles.controller.DTOs.AuthorResponseDTO;
+import com.escritr.escritr.articles.controller.DTOs.CursorPageDTO;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ArticleCacheTest {
+
+    private ArticleCache articleCache;
+    private ArticleSnapshotFactory snapshotFactory;
+
+    @BeforeEach
+    void setUp() {
+        articleCache = new ArticleCache(1024 * 1024, Duration.ofMinutes(5), 1000, Duration.ofMinutes(1), new SimpleMeterRegistry());
+        snapshotFactory = new ArticleSnapshotFactory(new ObjectMapper());
+    }
+
+    private static final UUID AUTHOR_ID = UUID.randomUUID();
+
+    private ArticleSnapshot article(UUID id, String slug, String content, String updatedAt) {
+        return snapshotFactory.create(new ArticleResponseDTO(id, "title", null, content, "first", null, slug,
+                "2025-05-17T10:00:00", updatedAt, new AuthorResponseDTO("testuser", "name")), AUTHOR_ID);
+    }
+
+    private FeedSnapshot feedPage() {
+        return snapshotFactory.create(new CursorPageDTO<>(List.of(), null, false));
+    }
+
+    @Test
+    @DisplayName("put should make the article available by id and by slug")
+    void put_ServesByIdAndSlug() {
+        ArticleSnapshot article = article(UUID.randomUUID(), "my-slug", "<p>content</p>", "2025-05-17T10:00:00");
+
+        articleCache.put(article);
+
+        assertSame(article, articleCache.getById(article.id()));
+        assertSame(article, articleCache.getBySlug("my-slug"));
+        assertEquals(2, articleCache.stats().hitCount());
+    }
+
+    @Test
+    @DisplayName("evict should remove the article for both keys")
+    void evict_RemovesBothKeys() {
+        ArticleSnapshot article = article(UUID.randomUUID(), "my-slug", "<p>content</p>", "2025-05-17T10:00:00");
+        articleCache.put(article);
+
+        articleCache.evict(article.id(), article.slug());
+
+        assertNull(articleCache.getById(article.id()));
+        assertNull(articleCache.getBySlug("my-slug"));
+    }
+
+    @Test
+    @DisplayName("put should not replace a newer cached version with an older one")
+    void put_KeepsNewerVersion() {
+        UUID id = UUID.randomUUID();
+        ArticleSnapshot updated = article(id, "my-slug", "<p>new</p>", "2025-05-17T10:05:00.5");
+        ArticleSnapshot stale = article(id, "my-slug", "<p>old</p>", "2025-05-17T10:05:00");
+
+        articleCache.put(updated);
+        articleCache.put(stale);
+
+        assertSame(updated, articleCache.getById(id));
+    }
+
+    @Test
+    @DisplayName("put should not bring back an article a reader loaded before it was deleted")
+    void put_IgnoresDeletedArticle() {
+        ArticleSnapshot article = article(UUID.randomUUID(), "my-slug", "<p>content</p>", "2025-05-17T10:00:00");
+        articleCache.put(article);
+
+        articleCache.evictDeleted(article.id(), article.slug());
+        articleCache.put(article);
+
+        assertNull(articleCache.getById(article.id()));
+        assertNull(articleCache.getBySlug("my-slug"));
+    }
+
+    @Test
+    @DisplayName("weigh should grow with the size of the rendered JSON")
+    void weigh_GrowsWithContent() {
+        ArticleSnapshot small = article(UUID.randomUUID(), "a", "x", null);
+        ArticleSnapshot large = article(UUID.randomUUID(), "b", "x".repeat(100_000), null);
+
+        assertTrue(ArticleCache.weigh(large) - ArticleCache.weigh(small) >= 99_999);
+    }
+
+    @Test
+    @DisplayName("create should render the same JSON Jackson writes for the DTO")
+    void snapshot_RendersDtoJson() {
+        ArticleSnapshot article = article(UUID.randomUUID(), "my-slug", "<p>content</p>", "2025-05-17T10:00:00");
+
+        String json = new String(article.json(), StandardCharsets.UTF_8);
+
+        assertTrue(json.contains("\"slug\":\"my-slug\""));
+        assertTrue(json.contains("\"content\":\"<p>content</p>\""));
+        assertEquals("2025-05-17T10:00", article.version().updatedAt().toString());
+    }
+
+    @Test
+    @DisplayName("evictAuthor should drop the snapshots embedding the author's old name, with a different ETag once reloaded")
+    void evictAuthor_DropsRenamedAuthor() {
+        ArticleSnapshot article = article(UUID.randomUUID(), "my-slug", "<p>content</p>", "2025-05-17T10:00:00");
+        articleCache.put(article);
+        articleCache.putFeedFirstPage(10, articleCache.feedGeneration(), feedPage());
+
+        // unrelated updates (a token version bump) keep the snapshot
+        articleCache.evictAuthor(AUTHOR_ID, "testuser", "name");
+        assertSame(article, articleCache.getBySlug("my-slug"));
+
+        articleCache.evictAuthor(AUTHOR_ID, "testuser", "New Name");
+
+        assertNull(articleCache.getById(article.id()));
+        assertNull(articleCache.getBySlug("my-slug"));
+        assertNull(articleCache.getFeedFirstPage(10));
+        ArticleSnapshot reloaded = snapshotFactory.create(new ArticleResponseDTO(article.id(), "title", null, "<p>content</p>",
+                "first", null, "my-slug", "2025-05-17T10:00:00", "2025-05-17T10:00:00", new AuthorResponseDTO("testuser", "New Name")), AUTHOR_ID);
+        assertNotEquals(article.version().eTag(), reloaded.version().eTag());
+    }
+
+    @Test
+    @DisplayName("putFeedFirstPage should drop a page rendered before the feeds were evicted")
+    void putFeedFirstPage_IgnoresStaleGeneration() {
+        long generation = articleCache.feedGeneration();
+        articleCache.evictFeeds();
+
+        articleCache.putFeedFirstPage(10, generation, feedPage());
+        assertNull(articleCache.getFeedFirstPage(10));
+
+        FeedSnapshot page = feedPage();
+        articleCache.putFeedFirstPage(10, articleCache.feedGeneration(), page);
+        assertSame(page, articleCache.getFeedFirstPage(10));
+
+        articleCache.evictFeeds();
+        assertNull(articleCache.getFeedFirstPage(10));
+    }
+}
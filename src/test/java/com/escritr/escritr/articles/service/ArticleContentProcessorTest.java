@@ -0,0 +1,51 @@
+package com.escritr.escritr.articles.service;
+
+import com.escritr.escritr.common.helpers.ParsedContent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ArticleContentProcessorTest {
+
+    private ArticleContentProcessor contentProcessor;
+
+    @BeforeEach
+    void setUp() {
+        contentProcessor = new ArticleContentProcessor(1024 * 1024, Duration.ofMinutes(5), new SimpleMeterRegistry());
+    }
+
+    @Test
+    @DisplayName("process should parse a body once and serve the same input from the cache")
+    void process_CachesByInputHash() {
+        String body = "<p onclick=\"x()\">Hello <b>world</b></p>";
+
+        ParsedContent first = contentProcessor.process(body);
+        ParsedContent second = contentProcessor.process(new String(body));
+
+        assertSame(first, second);
+        assertEquals("Hello world", first.firstParagraph());
+    }
+
+    @Test
+    @DisplayName("the sanitized body should hash to the stored hash when the editor sends it back")
+    void hash_SanitizedBodyRoundTrip() throws Exception {
+        String raw = "<h2>Title</h2><p>text <script>x</script><a href=\"https://a.b\">link</a></p>";
+        ParsedContent parsed = contentProcessor.process(raw);
+        // what V15 stores in content_hash: the sha-256 of the UTF-8 sanitized body
+        byte[] stored = MessageDigest.getInstance("SHA-256").digest(parsed.sanitizedHtml().getBytes(StandardCharsets.UTF_8));
+
+        assertArrayEquals(stored, ArticleContentProcessor.hash(contentProcessor.process(parsed.sanitizedHtml()).sanitizedHtml()));
+        assertArrayEquals(stored, ArticleContentProcessor.hash(
+                contentProcessor.process("<h2>Title</h2><p>text <a href=\"https://a.b\" onclick=\"x()\">link</a></p>").sanitizedHtml()),
+                "a body differing only in markup the sanitizer strips is stored with the same hash");
+        assertEquals(parsed.sanitizedHtml(), contentProcessor.process(parsed.sanitizedHtml()).sanitizedHtml(),
+                "sanitizing is idempotent, skipping an unchanged body can't keep anything the sanitizer would remove");
+    }
+}
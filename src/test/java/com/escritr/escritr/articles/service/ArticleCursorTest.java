@@ -0,0 +1,31 @@
+package com.escritr.escritr.articles.service;
+
+import com.escritr.escritr.exceptions.WrongParameterException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ArticleCursorTest {
+
+    @Test
+    @DisplayName("encode and decode should round trip createdAt and id")
+    void encodeDecode_RoundTrip() {
+        ArticleCursor cursor = new ArticleCursor(LocalDateTime.of(2025, 5, 17, 10, 30, 15, 123456000), UUID.randomUUID());
+
+        String encoded = cursor.encode();
+
+        assertFalse(encoded.contains("="), "Encoded cursor should not be padded");
+        assertEquals(cursor, ArticleCursor.decode(encoded));
+    }
+
+    @Test
+    @DisplayName("decode should throw WrongParameterException for a tampered cursor")
+    void decode_InvalidCursor() {
+        assertThrows(WrongParameterException.class, () -> ArticleCursor.decode("not-a-cursor"));
+        assertThrows(WrongParameterException.class, () -> ArticleCursor.decode("%%%"));
+    }
+}
@@ -0,0 +1,163 @@
+package com.escritr.escritr.articles.service;
+
+import com.escritr.escritr.articles.controller.DTOs.ArticlePostDTO;
+import com.escritr.escritr.articles.controller.DTOs.ArticleResponseDTO;
+import com.escritr.escritr.articles.controller.DTOs.ArticleSummaryDTO;
+import com.escritr.escritr.articles.controller.DTOs.AuthorResponseDTO;
+import com.escritr.escritr.articles.controller.DTOs.CursorPageDTO;
+import com.escritr.escritr.articles.controller.mappers.ArticleMapper;
+import com.escritr.escritr.articles.model.Article;
+import com.escritr.escritr.articles.model.ArticleSearchHit;
+import com.escritr.escritr.articles.repository.ArticleRepository;
+import com.escritr.escritr.articles.revalidation.RevalidationDispatcher;
+import com.escritr.escritr.user.domain.User;
+import com.escritr.escritr.user.repository.UserRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ArticleServiceTest {
+
+    @Mock
+    private ArticleRepository articleRepository;
+    @Mock
+    private ArticleMapper articleMapper;
+    @Mock
+    private UserRepository userRepository;
+    @Mock
+    private RevalidationDispatcher revalidationDispatcher;
+    @Mock
+    private SlugAllocator slugAllocator;
+
+    private ArticleService articleService;
+    private ArticleContentProcessor contentProcessor;
+    private User author;
+    private Authentication authentication;
+
+    @BeforeEach
+    void setUp() {
+        contentProcessor = new ArticleContentProcessor(1024 * 1024, Duration.ofMinutes(5), new SimpleMeterRegistry());
+        articleService = new ArticleService(articleRepository, articleMapper, userRepository,
+                new ArticleCache(1024 * 1024, Duration.ofMinutes(5), 1000, Duration.ofMinutes(1), new SimpleMeterRegistry()),
+                new ArticleSnapshotFactory(new ObjectMapper()), revalidationDispatcher, slugAllocator, contentProcessor);
+
+        author = new User("testuser", "test@example.com", "password", "name");
+        author.setId(UUID.randomUUID());
+        authentication = new UsernamePasswordAuthenticationToken("testuser", null, List.of());
+    }
+
+    @Test
+    @DisplayName("update should rewrite the plain text the search vector is generated from when the body changed")
+    void update_RewritesPlainText() {
+        Article article = storedArticle("<p>old words</p>");
+        when(userRepository.findByEmailOrUsername("testuser", "testuser")).thenReturn(Optional.of(author));
+        when(articleRepository.findById(article.getId())).thenReturn(Optional.of(article));
+        when(articleRepository.save(any(Article.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(articleMapper.articleToResponseDTO(any(Article.class))).thenAnswer(invocation -> response(invocation.getArgument(0)));
+
+        articleService.update(article.getId(),
+                new ArticlePostDTO("title", null, "<p>new <b>words</b></p>", null, "testuser"), authentication);
+
+        ArgumentCaptor<Article> saved = ArgumentCaptor.forClass(Article.class);
+        verify(articleRepository).save(saved.capture());
+        assertEquals("new words", saved.getValue().getPlainText());
+        assertEquals("new words", saved.getValue().getFirstParagraph());
+        assertArrayEquals(ArticleContentProcessor.hash(saved.getValue().getContent()), saved.getValue().getContentHash());
+    }
+
+    @Test
+    @DisplayName("search should return the summaries in rank order with a cursor on the last hit")
+    void search_RankOrderAndCursor() {
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        when(articleRepository.search("words", 2)).thenReturn(List.of(hit(first, 0.9f), hit(second, 0.5f)));
+        // the IN query returns the rows in any order
+        when(articleRepository.findSummariesByIdIn(List.of(first))).thenReturn(List.of(summary(first)));
+
+        CursorPageDTO<ArticleSummaryDTO> page = articleService.search("words", null, 1);
+
+        assertEquals(List.of(first), page.content().stream().map(ArticleSummaryDTO::id).toList());
+        assertTrue(page.hasNext());
+        SearchCursor cursor = SearchCursor.decode(page.nextCursor());
+        assertEquals(0.9f, cursor.rank());
+        assertEquals(first, cursor.id());
+    }
+
+    @Test
+    @DisplayName("search with a cursor should continue after its rank and id, keeping the rank order of the hits")
+    void search_AfterCursor() {
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        UUID after = UUID.randomUUID();
+        when(articleRepository.searchAfter("words", 0.9f, after, 11)).thenReturn(List.of(hit(first, 0.7f), hit(second, 0.5f)));
+        when(articleRepository.findSummariesByIdIn(anyList())).thenReturn(List.of(summary(second), summary(first)));
+
+        CursorPageDTO<ArticleSummaryDTO> page = articleService.search("words", new SearchCursor(0.9f, after).encode(), 10);
+
+        assertEquals(List.of(first, second), page.content().stream().map(ArticleSummaryDTO::id).toList());
+        assertFalse(page.hasNext());
+        assertNull(page.nextCursor());
+        verify(articleRepository, never()).search(anyString(), anyInt());
+    }
+
+    private Article storedArticle(String content) {
+        Article article = new Article();
+        article.setId(UUID.randomUUID());
+        article.setAuthor(author);
+        article.setTitle("title");
+        article.setSlug("title");
+        article.setContent(content);
+        article.setPlainText("old words");
+        article.setFirstParagraph("old words");
+        article.setContentHash(ArticleContentProcessor.hash(content));
+        article.setCreatedAt(LocalDateTime.of(2025, 5, 17, 10, 0));
+        article.setUpdatedAt(LocalDateTime.of(2025, 5, 17, 10, 0));
+        return article;
+    }
+
+    private static ArticleResponseDTO response(Article article) {
+        return new ArticleResponseDTO(article.getId(), article.getTitle(), article.getSubtitle(), article.getContent(),
+                article.getFirstParagraph(), article.getThumbnailUrl(), article.getSlug(),
+                article.getCreatedAt().toString(), article.getUpdatedAt().toString(),
+                new AuthorResponseDTO(article.getAuthor().getUsername(), article.getAuthor().getName()));
+    }
+
+    private static ArticleSummaryDTO summary(UUID id) {
+        return new ArticleSummaryDTO(id, "title", null, "first", null, "slug-" + id,
+                "2025-05-17T10:00:00", "2025-05-17T10:00:00", new AuthorResponseDTO("testuser", "name"));
+    }
+
+    private static ArticleSearchHit hit(UUID id, float rank) {
+        return new ArticleSearchHit() {
+            @Override
+            public UUID getId() {
+                return id;
+            }
+
+            @Override
+            public Float getRank() {
+                return rank;
+            }
+        };
+    }
+}
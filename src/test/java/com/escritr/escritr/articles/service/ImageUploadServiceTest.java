@@ -0,0 +1,147 @@
+package com.escritr.escritr.articles.service;
+
+import com.escritr.escritr.articles.repository.ImageUploadRepository;
+import com.escritr.escritr.auth.model.UserDetailsImpl;
+import com.escritr.escritr.aws.s3.S3Service;
+import com.escritr.escritr.aws.s3.UploadedFile;
+import com.escritr.escritr.common.services.FileValidationService;
+import com.escritr.escritr.common.services.ImageVariantService;
+import com.escritr.escritr.exceptions.ResourceNotFoundException;
+import com.escritr.escritr.support.InMemoryS3AsyncClient;
+import com.escritr.escritr.user.domain.User;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ImageUploadServiceTest {
+
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n', 0, 0, 0, 13, 'I', 'H', 'D', 'R'};
+
+    @Mock
+    private ImageUploadRepository imageUploadRepository;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private InMemoryS3AsyncClient bucket;
+    private ImageVariantService imageVariantService;
+    private S3Service s3Service;
+    private ImageUploadService imageUploadService;
+    private UUID userId;
+    private Authentication authentication;
+
+    @BeforeEach
+    void setUp() {
+        bucket = new InMemoryS3AsyncClient();
+        imageVariantService = new ImageVariantService(new int[]{320, 768, 1280}, 40_000_000, 1, 8, new SimpleMeterRegistry());
+        s3Service = new S3Service(bucket, new FileValidationService("image/png,image/jpeg", "png,jpg,jpeg", "8MB"),
+                imageVariantService, "bucket", DataSize.ofMegabytes(5), 2, 1000, Duration.ofHours(1), new SimpleMeterRegistry());
+        imageUploadService = new ImageUploadService(s3Service, imageUploadRepository, new TransactionTemplate(transactionManager));
+
+        User user = new User("testuser", "test@example.com", "name");
+        userId = UUID.randomUUID();
+        user.setId(userId);
+        UserDetailsImpl principal = new UserDetailsImpl(user);
+        authentication = new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities());
+    }
+
+    @AfterEach
+    void tearDown() {
+        imageVariantService.shutdown();
+    }
+
+    @Test
+    @DisplayName("upload should record the uploader under the key's lock, in one transaction")
+    void upload_RecordsUploader() {
+        UploadedFile uploaded = imageUploadService.upload(png(), authentication).join();
+
+        InOrder order = inOrder(transactionManager, imageUploadRepository);
+        order.verify(transactionManager).getTransaction(any());
+        order.verify(imageUploadRepository).lockObjectKey(uploaded.key());
+        order.verify(imageUploadRepository).insertIfAbsent(any(UUID.class), eq(uploaded.key()), eq(userId));
+        order.verify(imageUploadRepository).countByObjectKey(uploaded.key());
+        order.verify(transactionManager).commit(any());
+    }
+
+    @Test
+    @DisplayName("upload should check the bucket instead of this node's memory when no one else holds the key")
+    void upload_LoneHolderChecksBucket() {
+        when(imageUploadRepository.countByObjectKey(anyString())).thenReturn(1L);
+        UploadedFile first = imageUploadService.upload(png(), authentication).join();
+        // the last other holder released it through another node, which deleted the object
+        bucket.clear();
+
+        UploadedFile second = imageUploadService.upload(png(), authentication).join();
+
+        assertEquals(first.key(), second.key());
+        assertNotNull(bucket.object(second.key()));
+        assertEquals(2, bucket.calls("HeadObject"));
+    }
+
+    @Test
+    @DisplayName("delete should drop the caller's hold and keep an image other uploads still hold")
+    void delete_KeptWhileHeldByOthers() {
+        UploadedFile uploaded = imageUploadService.upload(png(), authentication).join();
+        when(imageUploadRepository.existsByObjectKey(uploaded.key())).thenReturn(true);
+
+        assertFalse(imageUploadService.delete(uploaded.key(), authentication).join());
+
+        InOrder order = inOrder(imageUploadRepository);
+        order.verify(imageUploadRepository).lockObjectKey(uploaded.key());
+        order.verify(imageUploadRepository).deleteByObjectKeyAndUserId(uploaded.key(), userId);
+        assertNotNull(bucket.object(uploaded.key()));
+        assertEquals(0, bucket.calls("DeleteObjects"));
+    }
+
+    @Test
+    @DisplayName("delete should remove the image from the bucket once the last hold was dropped")
+    void delete_LastHolder() {
+        UploadedFile uploaded = imageUploadService.upload(png(), authentication).join();
+        when(imageUploadRepository.existsByObjectKey(uploaded.key())).thenReturn(false);
+
+        assertTrue(imageUploadService.delete(uploaded.key(), authentication).join());
+
+        // the object was gone before the transaction holding the key's lock committed
+        assertEquals(0, bucket.objectCount());
+        verify(transactionManager, times(2)).commit(any());
+    }
+
+    @Test
+    @DisplayName("delete should fail with not found instead of reporting a deletion when nothing was stored under the key")
+    void delete_Missing() {
+        CompletionException error = assertThrows(CompletionException.class,
+                () -> imageUploadService.delete("3f1c2b7e-1d2a-4c55-9a0e-6d8f7b1e2c3d.jpg", authentication).join());
+
+        assertInstanceOf(ResourceNotFoundException.class, error.getCause());
+    }
+
+    private static MockMultipartFile png() {
+        byte[] content = new byte[1000];
+        for (int i = PNG_SIGNATURE.length; i < content.length; i++) {
+            content[i] = (byte) (i * 31);
+        }
+        System.arraycopy(PNG_SIGNATURE, 0, content, 0, PNG_SIGNATURE.length);
+        return new MockMultipartFile("file", "photo.png", "image/png", content);
+    }
+}
@@ -0,0 +1,32 @@
+package com.escritr.escritr.articles.service;
+
+import com.escritr.escritr.exceptions.WrongParameterException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SearchCursorTest {
+
+    @Test
+    @DisplayName("encode and decode should round trip the exact float rank")
+    void encodeDecode_RoundTrip() {
+        SearchCursor cursor = new SearchCursor(0.0607927f, UUID.randomUUID());
+
+        SearchCursor decoded = SearchCursor.decode(cursor.encode());
+
+        assertEquals(Float.floatToIntBits(cursor.rank()), Float.floatToIntBits(decoded.rank()));
+        assertEquals(cursor.id(), decoded.id());
+    }
+
+    @Test
+    @DisplayName("decode should throw WrongParameterException for a tampered cursor")
+    void decode_InvalidCursor() {
+        String nan = java.util.Base64.getUrlEncoder().encodeToString(("NaN|" + UUID.randomUUID()).getBytes());
+
+        assertThrows(WrongParameterException.class, () -> SearchCursor.decode("not-a-cursor"));
+        assertThrows(WrongParameterException.class, () -> SearchCursor.decode(nan));
+    }
+}
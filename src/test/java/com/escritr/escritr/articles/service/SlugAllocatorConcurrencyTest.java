@@ -0,0 +1,89 @@
+package com.escritr.escritr.articles.service;
+
+import com.escritr.escritr.articles.model.Article;
+import com.escritr.escritr.articles.repository.ArticleRepository;
+import com.escritr.escritr.user.domain.User;
+import com.escritr.escritr.user.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// concurrent creates with the same title, each insert commits on its own so they really race on uk_article_slug
+@DataJpaTest(properties = {
+        "spring.flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.hbm2ddl.create_namespaces=true",
+        "spring.datasource.hikari.maximum-pool-size=16"
+})
+@Import(SlugAllocator.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class SlugAllocatorConcurrencyTest {
+
+    private static final int ARTICLES = 300;
+    private static final int THREADS = 16;
+
+    @Autowired
+    private SlugAllocator slugAllocator;
+
+    @Autowired
+    private ArticleRepository articleRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @AfterEach
+    void tearDown() {
+        articleRepository.deleteAllInBatch();
+        userRepository.deleteAllInBatch();
+    }
+
+    @Test
+    @DisplayName("saveWithUniqueSlug should give every concurrent same-titled article its own slug")
+    void saveWithUniqueSlug_ConcurrentSameTitle() throws Exception {
+        User author = userRepository.save(new User("author", "author@example.com", "password", "Author"));
+
+        List<Callable<String>> creates = new ArrayList<>();
+        for (int i = 0; i < ARTICLES; i++) {
+            creates.add(() -> {
+                Article article = new Article();
+                article.setAuthor(author);
+                article.setTitle("Same title");
+                article.setContent("<p>content</p>");
+                article.setFirstParagraph("content");
+                return slugAllocator.saveWithUniqueSlug(article, "same-title").getSlug();
+            });
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<String> slugs = new ArrayList<>();
+        try {
+            for (Future<String> slug : executor.invokeAll(creates)) {
+                slugs.add(slug.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Set<String> distinct = new HashSet<>(slugs);
+        assertEquals(ARTICLES, distinct.size());
+        assertEquals(ARTICLES, articleRepository.count());
+        assertTrue(distinct.contains("same-title"));
+        assertTrue(distinct.contains("same-title-1"));
+    }
+}
@@ -0,0 +1,31 @@
+package com.escritr.escritr.articles.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SlugAllocatorTest {
+
+    @Test
+    @DisplayName("nextFree should return the base slug when it is not taken")
+    void nextFree_BaseFree() {
+        assertEquals("my-title", SlugAllocator.nextFree("my-title", List.of("my-title-1", "my-title-part")));
+    }
+
+    @Test
+    @DisplayName("nextFree should return the first free numeric suffix and ignore other titles sharing the prefix")
+    void nextFree_FirstGap() {
+        List<String> taken = List.of("my-title", "my-title-1", "my-title-3", "my-title-part-2", "my-title-02", "my-title-2x");
+
+        assertEquals("my-title-2", SlugAllocator.nextFree("my-title", taken));
+    }
+
+    @Test
+    @DisplayName("escapeLike should escape the LIKE wildcards a slug can contain")
+    void escapeLike_Wildcards() {
+        assertEquals("snake\\_case\\%\\\\", SlugAllocator.escapeLike("snake_case%\\"));
+    }
+}
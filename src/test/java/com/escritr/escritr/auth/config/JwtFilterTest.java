@@ -2,10 +2,12 @@ package com.escritr.escritr.auth.config;
 
 import com.escritr.escritr.auth.controller.DTOs.DecodedToken;
 import com.escritr.escritr.auth.service.TokenService;
+import com.escritr.escritr.auth.service.UserSessionCache;
 import com.escritr.escritr.auth.model.UserDetailsImpl;
 import com.escritr.escritr.exceptions.AuthenticationTokenException;
 import com.escritr.escritr.user.domain.User;
 import com.escritr.escritr.user.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -15,13 +17,13 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 
 import java.io.IOException;
+import java.time.Duration;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -43,7 +45,6 @@ class JwtFilterTest {
     @Mock
     private FilterChain filterChain;
 
-    @InjectMocks
     private JwtFilter jwtFilter;
 
     private User sampleUser;
@@ -53,6 +54,8 @@ class JwtFilterTest {
 
     @BeforeEach
     void setUp() {
+        jwtFilter = new JwtFilter(tokenService, new UserSessionCache(userRepository, 100, Duration.ofMinutes(1), new SimpleMeterRegistry()));
+
         userId = UUID.randomUUID();
         sampleUser = new User("testuser", "test@example.com", "password","name");
         sampleUser.setId(userId);
@@ -92,6 +95,41 @@ class JwtFilterTest {
         verify(filterChain, times(1)).doFilter(request, response);
     }
 
+    @Test
+    @DisplayName("doFilterInternal should not decode the token until the authentication is read")
+    void doFilterInternal_DeferredAuthentication() throws ServletException, IOException {
+        when(request.getHeader("Authorization")).thenReturn("Bearer " + validToken);
+
+        jwtFilter.doFilterInternal(request, response, filterChain);
+
+        verify(filterChain, times(1)).doFilter(request, response);
+        verifyNoInteractions(tokenService);
+        verifyNoInteractions(userRepository);
+
+        when(tokenService.decodeToken(validToken)).thenReturn(validDecodedToken);
+        when(userRepository.findById(userId)).thenReturn(Optional.of(sampleUser));
+
+        assertNotNull(SecurityContextHolder.getContext().getAuthentication());
+        assertNotNull(SecurityContextHolder.getContext().getAuthentication());
+        verify(tokenService, times(1)).decodeToken(validToken);
+    }
+
+    @Test
+    @DisplayName("doFilterInternal should not query the users table again for a user it already validated")
+    void doFilterInternal_CachedUser() throws ServletException, IOException {
+        when(request.getHeader("Authorization")).thenReturn("Bearer " + validToken);
+        when(tokenService.decodeToken(validToken)).thenReturn(validDecodedToken);
+        when(userRepository.findById(userId)).thenReturn(Optional.of(sampleUser));
+
+        jwtFilter.doFilterInternal(request, response, filterChain);
+        SecurityContextHolder.clearContext();
+        jwtFilter.doFilterInternal(request, response, filterChain);
+
+        assertNotNull(SecurityContextHolder.getContext().getAuthentication());
+        assertEquals("name", ((UserDetailsImpl) SecurityContextHolder.getContext().getAuthentication().getPrincipal()).getUser().getName());
+        verify(userRepository, times(1)).findById(userId);
+    }
+
     @Test
     @DisplayName("doFilterInternal should clear context and proceed if Authorization header is missing")
     void doFilterInternal_NoAuthHeader() throws ServletException, IOException {
@@ -0,0 +1,116 @@
+package com.escritr.escritr.auth.config;
+
+import com.escritr.escritr.auth.controller.DTOs.AuthenticationResult;
+import com.escritr.escritr.auth.model.RefreshToken;
+import com.escritr.escritr.auth.model.UserDetailsImpl;
+import com.escritr.escritr.auth.repository.RefreshTokenRepository;
+import com.escritr.escritr.auth.service.AuthRateLimiter;
+import com.escritr.escritr.auth.service.AuthenticationService;
+import com.escritr.escritr.auth.service.TakenIdentifiers;
+import com.escritr.escritr.auth.service.TokenService;
+import com.escritr.escritr.user.domain.User;
+import com.escritr.escritr.user.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OAuth2LoginSuccessHandlerTest {
+
+    @Mock
+    private RefreshTokenRepository refreshTokenRepository;
+    @Mock
+    private AuthenticationManager authenticationManager;
+    @Mock
+    private UserRepository userRepository;
+    @Mock
+    private PasswordEncoder passwordEncoder;
+    @Mock
+    private AuthRateLimiter authRateLimiter;
+    @Mock
+    private TakenIdentifiers takenIdentifiers;
+
+    // the refresh_token table, by hash
+    private final Map<ByteBuffer, RefreshToken> stored = new HashMap<>();
+
+    private TokenService tokenService;
+    private AuthenticationService authenticationService;
+    private OAuth2LoginSuccessHandler handler;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        tokenService = new TokenService();
+        ReflectionTestUtils.setField(tokenService, "secret", "test-secret-key-for-oauth-login-handler");
+        ReflectionTestUtils.setField(tokenService, "accessTokenExpirationMinutes", 15L);
+        ReflectionTestUtils.setField(tokenService, "refreshTokenExpirationDays", 7L);
+        ReflectionTestUtils.setField(tokenService, "maxSessionsPerUser", 5);
+        ReflectionTestUtils.setField(tokenService, "refreshTokenRepository", refreshTokenRepository);
+        authenticationService = new AuthenticationService(authenticationManager, tokenService, userRepository,
+                passwordEncoder, authRateLimiter, takenIdentifiers);
+
+        handler = new OAuth2LoginSuccessHandler(tokenService);
+        ReflectionTestUtils.setField(handler, "frontendRedirectUrl", "http://localhost:3000/oauth");
+        ReflectionTestUtils.setField(handler, "refreshTokenCookieName", "refreshToken");
+        ReflectionTestUtils.setField(handler, "refreshTokenExpirationDays", 30L);
+        ReflectionTestUtils.setField(handler, "cookiePath", "/");
+        ReflectionTestUtils.setField(handler, "cookieSameSite", "Lax");
+        ReflectionTestUtils.setField(handler, "cookieDomain", "");
+
+        user = new User("testuser", "test@example.com", "name");
+        user.setId(UUID.randomUUID());
+        user.setTokenVersion(2);
+
+        when(refreshTokenRepository.deleteAllButNewest(eq(user.getId()), anyInt())).thenReturn(0);
+        when(refreshTokenRepository.save(any(RefreshToken.class))).thenAnswer(invocation -> {
+            RefreshToken token = invocation.getArgument(0);
+            stored.put(ByteBuffer.wrap(token.getTokenHash()), token);
+            return token;
+        });
+        when(refreshTokenRepository.findWithUserByTokenHash(any())).thenAnswer(invocation ->
+                Optional.ofNullable(stored.get(ByteBuffer.wrap(invocation.getArgument(0, byte[].class)))));
+    }
+
+    @Test
+    @DisplayName("an OAuth login should open a new session and the refresh token of another device should still be exchanged")
+    void onAuthenticationSuccess_KeepsOtherSessions() throws Exception {
+        String otherDevice = tokenService.createRefreshToken(user).getToken();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        handler.onAuthenticationSuccess(new MockHttpServletRequest(), response,
+                new TestingAuthenticationToken(new UserDetailsImpl(user, Map.of()), null));
+
+        String cookie = response.getHeader("Set-Cookie");
+        String issued = cookie.substring("refreshToken=".length(), cookie.indexOf(';'));
+        assertTrue(response.getRedirectedUrl().startsWith("http://localhost:3000/oauth?token="));
+
+        AuthenticationResult refreshedOther = authenticationService.updateAcessTokenWithRefreshToken(otherDevice);
+        AuthenticationResult refreshedNew = authenticationService.updateAcessTokenWithRefreshToken(issued);
+
+        assertEquals(user.getTokenVersion(), tokenService.decodeToken(refreshedOther.accessToken()).tokenVersion());
+        assertEquals(user.getId(), refreshedNew.user().getId());
+        assertEquals(2, stored.size());
+        verify(refreshTokenRepository, never()).deleteByTokenHash(any());
+    }
+}
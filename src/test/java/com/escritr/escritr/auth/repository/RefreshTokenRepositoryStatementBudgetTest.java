@@ -0,0 +1,118 @@
+package com.escritr.escritr.auth.repository;
+
+import com.escritr.escritr.auth.model.RefreshToken;
+import com.escritr.escritr.support.SqlStatementCounter;
+import com.escritr.escritr.user.domain.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.escritr.escritr.support.SqlStatementCounter.assertStatementBudget;
+import static org.junit.jupiter.api.Assertions.*;
+
+// session operations are single statements, no matter how many sessions the user has
+@DataJpaTest(properties = {
+        "spring.flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.hbm2ddl.create_namespaces=true",
+        SqlStatementCounter.PROPERTY
+})
+class RefreshTokenRepositoryStatementBudgetTest {
+
+    private static final int SESSIONS = 6;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private RefreshTokenRepository refreshTokenRepository;
+
+    private User user;
+    private User otherUser;
+    private final List<RefreshToken> sessions = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        user = entityManager.persist(new User("sessions", "sessions@example.com", "password", "Sessions"));
+        otherUser = entityManager.persist(new User("other", "other@example.com", "password", "Other"));
+        Instant now = Instant.now();
+        for (int i = 0; i < SESSIONS; i++) {
+            // oldest first
+            sessions.add(entityManager.persist(token(user, now.plus(i, ChronoUnit.MINUTES), i)));
+        }
+        entityManager.persist(token(otherUser, now, 100));
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    @DisplayName("the session cap should keep the newest sessions of the user in one statement")
+    void deleteAllButNewest_Budget() {
+        int deleted = assertStatementBudget("login (session cap)", 1,
+                () -> refreshTokenRepository.deleteAllButNewest(user.getId(), 2));
+
+        assertEquals(SESSIONS - 2, deleted);
+        assertTrue(refreshTokenRepository.findByTokenHash(sessions.get(SESSIONS - 1).getTokenHash()).isPresent());
+        assertTrue(refreshTokenRepository.findByTokenHash(sessions.get(SESSIONS - 2).getTokenHash()).isPresent());
+        assertTrue(refreshTokenRepository.findByTokenHash(sessions.get(0).getTokenHash()).isEmpty());
+        assertEquals(3, refreshTokenRepository.count());
+    }
+
+    @Test
+    @DisplayName("logout from all devices should be one delete and leave other users alone")
+    void deleteAllByUser_Budget() {
+        int deleted = assertStatementBudget("logout all", 1, () -> refreshTokenRepository.deleteAllByUser(user));
+
+        assertEquals(SESSIONS, deleted);
+        assertEquals(1, refreshTokenRepository.count());
+    }
+
+    @Test
+    @DisplayName("logout should delete the token by its hash without loading it")
+    void deleteByTokenHash_Budget() {
+        byte[] hash = sessions.get(0).getTokenHash();
+
+        int deleted = assertStatementBudget("logout", 1, () -> refreshTokenRepository.deleteByTokenHash(hash));
+
+        assertEquals(1, deleted);
+        assertTrue(SqlStatementCounter.statements().get(0).toLowerCase().startsWith("delete"));
+        assertTrue(refreshTokenRepository.findByTokenHash(hash).isEmpty());
+    }
+
+    @Test
+    @DisplayName("the refresh exchange should load the token and its user in one select")
+    void findWithUserByTokenHash_Budget() {
+        byte[] hash = sessions.get(0).getTokenHash();
+
+        RefreshToken token = assertStatementBudget("POST /api/auth/refresh", 1, () -> {
+            RefreshToken found = refreshTokenRepository.findWithUserByTokenHash(hash).orElseThrow();
+            found.getUser().getTokenVersion();
+            found.getUser().getEmail();
+            return found;
+        });
+
+        assertEquals(1, SqlStatementCounter.selects());
+        assertEquals(user.getId(), token.getUser().getId());
+        assertEquals(user.getTokenVersion(), token.getTokenVersion());
+    }
+
+    private static RefreshToken token(User user, Instant expiry, int seed) {
+        RefreshToken token = new RefreshToken();
+        token.setUser(user);
+        token.setExpiryDate(expiry);
+        token.setTokenVersion(user.getTokenVersion());
+        byte[] hash = new byte[32];
+        hash[0] = (byte) seed;
+        hash[1] = (byte) user.getUsername().length();
+        token.setTokenHash(hash);
+        return token;
+    }
+}
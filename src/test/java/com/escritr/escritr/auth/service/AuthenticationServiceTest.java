@@ -6,6 +6,7 @@ import com.escritr.escritr.auth.model.RefreshToken;
 import com.escritr.escritr.auth.model.UserDetailsImpl;
 import com.escritr.escritr.exceptions.InvalidRefreshTokenException;
 import com.escritr.escritr.exceptions.SessionInvalidatedException;
+import com.escritr.escritr.exceptions.TooManyRequestsException;
 import com.escritr.escritr.user.domain.User;
 import com.escritr.escritr.user.repository.UserRepository;
 import org.junit.jupiter.api.BeforeEach;
@@ -38,6 +39,10 @@ class AuthenticationServiceTest {
     private TokenService tokenService;
     @Mock
     private UserRepository userRepository;
+    @Mock
+    private AuthRateLimiter authRateLimiter;
+    @Mock
+    private TakenIdentifiers takenIdentifiers;
 
     // Inject mocks into this instance
     @InjectMocks
@@ -70,6 +75,7 @@ class AuthenticationServiceTest {
         sampleRefreshToken.setUser(sampleUser);
         sampleRefreshToken.setToken("valid-refresh-token");
         sampleRefreshToken.setExpiryDate(Instant.now().plusSeconds(3600)); // Valid expiry
+        sampleRefreshToken.setTokenVersion(1); // issued at the user's current version
     }
 
 
@@ -96,6 +102,7 @@ class AuthenticationServiceTest {
         verify(authenticationManager, times(1)).authenticate(any(UsernamePasswordAuthenticationToken.class));
         verify(tokenService, times(1)).generateAccessToken(sampleUser);
         verify(tokenService, times(1)).createRefreshToken(sampleUser);
+        verify(authRateLimiter, never()).recordAccountFailure(anyString());
     }
 
     @Test
@@ -116,21 +123,56 @@ class AuthenticationServiceTest {
         verify(authenticationManager, times(1)).authenticate(any(UsernamePasswordAuthenticationToken.class));
         verify(tokenService, never()).generateAccessToken(any(User.class));
         verify(tokenService, never()).createRefreshToken(any(User.class));
+        verify(authRateLimiter, times(1)).recordAccountFailure(sampleLoginDTO.login());
     }
 
 
+    @Test
+    @DisplayName("authenticateAndGenerateTokens should reject a throttled account before checking the password")
+    void authenticateAndGenerateTokens_Failure_RateLimited() {
+        when(authRateLimiter.checkAccount(sampleLoginDTO.login())).thenReturn(1_500_000_000L);
+
+        TooManyRequestsException thrown = assertThrows(
+                TooManyRequestsException.class,
+                () -> authenticationService.authenticateAndGenerateTokens(sampleLoginDTO)
+        );
+
+        assertEquals(2, thrown.getRetryAfterSeconds());
+        verifyNoInteractions(authenticationManager);
+        verify(tokenService, never()).createRefreshToken(any(User.class));
+        verify(authRateLimiter, never()).recordAccountFailure(anyString());
+    }
+
+    @Test
+    @DisplayName("checkUsernameAvailability should answer a definite negative of the filter without querying users")
+    void checkUsernameAvailability_FilterNegative() {
+        when(takenIdentifiers.mightHaveUsername("newname")).thenReturn(false);
+
+        assertTrue(authenticationService.checkUsernameAvailability("newname"));
+
+        verifyNoInteractions(userRepository);
+    }
+
+    @Test
+    @DisplayName("checkEmailAvailability should confirm a probable hit of the filter with an existence query")
+    void checkEmailAvailability_FilterPositive() {
+        when(takenIdentifiers.mightHaveEmail("test@example.com")).thenReturn(true);
+        when(userRepository.existsByEmail("test@example.com")).thenReturn(true);
+
+        assertFalse(authenticationService.checkEmailAvailability("test@example.com"));
+
+        verify(userRepository, times(1)).existsByEmail("test@example.com");
+        verify(userRepository, never()).findByEmail(anyString());
+    }
+
     @Test
     @DisplayName("updateAcessTokenWithRefreshToken should return new access token for valid refresh token and matching version")
     void updateAccessTokenWithRefreshToken_Success() {
         String requestRefreshToken = "valid-refresh-token";
-        User currentUserState = new User("testuser", "test@example.com", "encodedPassword","name");
-        currentUserState.setId(sampleUser.getId());
-        currentUserState.setTokenVersion(1); // Same version as in refresh token's user
 
         when(tokenService.findByToken(requestRefreshToken)).thenReturn(Optional.of(sampleRefreshToken));
         when(tokenService.verifyRefreshToken(sampleRefreshToken)).thenReturn(sampleRefreshToken);
-        when(userRepository.findById(sampleUser.getId())).thenReturn(Optional.of(currentUserState));
-        when(tokenService.generateAccessToken(currentUserState)).thenReturn("newMockAccessToken");
+        when(tokenService.generateAccessToken(sampleUser)).thenReturn("newMockAccessToken");
 
         AuthenticationResult result = authenticationService.updateAcessTokenWithRefreshToken(requestRefreshToken);
 
@@ -140,11 +182,24 @@ class AuthenticationServiceTest {
 
         verify(tokenService, times(1)).findByToken(requestRefreshToken);
         verify(tokenService, times(1)).verifyRefreshToken(sampleRefreshToken);
-        verify(userRepository, times(1)).findById(sampleUser.getId());
-        verify(tokenService, times(1)).generateAccessToken(currentUserState);
+        verify(tokenService, times(1)).generateAccessToken(sampleUser);
         verify(tokenService, never()).deleteByToken(anyString());
     }
 
+    @Test
+    @DisplayName("updateAcessTokenWithRefreshToken should use the user fetched with the token and not query users again")
+    void updateAccessTokenWithRefreshToken_NoUserLookup() {
+        String requestRefreshToken = "valid-refresh-token";
+
+        when(tokenService.findByToken(requestRefreshToken)).thenReturn(Optional.of(sampleRefreshToken));
+        when(tokenService.verifyRefreshToken(sampleRefreshToken)).thenReturn(sampleRefreshToken);
+        when(tokenService.generateAccessToken(sampleUser)).thenReturn("newMockAccessToken");
+
+        authenticationService.updateAcessTokenWithRefreshToken(requestRefreshToken);
+
+        verifyNoInteractions(userRepository);
+    }
+
     @Test
     @DisplayName("updateAcessTokenWithRefreshToken should throw InvalidRefreshTokenException if token not found")
     void updateAccessTokenWithRefreshToken_Failure_TokenNotFound() {
@@ -160,7 +215,6 @@ class AuthenticationServiceTest {
 
         verify(tokenService, times(1)).findByToken(requestRefreshToken);
         verify(tokenService, never()).verifyRefreshToken(any(RefreshToken.class));
-        verify(userRepository, never()).findById(any(UUID.class));
         verify(tokenService, never()).generateAccessToken(any(User.class));
     }
 
@@ -184,56 +238,41 @@ class AuthenticationServiceTest {
 
         verify(tokenService, times(1)).findByToken(requestRefreshToken);
         verify(tokenService, times(1)).verifyRefreshToken(sampleRefreshToken);
-        verify(userRepository, never()).findById(any(UUID.class));
         verify(tokenService, never()).generateAccessToken(any(User.class));
     }
 
-
     @Test
-    @DisplayName("updateAcessTokenWithRefreshToken should throw SessionInvalidatedException if user not found")
-    void updateAccessTokenWithRefreshToken_Failure_UserNotFound() {
+    @DisplayName("updateAcessTokenWithRefreshToken should throw SessionInvalidatedException and delete token if token versions mismatch")
+    void updateAccessTokenWithRefreshToken_Failure_VersionMismatch() {
         String requestRefreshToken = "valid-refresh-token";
+        sampleUser.setTokenVersion(2); // sessions were revoked after sampleRefreshToken (version 1) was issued
 
+        // Arrange
         when(tokenService.findByToken(requestRefreshToken)).thenReturn(Optional.of(sampleRefreshToken));
         when(tokenService.verifyRefreshToken(sampleRefreshToken)).thenReturn(sampleRefreshToken);
-        when(userRepository.findById(sampleUser.getId())).thenReturn(Optional.empty());
 
-        SessionInvalidatedException thrown = assertThrows(
+        assertThrows(
                 SessionInvalidatedException.class,
                 () -> authenticationService.updateAcessTokenWithRefreshToken(requestRefreshToken)
         );
-        assertEquals("User not found.", thrown.getMessage());
 
         verify(tokenService, times(1)).findByToken(requestRefreshToken);
         verify(tokenService, times(1)).verifyRefreshToken(sampleRefreshToken);
-        verify(userRepository, times(1)).findById(sampleUser.getId());
+        verify(tokenService, times(1)).deleteByToken(requestRefreshToken);
         verify(tokenService, never()).generateAccessToken(any(User.class));
-        verify(tokenService, never()).deleteByToken(anyString());
     }
 
-
     @Test
-    @DisplayName("updateAcessTokenWithRefreshToken should throw SessionInvalidatedException and delete token if token versions mismatch")
-    void updateAccessTokenWithRefreshToken_Failure_VersionMismatch() {
-        String requestRefreshToken = "valid-refresh-token";
-        User currentUserState = new User("testuser", "test@example.com", "encodedPassword","name");
-        currentUserState.setId(sampleUser.getId());
-        currentUserState.setTokenVersion(2);
-
-        // Arrange
-        when(tokenService.findByToken(requestRefreshToken)).thenReturn(Optional.of(sampleRefreshToken)); // sampleRefreshToken user version is 1
-        when(tokenService.verifyRefreshToken(sampleRefreshToken)).thenReturn(sampleRefreshToken);
-        when(userRepository.findById(sampleUser.getId())).thenReturn(Optional.of(currentUserState));
+    @DisplayName("revokeAllSessions should bump the token version and delete every refresh token of the user")
+    void revokeAllSessions_BumpsVersionAndDeletesTokens() {
+        when(userRepository.findById(sampleUser.getId())).thenReturn(Optional.of(sampleUser));
 
-        SessionInvalidatedException thrown = assertThrows(
-                SessionInvalidatedException.class,
-                () -> authenticationService.updateAcessTokenWithRefreshToken(requestRefreshToken)
-        );
+        authenticationService.revokeAllSessions(sampleUser.getId());
 
-        verify(tokenService, times(1)).findByToken(requestRefreshToken);
-        verify(tokenService, times(1)).verifyRefreshToken(sampleRefreshToken);
-        verify(userRepository, times(1)).findById(sampleUser.getId());
-        verify(tokenService, times(1)).deleteByToken(requestRefreshToken);
-        verify(tokenService, never()).generateAccessToken(any(User.class));
+        // a refresh token issued before, at version 1, is now rejected by the version check above
+        assertEquals(2, sampleUser.getTokenVersion());
+        assertNotEquals(sampleRefreshToken.getTokenVersion(), sampleUser.getTokenVersion());
+        verify(userRepository).save(sampleUser);
+        verify(tokenService).deleteAllUserRefreshTokens(sampleUser);
     }
-}
\ No newline at end of file
+}
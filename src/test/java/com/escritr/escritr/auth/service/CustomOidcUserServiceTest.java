@@ -0,0 +1,176 @@
+package com.escritr.escritr.auth.service;
+
+import com.escritr.escritr.user.domain.User;
+import com.escritr.escritr.user.domain.UserAccountLink;
+import com.escritr.escritr.user.repository.UserAccountLinkRepository;
+import com.escritr.escritr.user.repository.UserRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.security.oauth2.core.OAuth2AuthenticationException;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CustomOidcUserServiceTest {
+
+    @Mock
+    private UserRepository userRepository;
+    @Mock
+    private UserAccountLinkRepository userAccountLinkRepository;
+    @Mock
+    private OAuthUserProvisioner oAuthUserProvisioner;
+
+    @InjectMocks
+    private CustomOidcUserService customOidcUserService;
+
+    @Test
+    @DisplayName("usernameCandidates should start with the base name and stay within the column length")
+    void usernameCandidates_Shape() {
+        String base = "a".repeat(45);
+
+        List<String> candidates = CustomOidcUserService.usernameCandidates(base);
+
+        assertEquals(base, candidates.get(0));
+        assertTrue(candidates.size() >= 16);
+        assertEquals(candidates.size(), candidates.stream().distinct().count());
+        assertTrue(candidates.stream().allMatch(c -> c.length() <= 50));
+    }
+
+    @Test
+    @DisplayName("createOAuthUser should resolve all candidates with one query and take the first free one")
+    void createOAuthUser_OneLookup() {
+        when(userRepository.findUsernamesIn(anyCollection())).thenReturn(List.of("john"));
+        when(oAuthUserProvisioner.createLinkedUser(anyString(), anyString(), anyString(), anyString(), anyString()))
+                .thenAnswer(invocation -> created(invocation.getArgument(0)));
+        when(userRepository.findById(any())).thenAnswer(invocation -> Optional.of(reloaded(invocation.getArgument(0))));
+
+        User user = customOidcUserService.createOAuthUser("john@example.com", "John", "google", "123");
+
+        verify(oAuthUserProvisioner).createLinkedUser(startsWith("john_"), anyString(), anyString(), anyString(), anyString());
+        assertEquals("reloaded", user.getUsername());
+        verify(userRepository, times(1)).findUsernamesIn(anyCollection());
+        verify(userRepository, never()).findByUsername(anyString());
+    }
+
+    @Test
+    @DisplayName("createOAuthUser should retry with new candidates when the insert hits the unique constraint")
+    void createOAuthUser_RetriesOnConflict() {
+        when(userRepository.findUsernamesIn(anyCollection())).thenReturn(List.of());
+        when(userAccountLinkRepository.findByProviderNameAndProviderUserId("google", "123")).thenReturn(Optional.empty());
+        when(oAuthUserProvisioner.createLinkedUser(anyString(), anyString(), anyString(), anyString(), anyString()))
+                .thenThrow(new DataIntegrityViolationException("duplicate key"))
+                .thenAnswer(invocation -> created(invocation.getArgument(0)));
+        when(userRepository.findByEmail("john@example.com")).thenReturn(Optional.empty());
+        when(userRepository.findById(any())).thenAnswer(invocation -> Optional.of(reloaded(invocation.getArgument(0))));
+
+        User user = customOidcUserService.createOAuthUser("john@example.com", "John", "google", "123");
+
+        verify(oAuthUserProvisioner, times(2)).createLinkedUser(eq("john"), anyString(), anyString(), anyString(), anyString());
+        assertEquals("reloaded", user.getUsername());
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Collection<String>> lookups = ArgumentCaptor.forClass(Collection.class);
+        verify(userRepository, times(2)).findUsernamesIn(lookups.capture());
+    }
+
+    @Test
+    @DisplayName("createOAuthUser should return the user a concurrent login of the same account created")
+    void createOAuthUser_ConcurrentSignup() {
+        User existing = new User("john", "john@example.com", "John");
+        when(userRepository.findUsernamesIn(anyCollection())).thenReturn(List.of());
+        when(oAuthUserProvisioner.createLinkedUser(anyString(), anyString(), anyString(), anyString(), anyString()))
+                .thenThrow(new DataIntegrityViolationException("duplicate key"));
+        when(userAccountLinkRepository.findByProviderNameAndProviderUserId("google", "123"))
+                .thenReturn(Optional.of(new UserAccountLink(existing, "google", "123")));
+
+        assertSame(existing, customOidcUserService.createOAuthUser("john@example.com", "John", "google", "123"));
+        verify(oAuthUserProvisioner, times(1)).createLinkedUser(anyString(), anyString(), anyString(), anyString(), anyString());
+    }
+
+    @Test
+    @DisplayName("createOAuthUser should return the user read in the login's persistence context, not the provisioner's")
+    void createOAuthUser_ReadsCreatedUserAgain() {
+        when(userRepository.findUsernamesIn(anyCollection())).thenReturn(List.of());
+        User inserted = created("john");
+        when(oAuthUserProvisioner.createLinkedUser(anyString(), anyString(), anyString(), anyString(), anyString())).thenReturn(inserted);
+        User managed = reloaded(inserted.getId());
+        when(userRepository.findById(inserted.getId())).thenReturn(Optional.of(managed));
+
+        assertSame(managed, customOidcUserService.createOAuthUser("john@example.com", "John", "google", "123"));
+    }
+
+    @Test
+    @DisplayName("createOAuthUser should link to the user a concurrent registration created with the same e-mail instead of retrying")
+    void createOAuthUser_EmailTakenMeanwhile() {
+        User registered = new User("john", "john@example.com", "John");
+        registered.setId(UUID.randomUUID());
+        when(userRepository.findUsernamesIn(anyCollection())).thenReturn(List.of());
+        when(oAuthUserProvisioner.createLinkedUser(anyString(), anyString(), anyString(), anyString(), anyString()))
+                .thenThrow(new DataIntegrityViolationException("duplicate key value violates unique constraint on email"));
+        when(userAccountLinkRepository.findByProviderNameAndProviderUserId("google", "123")).thenReturn(Optional.empty());
+        when(userRepository.findByEmail("john@example.com")).thenReturn(Optional.of(registered));
+
+        assertSame(registered, customOidcUserService.createOAuthUser("john@example.com", "John", "google", "123"));
+
+        verify(oAuthUserProvisioner, times(1)).createLinkedUser(anyString(), anyString(), anyString(), anyString(), anyString());
+        ArgumentCaptor<UserAccountLink> link = ArgumentCaptor.forClass(UserAccountLink.class);
+        verify(userAccountLinkRepository).save(link.capture());
+        assertSame(registered, link.getValue().getUser());
+    }
+
+    @Test
+    @DisplayName("createOAuthUser should refuse to link a password account that took the e-mail meanwhile, without retrying")
+    void createOAuthUser_EmailTakenByPasswordAccount() {
+        User registered = new User("john", "john@example.com", "password", "John");
+        when(userRepository.findUsernamesIn(anyCollection())).thenReturn(List.of());
+        when(oAuthUserProvisioner.createLinkedUser(anyString(), anyString(), anyString(), anyString(), anyString()))
+                .thenThrow(new DataIntegrityViolationException("duplicate key value violates unique constraint on email"));
+        when(userAccountLinkRepository.findByProviderNameAndProviderUserId("google", "123")).thenReturn(Optional.empty());
+        when(userRepository.findByEmail("john@example.com")).thenReturn(Optional.of(registered));
+
+        OAuth2AuthenticationException error = assertThrows(OAuth2AuthenticationException.class,
+                () -> customOidcUserService.createOAuthUser("john@example.com", "John", "google", "123"));
+
+        assertTrue(error.getError().getErrorCode().contains("password-protected"));
+        verify(oAuthUserProvisioner, times(1)).createLinkedUser(anyString(), anyString(), anyString(), anyString(), anyString());
+        verify(userAccountLinkRepository, never()).save(any());
+    }
+
+    @Test
+    @DisplayName("createOAuthUser should give up after a bounded number of conflicting inserts")
+    void createOAuthUser_GivesUp() {
+        when(userRepository.findUsernamesIn(anyCollection())).thenReturn(List.of());
+        when(userAccountLinkRepository.findByProviderNameAndProviderUserId("google", "123")).thenReturn(Optional.empty());
+        when(userRepository.findByEmail("john@example.com")).thenReturn(Optional.empty());
+        when(oAuthUserProvisioner.createLinkedUser(anyString(), anyString(), anyString(), anyString(), anyString()))
+                .thenThrow(new DataIntegrityViolationException("duplicate key"));
+
+        assertThrows(OAuth2AuthenticationException.class,
+                () -> customOidcUserService.createOAuthUser("john@example.com", "John", "google", "123"));
+        verify(oAuthUserProvisioner, times(3)).createLinkedUser(anyString(), anyString(), anyString(), anyString(), anyString());
+    }
+
+    private static User created(String username) {
+        User user = new User(username, "john@example.com", "John");
+        user.setId(UUID.randomUUID());
+        return user;
+    }
+
+    private static User reloaded(UUID id) {
+        User user = new User("reloaded", "john@example.com", "John");
+        user.setId(id);
+        return user;
+    }
+}
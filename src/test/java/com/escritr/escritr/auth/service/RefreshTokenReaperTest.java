@@ -0,0 +1,59 @@
+package com.escritr.escritr.auth.service;
+
+import com.escritr.escritr.auth.repository.RefreshTokenRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RefreshTokenReaperTest {
+
+    @Mock
+    private RefreshTokenRepository refreshTokenRepository;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    @DisplayName("purgeExpired should delete batches until one comes back short")
+    void purgeExpired_LoopsUntilShortBatch() {
+        RefreshTokenReaper reaper = new RefreshTokenReaper(refreshTokenRepository, meterRegistry, true, 100, 50);
+        when(refreshTokenRepository.deleteExpiredBatch(any(Instant.class), eq(100))).thenReturn(100, 100, 42);
+
+        assertEquals(242, reaper.purgeExpired());
+
+        verify(refreshTokenRepository, times(3)).deleteExpiredBatch(any(Instant.class), eq(100));
+        assertEquals(242, meterRegistry.get("auth.refresh.tokens.purged").counter().count());
+        assertEquals(3, meterRegistry.get("auth.refresh.tokens.purge.batch").timer().count());
+    }
+
+    @Test
+    @DisplayName("purgeExpired should stop after max-batches-per-run even if expired rows remain")
+    void purgeExpired_BoundedRun() {
+        RefreshTokenReaper reaper = new RefreshTokenReaper(refreshTokenRepository, meterRegistry, true, 10, 3);
+        when(refreshTokenRepository.deleteExpiredBatch(any(Instant.class), eq(10))).thenReturn(10);
+
+        assertEquals(30, reaper.purgeExpired());
+
+        verify(refreshTokenRepository, times(3)).deleteExpiredBatch(any(Instant.class), eq(10));
+    }
+
+    @Test
+    @DisplayName("reap should not touch the table when the reaper is disabled")
+    void reap_Disabled() {
+        RefreshTokenReaper reaper = new RefreshTokenReaper(refreshTokenRepository, meterRegistry, false, 100, 50);
+
+        reaper.reap();
+
+        verifyNoInteractions(refreshTokenRepository);
+    }
+}
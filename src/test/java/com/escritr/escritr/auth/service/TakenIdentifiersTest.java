@@ -0,0 +1,109 @@
+package com.escritr.escritr.auth.service;
+
+import com.escritr.escritr.user.domain.User;
+import com.escritr.escritr.user.domain.UserIdentifiers;
+import com.escritr.escritr.user.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@DataJpaTest(properties = {
+        "spring.flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.hbm2ddl.create_namespaces=true",
+        "auth.availability-filter.expected-users=1000"
+})
+@Import({TakenIdentifiers.class, TakenIdentifiersTest.Metrics.class})
+class TakenIdentifiersTest {
+
+    @TestConfiguration
+    static class Metrics {
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private TakenIdentifiers takenIdentifiers;
+
+    @Test
+    @DisplayName("rebuild should stream the users table into the filters")
+    void rebuild_StreamsUsers() {
+        for (int i = 0; i < 50; i++) {
+            entityManager.persist(new User("writer" + i, "writer" + i + "@example.com", "password", "Writer " + i));
+        }
+        entityManager.flush();
+
+        takenIdentifiers.rebuild();
+
+        for (int i = 0; i < 50; i++) {
+            assertTrue(takenIdentifiers.mightHaveUsername("writer" + i));
+            assertTrue(takenIdentifiers.mightHaveEmail("Writer" + i + "@Example.com"), "keys are case-insensitive");
+        }
+        assertFalse(takenIdentifiers.mightHaveUsername("nobody-has-this-name"));
+    }
+
+    @Test
+    @DisplayName("a user saved in a transaction should only be added once it commits")
+    void add_WaitsForCommit() {
+        takenIdentifiers.rebuild();
+
+        // the entity listener calls add on insert
+        entityManager.persist(new User("newcomer", "newcomer@example.com", "password", "Newcomer"));
+        entityManager.flush();
+
+        // the test transaction is rolled back, never committed
+        assertFalse(takenIdentifiers.mightHaveUsername("newcomer"));
+    }
+
+    @Test
+    @DisplayName("a user committed after a rebuild read the table but before it swapped the filters should be in the new ones")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void add_BeforeRebuildSwap() {
+        UserRepository users = mock(UserRepository.class);
+        TakenIdentifiers identifiers = new TakenIdentifiers(users, 100, new SimpleMeterRegistry());
+        when(users.streamIdentifiers()).thenReturn(Stream.of(identifiers("writer")));
+        identifiers.rebuild();
+
+        // the stream is closed once the rebuild read it, right before the new filters replace the old ones
+        when(users.streamIdentifiers()).thenReturn(Stream.of(identifiers("writer"))
+                .onClose(() -> identifiers.add("latecomer", "latecomer@example.com")));
+        identifiers.rebuild();
+
+        assertTrue(identifiers.mightHaveUsername("writer"));
+        assertTrue(identifiers.mightHaveUsername("latecomer"));
+        assertTrue(identifiers.mightHaveEmail("latecomer@example.com"));
+    }
+
+    private static UserIdentifiers identifiers(String username) {
+        return new UserIdentifiers() {
+            @Override
+            public String getUsername() {
+                return username;
+            }
+
+            @Override
+            public String getEmail() {
+                return null;
+            }
+        };
+    }
+}
@@ -47,6 +47,7 @@ class TokenServiceTest {
         ReflectionTestUtils.setField(tokenService, "accessTokenExpirationMinutes", accessTokenExpMinutes);
         long refreshTokenExpDays = 7;
         ReflectionTestUtils.setField(tokenService, "refreshTokenExpirationDays", refreshTokenExpDays);
+        ReflectionTestUtils.setField(tokenService, "maxSessionsPerUser", 5);
 
         sampleUser = new User("testuser", "test@example.com", "password","name");
         sampleUser.setId(UUID.randomUUID());
@@ -85,7 +86,11 @@ class TokenServiceTest {
         assertNotNull(refreshToken.getExpiryDate(), "RefreshToken expiry date should not be null");
         assertEquals(sampleUser, refreshToken.getUser(), "RefreshToken should be linked to the correct user");
 
-        verify(refreshTokenRepository, times(1)).deleteByUser(sampleUser);
+        assertEquals(43, refreshToken.getToken().length(), "256 random bits, base64url without padding");
+        assertArrayEquals(TokenService.hashRefreshToken(refreshToken.getToken()), refreshToken.getTokenHash(),
+                "Only the hash of the token should be stored");
+
+        verify(refreshTokenRepository, times(1)).deleteAllButNewest(sampleUser.getId(), 4);
         verify(refreshTokenRepository, times(1)).save(any(RefreshToken.class));
     }
 
@@ -100,7 +105,7 @@ class TokenServiceTest {
         RefreshToken result = tokenService.verifyRefreshToken(token);
 
         assertEquals(token, result, "Should return the same token if valid");
-        verify(refreshTokenRepository, never()).delete(any(RefreshToken.class));
+        verify(refreshTokenRepository, never()).deleteByTokenHash(any());
     }
 
     @Test
@@ -108,6 +113,7 @@ class TokenServiceTest {
     void verifyRefreshToken_shouldThrowAndDeletetoken_whenExpired() {
         RefreshToken expiredToken = new RefreshToken();
         expiredToken.setToken("expired-token");
+        expiredToken.setTokenHash(TokenService.hashRefreshToken("expired-token"));
         expiredToken.setExpiryDate(Instant.now().minus(1, ChronoUnit.DAYS));
         expiredToken.setUser(sampleUser);
 
@@ -116,7 +122,8 @@ class TokenServiceTest {
         });
         assertTrue(exception.getMessage().contains("was expired"), "Exception message should indicate expiry");
 
-        verify(refreshTokenRepository, times(1)).delete(expiredToken);
+        verify(refreshTokenRepository, times(1)).deleteByTokenHash(expiredToken.getTokenHash());
+        verify(refreshTokenRepository, never()).delete(any(RefreshToken.class));
     }
 
     @Test
@@ -168,4 +175,35 @@ class TokenServiceTest {
         });
         assertTrue(exception.getMessage().contains("Token missing required claims."), "Error message should indicate some claim is missing");
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("decodeToken should answer a repeated token from the verified-token cache")
+    void decodeToken_shouldReuseVerifiedToken() {
+        String token = tokenService.generateAccessToken(sampleUser);
+
+        DecodedToken first = tokenService.decodeToken(token);
+        DecodedToken second = tokenService.decodeToken(token);
+
+        assertSame(first, second);
+    }
+
+    @Test
+    @DisplayName("decodeToken should not serve a cached token past its expiration")
+    void decodeToken_shouldExpireCachedTokenWithJwt() throws InterruptedException {
+        Instant expiresAt = Instant.now().plusSeconds(2).truncatedTo(ChronoUnit.SECONDS);
+        String token = JWT.create()
+                .withIssuer("escritr")
+                .withSubject(sampleUser.getId().toString())
+                .withClaim("usr", sampleUser.getUsername())
+                .withClaim("eml", sampleUser.getEmail())
+                .withClaim("ver", sampleUser.getTokenVersion())
+                .withExpiresAt(expiresAt)
+                .sign(Algorithm.HMAC256(testSecret));
+
+        assertNotNull(tokenService.decodeToken(token));
+
+        Thread.sleep(Math.max(0, expiresAt.toEpochMilli() - System.currentTimeMillis()) + 100);
+
+        assertThrows(AuthenticationTokenException.class, () -> tokenService.decodeToken(token));
+    }
+}
@@ -0,0 +1,121 @@
+package com.escritr.escritr.auth.service;
+
+import com.escritr.escritr.auth.model.CachedUser;
+import com.escritr.escritr.articles.service.ArticleCache;
+import com.escritr.escritr.user.domain.User;
+import com.escritr.escritr.user.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UserSessionCacheTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    private UserSessionCache userSessionCache;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        userSessionCache = new UserSessionCache(userRepository, 100, Duration.ofMinutes(1), new SimpleMeterRegistry());
+        user = new User("testuser", "test@example.com", "password", "name");
+        user.setId(UUID.randomUUID());
+        user.setTokenVersion(3);
+    }
+
+    @Test
+    @DisplayName("evict should make the next lookup read the new token version")
+    void evict_ReloadsTokenVersion() {
+        when(userRepository.findById(user.getId())).thenReturn(Optional.of(user));
+        assertEquals(3, userSessionCache.get(user.getId()).orElseThrow().tokenVersion());
+
+        user.incrementTokenVersion();
+        assertEquals(3, userSessionCache.get(user.getId()).orElseThrow().tokenVersion());
+
+        StaticListableBeanFactory beans = new StaticListableBeanFactory(Map.of("userSessionCache", userSessionCache));
+        new UserCacheInvalidationListener(beans.getBeanProvider(UserSessionCache.class), beans.getBeanProvider(TakenIdentifiers.class),
+                beans.getBeanProvider(ArticleCache.class))
+                .updated(user);
+
+        assertEquals(4, userSessionCache.get(user.getId()).orElseThrow().tokenVersion());
+        verify(userRepository, times(2)).findById(user.getId());
+    }
+
+    @Test
+    @DisplayName("a session revocation should leave the article cache alone")
+    void updated_TokenVersionKeepsArticles() {
+        ArticleCache articleCache = mock(ArticleCache.class);
+        user.markAuthorStored();
+        user.incrementTokenVersion();
+        user.setEmail("new@example.com");
+
+        listener(articleCache).updated(user);
+
+        verifyNoInteractions(articleCache);
+    }
+
+    @Test
+    @DisplayName("a rename should evict the author's articles only once the transaction committed")
+    void updated_RenameEvictsAfterCommit() {
+        ArticleCache articleCache = mock(ArticleCache.class);
+        user.markAuthorStored();
+        user.setName("New Name");
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            listener(articleCache).updated(user);
+            verifyNoInteractions(articleCache);
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        verify(articleCache).evictAuthor(user.getId(), "testuser", "New Name");
+    }
+
+    private UserCacheInvalidationListener listener(ArticleCache articleCache) {
+        StaticListableBeanFactory beans = new StaticListableBeanFactory(
+                Map.of("userSessionCache", userSessionCache, "articleCache", articleCache));
+        return new UserCacheInvalidationListener(beans.getBeanProvider(UserSessionCache.class),
+                beans.getBeanProvider(TakenIdentifiers.class), beans.getBeanProvider(ArticleCache.class));
+    }
+
+    @Test
+    @DisplayName("get should not cache unknown users")
+    void get_UnknownUser() {
+        UUID id = UUID.randomUUID();
+        when(userRepository.findById(id)).thenReturn(Optional.empty());
+
+        assertTrue(userSessionCache.get(id).isEmpty());
+        assertTrue(userSessionCache.get(id).isEmpty());
+        verify(userRepository, times(2)).findById(id);
+    }
+
+    @Test
+    @DisplayName("the cached principal should not carry the password")
+    void cachedUser_NoPassword() {
+        User principal = CachedUser.from(user).toUser();
+
+        assertNull(principal.getPassword());
+        assertEquals(user.getId(), principal.getId());
+        assertEquals(user.getName(), principal.getName());
+    }
+}
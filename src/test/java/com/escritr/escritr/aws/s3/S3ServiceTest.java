@@ -0,0 +1,329 @@
+package com.escritr.escritr.aws.s3;
+
+import com.escritr.escritr.common.services.FileValidationService;
+import com.escritr.escritr.common.services.ImageVariantService;
+import com.escritr.escritr.exceptions.FileSizeLimitExceededException;
+import com.escritr.escritr.exceptions.StorageUnavailableException;
+import com.escritr.escritr.exceptions.UnsupportedFileTypeException;
+import com.escritr.escritr.support.InMemoryS3AsyncClient;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.util.unit.DataSize;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class S3ServiceTest {
+
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n', 0, 0, 0, 13, 'I', 'H', 'D', 'R'};
+    private static final int MAX_IN_FLIGHT = 2;
+
+    private InMemoryS3AsyncClient bucket;
+    private ImageVariantService imageVariantService;
+    private S3Service s3Service;
+
+    @BeforeEach
+    void setUp() {
+        bucket = new InMemoryS3AsyncClient();
+        FileValidationService validation = new FileValidationService("image/png,image/jpeg", "png,jpg,jpeg", "8MB");
+        imageVariantService = new ImageVariantService(new int[]{320, 768, 1280}, 40_000_000, 1, 8, new SimpleMeterRegistry());
+        s3Service = new S3Service(bucket, validation, imageVariantService, "bucket", DataSize.ofMegabytes(5), MAX_IN_FLIGHT,
+                1000, Duration.ofHours(1), new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    void tearDown() {
+        s3Service.stop();
+        imageVariantService.shutdown();
+    }
+
+    @Test
+    @DisplayName("upload should read a small file once and store it with a single PutObject")
+    void upload_SinglePut() throws Exception {
+        byte[] content = png(200_000);
+        CountingFile file = new CountingFile("photo.png", content);
+
+        UploadedFile uploaded = s3Service.upload(file).join();
+
+        assertEquals(1, file.opened.get());
+        assertArrayEquals(content, bucket.object(uploaded.key()).content());
+        assertEquals("image/png", bucket.object(uploaded.key()).contentType());
+        assertEquals("image/png", uploaded.contentType());
+        assertEquals(content.length, uploaded.size());
+        assertEquals(sha256(content), uploaded.sha256());
+        assertEquals(sha256(content) + ".png", uploaded.key());
+        assertTrue(uploaded.url().endsWith(uploaded.key()));
+        assertEquals(1, bucket.calls("PutObject"));
+        assertEquals(0, bucket.calls("CreateMultipartUpload"));
+    }
+
+    @Test
+    @DisplayName("upload should store any allowed file with a single PutObject under its digest when the part size is the max file size")
+    void upload_DefaultPartSizeSinglePart() throws Exception {
+        S3Service defaults = new S3Service(bucket, new FileValidationService("image/png,image/jpeg", "png,jpg,jpeg", "8MB"),
+                imageVariantService, "bucket", DataSize.ofMegabytes(8), MAX_IN_FLIGHT, 1000, Duration.ofHours(1), new SimpleMeterRegistry());
+        byte[] content = png(8 * 1024 * 1024);
+
+        UploadedFile uploaded = defaults.upload(new CountingFile("photo.png", content)).join();
+
+        assertEquals(sha256(content) + ".png", uploaded.key());
+        assertArrayEquals(content, bucket.object(uploaded.key()).content());
+        assertEquals(1, bucket.calls("PutObject"));
+        assertEquals(0, bucket.calls("CreateMultipartUpload"));
+        defaults.stop();
+    }
+
+    @Test
+    @DisplayName("upload should stream a file bigger than a part as a multipart upload, reading it once")
+    void upload_Multipart() throws Exception {
+        byte[] content = png(7 * 1024 * 1024 + 123);
+        CountingFile file = new CountingFile("photo.png", content);
+
+        UploadedFile uploaded = s3Service.upload(file).join();
+
+        // read once, no second pass for variants: a file bigger than a part is stored without them
+        assertEquals(1, file.opened.get());
+        assertTrue(uploaded.variants().isEmpty());
+        assertArrayEquals(content, bucket.object(uploaded.key()).content());
+        assertEquals(sha256(content), uploaded.sha256());
+        assertEquals(2, bucket.calls("UploadPart"));
+        assertEquals(1, bucket.calls("CompleteMultipartUpload"));
+        assertEquals(0, bucket.calls("PutObject"));
+        // assembled under a temporary key, then copied under its digest
+        assertEquals(sha256(content) + ".png", uploaded.key());
+        assertEquals("image/png", bucket.object(uploaded.key()).contentType());
+        assertEquals(1, bucket.calls("CopyObject"));
+        assertEquals(1, bucket.objectCount());
+    }
+
+    @Test
+    @DisplayName("upload should deduplicate a file bigger than a part too, dropping the second copy instead of copying it")
+    void upload_MultipartDuplicate() throws Exception {
+        byte[] content = png(7 * 1024 * 1024 + 123);
+        UploadedFile first = s3Service.upload(new CountingFile("photo.png", content)).join();
+
+        UploadedFile second = s3Service.upload(new CountingFile("again.png", content)).join();
+
+        assertEquals(first, second);
+        assertEquals(1, bucket.calls("CopyObject"));
+        assertEquals(1, bucket.objectCount());
+    }
+
+    @Test
+    @DisplayName("upload should abort the multipart upload when the stream goes past the size cap")
+    void upload_SizeCapEnforcedWhileStreaming() {
+        byte[] content = png(9 * 1024 * 1024);
+        // declares a size under the cap, only the stream tells the truth
+        CountingFile file = new CountingFile("photo.png", content) {
+            @Override
+            public long getSize() {
+                return 1024;
+            }
+        };
+
+        CompletionException error = assertThrows(CompletionException.class, () -> s3Service.upload(file).join());
+
+        assertInstanceOf(FileSizeLimitExceededException.class, error.getCause());
+        assertEquals(1, bucket.calls("AbortMultipartUpload"));
+        assertEquals(0, bucket.pendingMultipartUploads());
+        assertEquals(0, bucket.objectCount());
+    }
+
+    @Test
+    @DisplayName("upload should reject content that is not an allowed image before anything is sent")
+    void upload_RejectsUnsupportedContent() {
+        CountingFile file = new CountingFile("photo.png", "just some text pretending to be an image".getBytes());
+
+        assertThrows(UnsupportedFileTypeException.class, () -> s3Service.upload(file));
+
+        assertEquals(0, bucket.calls("PutObject"));
+        assertEquals(0, bucket.calls("CreateMultipartUpload"));
+    }
+
+    @Test
+    @DisplayName("upload should turn uploads away past max-in-flight and take them again once one finished")
+    void upload_BoundedInFlight() {
+        bucket.hold();
+        CompletableFuture<UploadedFile> first = s3Service.upload(new CountingFile("a.png", png(1000)));
+        CompletableFuture<UploadedFile> second = s3Service.upload(new CountingFile("b.png", png(1001)));
+
+        assertThrows(StorageUnavailableException.class, () -> s3Service.upload(new CountingFile("c.png", png(1002))));
+        assertFalse(first.isDone());
+
+        bucket.release();
+        first.join();
+        second.join();
+
+        assertNotNull(s3Service.upload(new CountingFile("c.png", png(1002))).join());
+        assertEquals(MAX_IN_FLIGHT, bucket.maxInFlight());
+    }
+
+    @Test
+    @DisplayName("upload should store the variants of a JPEG next to the original and return their urls")
+    void upload_Variants() throws Exception {
+        byte[] content = jpeg(1600, 1200);
+
+        UploadedFile uploaded = s3Service.upload(new CountingFile("photo.jpg", content)).join();
+
+        assertEquals(List.of("1280w", "768w", "320w", "placeholder"), List.copyOf(uploaded.variants().keySet()));
+        String base = uploaded.key().substring(0, uploaded.key().length() - ".jpg".length());
+        assertTrue(uploaded.variants().get("320w").endsWith(base + "-320w.jpg"));
+        assertEquals("image/jpeg", bucket.object(base + "-320w.jpg").contentType());
+        assertEquals(320, ImageIO.read(new ByteArrayInputStream(bucket.object(base + "-320w.jpg").content())).getWidth());
+        assertArrayEquals(content, bucket.object(uploaded.key()).content());
+        assertEquals(5, bucket.objectCount());
+    }
+
+    @Test
+    @DisplayName("upload should answer a duplicate from the known keys without calling S3, whatever the file is called")
+    void upload_DuplicateFromCache() throws Exception {
+        byte[] content = jpeg(800, 600);
+        UploadedFile first = s3Service.upload(new CountingFile("photo.jpg", content)).join();
+        int calls = bucket.calls("HeadObject") + bucket.calls("PutObject");
+
+        UploadedFile second = s3Service.upload(new CountingFile("pasted image.jpeg", content)).join();
+
+        assertEquals(first, second);
+        assertEquals(calls, bucket.calls("HeadObject") + bucket.calls("PutObject"));
+    }
+
+    @Test
+    @DisplayName("upload should answer a duplicate another node stored with one HEAD, variants included")
+    void upload_DuplicateFromHead() throws Exception {
+        byte[] content = jpeg(800, 600);
+        UploadedFile first = s3Service.upload(new CountingFile("photo.jpg", content)).join();
+        // a second node, or this one after a restart: nothing known locally
+        S3Service other = new S3Service(bucket, new FileValidationService("image/png,image/jpeg", "png,jpg,jpeg", "8MB"),
+                imageVariantService, "bucket", DataSize.ofMegabytes(5), MAX_IN_FLIGHT, 1000, Duration.ofHours(1), new SimpleMeterRegistry());
+        int heads = bucket.calls("HeadObject");
+        int puts = bucket.calls("PutObject");
+
+        UploadedFile second = other.upload(new CountingFile("photo.jpg", content)).join();
+
+        assertEquals(first, second);
+        assertEquals(List.of("768w", "320w", "placeholder"), List.copyOf(second.variants().keySet()));
+        assertEquals(heads + 1, bucket.calls("HeadObject"));
+        assertEquals(puts, bucket.calls("PutObject"));
+        other.stop();
+    }
+
+    @Test
+    @DisplayName("deleteFile should remove a content-addressed object and its variants, the same bytes uploaded again are stored again")
+    void deleteFile_ContentAddressed() throws Exception {
+        byte[] content = jpeg(800, 600);
+        UploadedFile uploaded = s3Service.upload(new CountingFile("photo.jpg", content)).join();
+        int puts = bucket.calls("PutObject");
+
+        assertTrue(s3Service.deleteFile(uploaded.key()).join());
+        assertEquals(0, bucket.objectCount());
+
+        UploadedFile again = s3Service.upload(new CountingFile("photo.jpg", content)).join();
+
+        assertEquals(uploaded, again);
+        assertEquals(puts * 2, bucket.calls("PutObject"));
+        assertEquals(4, bucket.objectCount());
+    }
+
+    @Test
+    @DisplayName("deleteFile should forget the key before the delete is sent, a re-upload meanwhile asks the bucket")
+    void deleteFile_ForgetsKeyFirst() {
+        byte[] content = png(1000);
+        UploadedFile uploaded = s3Service.upload(new CountingFile("photo.png", content)).join();
+        bucket.hold();
+
+        CompletableFuture<Boolean> deleting = s3Service.deleteFile(uploaded.key());
+        CompletableFuture<UploadedFile> again = s3Service.upload(new CountingFile("photo.png", content));
+
+        assertFalse(again.isDone());
+        bucket.release();
+        assertTrue(deleting.join());
+        again.join();
+    }
+
+    @Test
+    @DisplayName("deleteFile should remove the variants with the original in one batch delete")
+    void deleteFile_Variants() {
+        String key = "3f1c2b7e-1d2a-4c55-9a0e-6d8f7b1e2c3d.jpg";
+        store(key);
+        store("3f1c2b7e-1d2a-4c55-9a0e-6d8f7b1e2c3d-320w.jpg");
+        store("3f1c2b7e-1d2a-4c55-9a0e-6d8f7b1e2c3d-placeholder.jpg");
+
+        assertTrue(s3Service.deleteFile(key).join());
+
+        assertEquals(0, bucket.objectCount());
+        assertEquals(1, bucket.calls("DeleteObjects"));
+    }
+
+    @Test
+    @DisplayName("deleteFile should complete with false when the object doesn't exist")
+    void deleteFile_Missing() {
+        assertFalse(s3Service.deleteFile("3f1c2b7e-1d2a-4c55-9a0e-6d8f7b1e2c3d.jpg").join());
+
+        assertEquals(1, bucket.calls("HeadObject"));
+        assertEquals(0, bucket.calls("DeleteObjects"));
+    }
+
+    private void store(String key) {
+        bucket.putObject(PutObjectRequest.builder().bucket("bucket").key(key).build(), AsyncRequestBody.fromBytes(new byte[]{1})).join();
+    }
+
+    private static byte[] png(int size) {
+        byte[] content = new byte[size];
+        for (int i = PNG_SIGNATURE.length; i < size; i++) {
+            content[i] = (byte) (i * 31);
+        }
+        System.arraycopy(PNG_SIGNATURE, 0, content, 0, PNG_SIGNATURE.length);
+        return content;
+    }
+
+    private static byte[] jpeg(int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(Color.GREEN);
+        graphics.fillRect(0, 0, width, height);
+        graphics.dispose();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpeg", out);
+        return out.toByteArray();
+    }
+
+    private static String sha256(byte[] content) throws Exception {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+    }
+
+    private static class CountingFile extends MockMultipartFile {
+
+        private final AtomicInteger opened = new AtomicInteger();
+
+        CountingFile(String name, byte[] content) {
+            super("file", name, "image/png", content);
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            opened.incrementAndGet();
+            return super.getInputStream();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.escritr.escritr.benchmarks;
+
+import com.escritr.escritr.common.helpers.HtmlParser;
+import com.escritr.escritr.common.helpers.ParsedContent;
+import org.jsoup.Jsoup;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-save cost of turning an article body into what ArticleService stores.
+ * separateSteps is the pipeline before HtmlParser.process: clean, clean and parse again for the first
+ * paragraph, parse again for the plain text.
+ *
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt -Dmdep.includeScope=test
+ * java -cp target/test-classes:target/classes:$(cat target/cp.txt) org.openjdk.jmh.Main HtmlParserBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HtmlParserBenchmark {
+
+    @Param({"50", "200", "500"})
+    public int sizeKb;
+
+    private String content;
+
+    @Setup
+    public void setUp() {
+        content = article(sizeKb * 1024);
+    }
+
+    @Benchmark
+    public void separateSteps(Blackhole blackhole) {
+        String cleaned = Jsoup.clean(content, HtmlParser.safe());
+        blackhole.consume(cleaned);
+        blackhole.consume(HtmlParser.extractFirstParagraph(cleaned));
+        blackhole.consume(Jsoup.parse(cleaned).text());
+    }
+
+    @Benchmark
+    public ParsedContent process() {
+        return HtmlParser.process(content);
+    }
+
+    // what the editor produces: headings, paragraphs with inline markup, lists, images, and a bit that must be stripped
+    static String article(int targetBytes) {
+        StringBuilder html = new StringBuilder(targetBytes + 1024);
+        int section = 0;
+        while (html.length() < targetBytes) {
+            section++;
+            html.append("<h2>Section ").append(section).append(" of the article</h2>");
+            for (int p = 0; p < 4; p++) {
+                html.append("<p style=\"color:red\" onclick=\"track()\">Lorem ipsum dolor sit amet, <strong>consectetur</strong> adipiscing elit, ")
+                        .append("sed do eiusmod <em>tempor</em> incididunt ut labore et dolore magna aliqua. ")
+                        .append("<a href=\"https://example.com/").append(section).append("\" target=\"_blank\">Ut enim</a> ad minim veniam, ")
+                        .append("quis nostrud exercitation ullamco laboris nisi ut aliquip ex ea commodo consequat.</p>");
+            }
+            html.append("<ul><li>first point</li><li>second <code>point</code></li></ul>");
+            html.append("<img src=\"https://cdn.example.com/img/").append(section).append(".png\" alt=\"figure\">");
+            html.append("<script>console.log('").append(section).append("')</script>");
+        }
+        return html.toString();
+    }
+}
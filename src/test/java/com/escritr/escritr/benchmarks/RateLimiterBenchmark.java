@@ -0,0 +1,54 @@
+package com.escritr.escritr.benchmarks;
+
+import com.escritr.escritr.common.helpers.RateLimiter;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one admission decision in AuthRateLimitFilter.
+ * hotKey is a single client hammering the endpoint (the bucket is empty, every call is a rejection after the burst),
+ * manyKeys spreads the calls over 50k clients. Add -t 4 (or more) to measure threads contending on the same buckets.
+ *
+ * java -cp target/test-classes:target/classes:$(cat target/cp.txt) org.openjdk.jmh.Main RateLimiterBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RateLimiterBenchmark {
+
+    private static final int KEYS = 50_000;
+
+    private RateLimiter limiter;
+    private String[] keys;
+
+    @Setup
+    public void setUp() {
+        limiter = new RateLimiter(30, Duration.ofMinutes(1), 100_000);
+        keys = new String[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            keys[i] = "10.0." + (i >> 8) + "." + (i & 0xff);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Benchmark
+    public long hotKey() {
+        return limiter.tryAcquire("203.0.113.7");
+    }
+
+    @Benchmark
+    public long manyKeys(Cursor cursor) {
+        int i = cursor.next;
+        cursor.next = i + 1 == KEYS ? 0 : i + 1;
+        return limiter.tryAcquire(keys[i]);
+    }
+}
@@ -0,0 +1,73 @@
+package com.escritr.escritr.benchmarks;
+
+import com.escritr.escritr.aws.s3.S3Service;
+import com.escritr.escritr.aws.s3.UploadedFile;
+import com.escritr.escritr.common.services.FileValidationService;
+import com.escritr.escritr.common.services.ImageVariantService;
+import com.escritr.escritr.support.InMemoryS3AsyncClient;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 8 MB image uploads through S3Service against an in-process bucket that answers every call after 30 ms
+ * plus the transfer time at 100 MB/s, so an upload (create, 2 parts, complete) spends about 200 ms on the wire.
+ * One operation starts `concurrency` uploads from a single thread and waits for all of them:
+ * uploads/s = ops/s * concurrency. With the blocking client each of them held a request thread for the whole time.
+ *
+ * java -cp target/test-classes:target/classes:$(cat target/cp.txt) org.openjdk.jmh.Main S3UploadBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class S3UploadBenchmark {
+
+    private static final int FILE_SIZE = 8 * 1024 * 1024;
+
+    @Param({"1", "8", "32"})
+    public int concurrency;
+
+    private InMemoryS3AsyncClient bucket;
+    private ImageVariantService imageVariantService;
+    private S3Service s3Service;
+    private MockMultipartFile file;
+
+    @Setup
+    public void setUp() {
+        bucket = new InMemoryS3AsyncClient(Duration.ofMillis(30), 100L * 1024 * 1024);
+        // a GIF, which gets no variants: this measures the transfers only
+        FileValidationService validation = new FileValidationService("image/gif", "gif", "8MB");
+        imageVariantService = new ImageVariantService(new int[]{320, 768, 1280}, 40_000_000, 1, 1, new SimpleMeterRegistry());
+        s3Service = new S3Service(bucket, validation, imageVariantService, "bucket", DataSize.ofMegabytes(5), concurrency,
+                1000, Duration.ofHours(1), new SimpleMeterRegistry());
+
+        byte[] content = new byte[FILE_SIZE];
+        byte[] signature = {'G', 'I', 'F', '8', '9', 'a'};
+        System.arraycopy(signature, 0, content, 0, signature.length);
+        file = new MockMultipartFile("file", "photo.gif", "image/gif", content);
+    }
+
+    @TearDown(Level.Invocation)
+    public void clearBucket() {
+        bucket.clear();
+    }
+
+    @Benchmark
+    public int upload() {
+        @SuppressWarnings("unchecked")
+        CompletableFuture<UploadedFile>[] uploads = new CompletableFuture[concurrency];
+        for (int i = 0; i < concurrency; i++) {
+            uploads[i] = s3Service.upload(file);
+        }
+        CompletableFuture.allOf(uploads).join();
+        return uploads.length;
+    }
+}
@@ -0,0 +1,74 @@
+package com.escritr.escritr.benchmarks;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import com.escritr.escritr.auth.controller.DTOs.DecodedToken;
+import com.escritr.escritr.auth.service.TokenService;
+import com.escritr.escritr.user.domain.User;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of authenticating one request in JwtFilter.
+ * perCallVerifier is what decodeToken did before: build the algorithm and the verifier, verify, read the claims.
+ *
+ * java -cp target/test-classes:target/classes:$(cat target/cp.txt) org.openjdk.jmh.Main TokenServiceBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TokenServiceBenchmark {
+
+    private static final String SECRET = "benchmark-secret-key-longer-than-256-bits-for-hs256";
+
+    private TokenService tokenService;
+    private User user;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        tokenService = new TokenService();
+        ReflectionTestUtils.setField(tokenService, "secret", SECRET);
+        ReflectionTestUtils.setField(tokenService, "accessTokenExpirationMinutes", 15L);
+        user = new User("benchmark", "benchmark@example.com", "password", "Benchmark");
+        user.setId(UUID.randomUUID());
+        token = tokenService.generateAccessToken(user);
+    }
+
+    @Benchmark
+    public DecodedToken perCallVerifier() {
+        DecodedJWT jwt = JWT.require(Algorithm.HMAC256(SECRET)).withIssuer("escritr").build().verify(token);
+        return new DecodedToken(UUID.fromString(jwt.getSubject()), jwt.getClaim("ver").asInt(),
+                jwt.getClaim("usr").asString(), jwt.getClaim("eml").asString());
+    }
+
+    @Benchmark
+    public DecodedToken decodeToken() {
+        return tokenService.decodeToken(token);
+    }
+
+    @Benchmark
+    public String perCallSigner() {
+        return JWT.create()
+                .withIssuer("escritr")
+                .withSubject(user.getId().toString())
+                .withClaim("usr", user.getUsername())
+                .withClaim("eml", user.getEmail())
+                .withClaim("ver", user.getTokenVersion())
+                .withExpiresAt(Instant.now().plusSeconds(900))
+                .sign(Algorithm.HMAC256(SECRET));
+    }
+
+    @Benchmark
+    public String generateAccessToken() {
+        return tokenService.generateAccessToken(user);
+    }
+}
@@ -0,0 +1,52 @@
+package com.escritr.escritr.common.helpers;
+
+import org.jsoup.Jsoup;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HtmlParserTest {
+
+    private static final String CONTENT = """
+            <h1>  </h1>
+            <script>alert('x')</script>
+            <h2 onclick="steal()">The <em>first</em>&nbsp;heading</h2>
+            <p>Some text with a <a href="javascript:alert(1)">bad link</a> and a <a href="https://example.com">good one</a>.<br>Next line</p>
+            <img src="https://cdn.example.com/a.png" alt="a"><img src="ftp://example.com/b.png">
+            <ul><li>one</li><li>two <strong>three</strong></li></ul>
+            <h3>Sub</h3><p>last</p>
+            """;
+
+    @Test
+    @DisplayName("process should match the output of the separate HtmlParser steps")
+    void process_MatchesSeparateSteps() {
+        ParsedContent parsed = HtmlParser.process(CONTENT);
+
+        String cleaned = Jsoup.clean(CONTENT, HtmlParser.safe());
+        assertEquals(cleaned, parsed.sanitizedHtml());
+        assertEquals(HtmlParser.extractFirstParagraph(CONTENT), parsed.firstParagraph());
+        assertEquals(HtmlParser.extractPlainText(cleaned), parsed.plainText());
+    }
+
+    @Test
+    @DisplayName("process should collect the outline, images, word count and reading time")
+    void process_CollectsMetadata() {
+        ParsedContent parsed = HtmlParser.process(CONTENT);
+
+        assertEquals(List.of(new ParsedContent.Heading(2, "The first heading"), new ParsedContent.Heading(3, "Sub")), parsed.headings());
+        assertEquals(List.of("https://cdn.example.com/a.png"), parsed.imageUrls());
+        assertEquals(parsed.plainText().split("\\s+").length, parsed.wordCount());
+        assertEquals(1, parsed.readingTimeMinutes());
+        assertFalse(parsed.sanitizedHtml().contains("script"));
+    }
+
+    @Test
+    @DisplayName("process should return an empty result for blank content")
+    void process_Blank() {
+        assertSame(ParsedContent.EMPTY, HtmlParser.process("  "));
+        assertSame(ParsedContent.EMPTY, HtmlParser.process(null));
+    }
+}
@@ -0,0 +1,75 @@
+package com.escritr.escritr.common.helpers;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateLimiterTest {
+
+    private final AtomicLong clock = new AtomicLong(TimeUnit.HOURS.toNanos(1));
+
+    @Test
+    @DisplayName("tryAcquire should admit a full burst and then reject until a token is refilled")
+    void tryAcquire_BurstThenRefill() {
+        RateLimiter limiter = new RateLimiter(5, Duration.ofSeconds(5), 100, clock::get);
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, limiter.tryAcquire("key"), "request " + i + " is within the burst");
+        }
+        long wait = limiter.tryAcquire("key");
+        assertTrue(wait > 0);
+        assertTrue(wait <= TimeUnit.SECONDS.toNanos(1), "one token comes back every second");
+
+        clock.addAndGet(wait);
+        assertEquals(0, limiter.tryAcquire("key"));
+        assertTrue(limiter.tryAcquire("key") > 0);
+    }
+
+    @Test
+    @DisplayName("tryAcquire should keep one bucket per key")
+    void tryAcquire_IndependentKeys() {
+        RateLimiter limiter = new RateLimiter(1, Duration.ofMinutes(1), 100, clock::get);
+
+        assertEquals(0, limiter.tryAcquire("a"));
+        assertTrue(limiter.tryAcquire("a") > 0);
+        assertEquals(0, limiter.tryAcquire("b"));
+    }
+
+    @Test
+    @DisplayName("a bucket idle for a full refill period should be full again")
+    void tryAcquire_RefillsAfterIdle() {
+        RateLimiter limiter = new RateLimiter(3, Duration.ofSeconds(3), 100, clock::get);
+        for (int i = 0; i < 3; i++) {
+            limiter.tryAcquire("key");
+        }
+        assertTrue(limiter.tryAcquire("key") > 0);
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(3));
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, limiter.tryAcquire("key"));
+        }
+        assertTrue(limiter.tryAcquire("key") > 0);
+    }
+
+    @Test
+    @DisplayName("waitFor should report an empty bucket without taking a token")
+    void waitFor_DoesNotConsume() {
+        RateLimiter limiter = new RateLimiter(2, Duration.ofSeconds(2), 100, clock::get);
+
+        assertEquals(0, limiter.waitFor("key"));
+        assertEquals(0, limiter.waitFor("key"));
+        assertEquals(0, limiter.tryAcquire("key"));
+        assertEquals(0, limiter.waitFor("key"));
+        assertEquals(0, limiter.tryAcquire("key"));
+
+        long wait = limiter.waitFor("key");
+        assertTrue(wait > 0);
+        assertEquals(wait, limiter.tryAcquire("key"));
+    }
+}
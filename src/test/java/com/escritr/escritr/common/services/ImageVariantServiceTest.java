@@ -0,0 +1,148 @@
+package com.escritr.escritr.common.services;
+
+import com.escritr.escritr.common.services.ImageVariantService.ImageVariant;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImageVariantServiceTest {
+
+    private final ImageVariantService service = new ImageVariantService(new int[]{320, 768, 1280}, 40_000_000, 1, 1, new SimpleMeterRegistry());
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    @DisplayName("generate should produce every width narrower than the original plus a placeholder, keeping the aspect ratio")
+    void generate_AllWidths() throws Exception {
+        byte[] jpeg = image(2000, 1000, "jpeg");
+
+        List<ImageVariant> variants = service.generate(() -> new ByteArrayInputStream(jpeg), "image/jpeg").join();
+
+        assertEquals(List.of("1280w", "768w", "320w", "placeholder"), variants.stream().map(ImageVariant::name).toList());
+        assertEquals(List.of(1280, 768, 320, 24), variants.stream().map(ImageVariant::width).toList());
+        assertEquals(List.of(640, 384, 160, 12), variants.stream().map(ImageVariant::height).toList());
+        for (ImageVariant variant : variants) {
+            BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(variant.content()));
+            assertEquals(variant.width(), decoded.getWidth());
+            assertEquals("image/jpeg", variant.contentType());
+        }
+    }
+
+    @Test
+    @DisplayName("generate should skip the widths an image is already narrower than and keep PNGs as PNGs")
+    void generate_SmallPng() throws Exception {
+        byte[] png = image(500, 500, "png");
+
+        List<ImageVariant> variants = service.generate(() -> new ByteArrayInputStream(png), "image/png").join();
+
+        assertEquals(List.of("320w", "placeholder"), variants.stream().map(ImageVariant::name).toList());
+        assertTrue(variants.stream().allMatch(variant -> variant.contentType().equals("image/png")));
+    }
+
+    @Test
+    @DisplayName("generate should complete with no variants for unsupported types and content that doesn't decode")
+    void generate_NothingToDo() {
+        assertTrue(service.generate(() -> new ByteArrayInputStream(new byte[]{'G', 'I', 'F'}), "image/gif").join().isEmpty());
+        assertTrue(service.generate(() -> new ByteArrayInputStream("not an image".getBytes()), "image/jpeg").join().isEmpty());
+    }
+
+    @Test
+    @DisplayName("generate should give up on variants rather than queue past the pool's capacity")
+    void generate_Saturated() throws Exception {
+        byte[] jpeg = image(400, 200, "jpeg");
+        CountDownLatch blocked = new CountDownLatch(1);
+        // the only thread waits on the latch and the queue holds one more
+        CompletableFuture<List<ImageVariant>> running = service.generate(() -> {
+            blocked.await();
+            return new ByteArrayInputStream(jpeg);
+        }, "image/jpeg");
+        CompletableFuture<List<ImageVariant>> queued = service.generate(() -> new ByteArrayInputStream(jpeg), "image/jpeg");
+
+        CompletableFuture<List<ImageVariant>> rejected = service.generate(() -> new ByteArrayInputStream(jpeg), "image/jpeg");
+
+        assertTrue(rejected.isDone());
+        assertTrue(rejected.join().isEmpty());
+        blocked.countDown();
+        assertFalse(running.join().isEmpty());
+        assertFalse(queued.join().isEmpty());
+    }
+
+    @Test
+    @DisplayName("generate should apply the EXIF orientation of a JPEG, a portrait photo stored sideways gets portrait variants")
+    void generate_ExifOrientation() throws Exception {
+        // stored 2000x1000, left half red and right half blue; orientation 6 shows it turned a quarter clockwise
+        BufferedImage stored = new BufferedImage(2000, 1000, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = stored.createGraphics();
+        graphics.setColor(Color.RED);
+        graphics.fillRect(0, 0, 1000, 1000);
+        graphics.setColor(Color.BLUE);
+        graphics.fillRect(1000, 0, 1000, 1000);
+        graphics.dispose();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(stored, "jpeg", out);
+        byte[] jpeg = withOrientation(out.toByteArray(), 6);
+
+        List<ImageVariant> variants = service.generate(() -> new ByteArrayInputStream(jpeg), "image/jpeg").join();
+
+        assertEquals(List.of("768w", "320w", "placeholder"), variants.stream().map(ImageVariant::name).toList());
+        assertEquals(List.of(1536, 640, 48), variants.stream().map(ImageVariant::height).toList());
+        BufferedImage small = ImageIO.read(new ByteArrayInputStream(variants.get(1).content()));
+        assertEquals(320, small.getWidth());
+        // the stored left half is shown on top
+        assertTrue(new Color(small.getRGB(160, 100)).getRed() > 200);
+        assertTrue(new Color(small.getRGB(160, 540)).getBlue() > 200);
+    }
+
+    // an APP1 Exif segment with IFD0 holding only the Orientation tag, right after the JFIF APP0 segment
+    private static byte[] withOrientation(byte[] jpeg, int orientation) {
+        ByteBuffer exif = ByteBuffer.allocate(6 + 8 + 2 + 12 + 4);
+        exif.put("Exif\0\0".getBytes(StandardCharsets.US_ASCII));
+        exif.put(new byte[]{'M', 'M', 0, 42}).putInt(8);
+        exif.putShort((short) 1);
+        exif.putShort((short) 0x0112).putShort((short) 3).putInt(1).putShort((short) orientation).putShort((short) 0);
+        exif.putInt(0);
+
+        int app0End = 4 + (((jpeg[4] & 0xff) << 8) | (jpeg[5] & 0xff));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(jpeg, 0, app0End);
+        out.write(0xff);
+        out.write(0xe1);
+        out.write((exif.capacity() + 2) >> 8);
+        out.write((exif.capacity() + 2) & 0xff);
+        out.write(exif.array(), 0, exif.capacity());
+        out.write(jpeg, app0End, jpeg.length - app0End);
+        return out.toByteArray();
+    }
+
+    static byte[] image(int width, int height, String format) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(Color.ORANGE);
+        graphics.fillRect(0, 0, width, height);
+        graphics.setColor(Color.BLUE);
+        graphics.fillOval(width / 4, height / 4, width / 2, height / 2);
+        graphics.dispose();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, format, out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,267 @@
+package com.escritr.escritr.support;
+
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import software.amazon.awssdk.awscore.exception.AwsErrorDetails;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.S3Utilities;
+import software.amazon.awssdk.services.s3.model.*;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * An in-process S3 bucket for the storage tests and benchmarks, the same role LocalStack plays in dev.
+ * Covers the calls S3Service makes. Request bodies are drained when the call is made, like the SDK does before
+ * it completes the future. Responses complete after the configured latency (plus the transfer time at the
+ * configured bandwidth) on a timer, so a slow bucket holds no thread, and not before the gate is opened.
+ */
+public class InMemoryS3AsyncClient implements S3AsyncClient {
+
+    public record StoredObject(byte[] content, String contentType, Map<String, String> metadata) {
+    }
+
+    private final Map<String, StoredObject> objects = new ConcurrentHashMap<>();
+    private final Map<String, ConcurrentSkipListMap<Integer, byte[]>> multipartUploads = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> calls = new ConcurrentHashMap<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+
+    private final Duration latency;
+    private final long bytesPerSecond;
+    private volatile CompletableFuture<Void> gate = CompletableFuture.completedFuture(null);
+
+    public InMemoryS3AsyncClient() {
+        this(Duration.ZERO, 0);
+    }
+
+    // bytesPerSecond <= 0 transfers instantly
+    public InMemoryS3AsyncClient(Duration latency, long bytesPerSecond) {
+        this.latency = latency;
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    // responses are held until release() is called
+    public void hold() {
+        gate = new CompletableFuture<>();
+    }
+
+    public void release() {
+        gate.complete(null);
+    }
+
+    // forgets every object, long benchmark runs would otherwise keep all they uploaded
+    public void clear() {
+        objects.clear();
+        multipartUploads.clear();
+    }
+
+    public StoredObject object(String key) {
+        return objects.get(key);
+    }
+
+    public int objectCount() {
+        return objects.size();
+    }
+
+    public int pendingMultipartUploads() {
+        return multipartUploads.size();
+    }
+
+    public int calls(String operation) {
+        AtomicInteger count = calls.get(operation);
+        return count == null ? 0 : count.get();
+    }
+
+    public int maxInFlight() {
+        return maxInFlight.get();
+    }
+
+    @Override
+    public CompletableFuture<PutObjectResponse> putObject(PutObjectRequest request, AsyncRequestBody body) {
+        byte[] content = drain(body);
+        return respond("PutObject", content.length, () -> {
+            objects.put(request.key(), new StoredObject(content, request.contentType(), request.metadata()));
+            return PutObjectResponse.builder().eTag(etag(content)).build();
+        });
+    }
+
+    @Override
+    public CompletableFuture<HeadObjectResponse> headObject(HeadObjectRequest request) {
+        return respond("HeadObject", 0, () -> {
+            StoredObject object = objects.get(request.key());
+            if (object == null) {
+                throw notFound("NoSuchKey");
+            }
+            return HeadObjectResponse.builder()
+                    .contentLength((long) object.content().length)
+                    .contentType(object.contentType())
+                    .metadata(object.metadata())
+                    .build();
+        });
+    }
+
+    @Override
+    public CompletableFuture<DeleteObjectResponse> deleteObject(DeleteObjectRequest request) {
+        return respond("DeleteObject", 0, () -> {
+            objects.remove(request.key());
+            return DeleteObjectResponse.builder().build();
+        });
+    }
+
+    @Override
+    public CompletableFuture<DeleteObjectsResponse> deleteObjects(DeleteObjectsRequest request) {
+        return respond("DeleteObjects", 0, () -> {
+            List<DeletedObject> deleted = request.delete().objects().stream()
+                    .peek(object -> objects.remove(object.key()))
+                    .map(object -> DeletedObject.builder().key(object.key()).build())
+                    .toList();
+            return DeleteObjectsResponse.builder().deleted(deleted).build();
+        });
+    }
+
+    @Override
+    public CompletableFuture<CopyObjectResponse> copyObject(CopyObjectRequest request) {
+        return respond("CopyObject", 0, () -> {
+            StoredObject source = objects.get(request.sourceKey());
+            if (source == null) {
+                throw notFound("NoSuchKey");
+            }
+            boolean replace = request.metadataDirective() == MetadataDirective.REPLACE;
+            objects.put(request.destinationKey(), new StoredObject(source.content(),
+                    replace ? request.contentType() : source.contentType(),
+                    replace ? request.metadata() : source.metadata()));
+            return CopyObjectResponse.builder().build();
+        });
+    }
+
+    @Override
+    public CompletableFuture<CreateMultipartUploadResponse> createMultipartUpload(CreateMultipartUploadRequest request) {
+        return respond("CreateMultipartUpload", 0, () -> {
+            String uploadId = UUID.randomUUID().toString();
+            multipartUploads.put(uploadId, new ConcurrentSkipListMap<>());
+            return CreateMultipartUploadResponse.builder().uploadId(uploadId).key(request.key()).build();
+        });
+    }
+
+    @Override
+    public CompletableFuture<UploadPartResponse> uploadPart(UploadPartRequest request, AsyncRequestBody body) {
+        byte[] content = drain(body);
+        return respond("UploadPart", content.length, () -> {
+            parts(request.uploadId()).put(request.partNumber(), content);
+            return UploadPartResponse.builder().eTag(etag(content)).build();
+        });
+    }
+
+    @Override
+    public CompletableFuture<CompleteMultipartUploadResponse> completeMultipartUpload(CompleteMultipartUploadRequest request) {
+        return respond("CompleteMultipartUpload", 0, () -> {
+            ConcurrentSkipListMap<Integer, byte[]> parts = parts(request.uploadId());
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            for (CompletedPart part : request.multipartUpload().parts()) {
+                content.writeBytes(parts.get(part.partNumber()));
+            }
+            multipartUploads.remove(request.uploadId());
+            objects.put(request.key(), new StoredObject(content.toByteArray(), null, Map.of()));
+            return CompleteMultipartUploadResponse.builder().key(request.key()).build();
+        });
+    }
+
+    @Override
+    public CompletableFuture<AbortMultipartUploadResponse> abortMultipartUpload(AbortMultipartUploadRequest request) {
+        return respond("AbortMultipartUpload", 0, () -> {
+            multipartUploads.remove(request.uploadId());
+            return AbortMultipartUploadResponse.builder().build();
+        });
+    }
+
+    @Override
+    public S3Utilities utilities() {
+        return S3Utilities.builder().region(Region.US_EAST_2).build();
+    }
+
+    @Override
+    public String serviceName() {
+        return SERVICE_NAME;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    private <T> CompletableFuture<T> respond(String operation, long bytes, Supplier<T> response) {
+        calls.computeIfAbsent(operation, key -> new AtomicInteger()).incrementAndGet();
+        maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+
+        long delayNanos = latency.toNanos() + (bytesPerSecond > 0 ? bytes * 1_000_000_000L / bytesPerSecond : 0);
+        Executor delayed = delayNanos > 0
+                ? CompletableFuture.delayedExecutor(delayNanos, TimeUnit.NANOSECONDS)
+                : Runnable::run;
+        return gate.thenApplyAsync(open -> response.get(), delayed)
+                .whenComplete((result, error) -> inFlight.decrementAndGet());
+    }
+
+    private ConcurrentSkipListMap<Integer, byte[]> parts(String uploadId) {
+        ConcurrentSkipListMap<Integer, byte[]> parts = multipartUploads.get(uploadId);
+        if (parts == null) {
+            throw notFound("NoSuchUpload");
+        }
+        return parts;
+    }
+
+    private static S3Exception notFound(String errorCode) {
+        return (S3Exception) S3Exception.builder()
+                .statusCode(404)
+                .awsErrorDetails(AwsErrorDetails.builder().errorCode(errorCode).errorMessage(errorCode).build())
+                .message(errorCode)
+                .build();
+    }
+
+    private static String etag(byte[] content) {
+        return "\"" + Integer.toHexString(Arrays.hashCode(content)) + "\"";
+    }
+
+    private static byte[] drain(AsyncRequestBody body) {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        body.subscribe(new Subscriber<ByteBuffer>() {
+            @Override
+            public void onSubscribe(Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(ByteBuffer buffer) {
+                byte[] bytes = new byte[buffer.remaining()];
+                buffer.get(bytes);
+                content.writeBytes(bytes);
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                done.completeExceptionally(error);
+            }
+
+            @Override
+            public void onComplete() {
+                done.complete(null);
+            }
+        });
+        done.join();
+        return content.toByteArray();
+    }
+}
@@ -0,0 +1,52 @@
+package com.escritr.escritr.support;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Records every SQL statement Hibernate prepares. Registered through
+ * {@code spring.jpa.properties.hibernate.session_factory.statement_inspector} in the JPA tests,
+ * Hibernate instantiates it itself so the recorded statements are static and per thread.
+ */
+public class SqlStatementCounter implements StatementInspector {
+
+    private static final ThreadLocal<List<String>> STATEMENTS = ThreadLocal.withInitial(ArrayList::new);
+
+    public static final String PROPERTY =
+            "spring.jpa.properties.hibernate.session_factory.statement_inspector=com.escritr.escritr.support.SqlStatementCounter";
+
+    @Override
+    public String inspect(String sql) {
+        STATEMENTS.get().add(sql);
+        return sql;
+    }
+
+    public static void reset() {
+        STATEMENTS.get().clear();
+    }
+
+    public static List<String> statements() {
+        return List.copyOf(STATEMENTS.get());
+    }
+
+    public static long selects() {
+        return STATEMENTS.get().stream().filter(sql -> sql.trim().toLowerCase().startsWith("select")).count();
+    }
+
+    /**
+     * Runs the action and fails if it prepared more statements than the budget allows.
+     */
+    public static <T> T assertStatementBudget(String name, int budget, Supplier<T> action) {
+        reset();
+        T result = action.get();
+        List<String> executed = statements();
+        assertTrue(executed.size() <= budget,
+                () -> name + " exceeded its SQL budget of " + budget + " statements, executed " + executed.size() + ": " + executed);
+        return result;
+    }
+}